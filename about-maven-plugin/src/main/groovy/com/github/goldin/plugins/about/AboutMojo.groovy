@@ -465,7 +465,7 @@ class AboutMojo extends BaseGroovyMojo
                 }
 
                 final split = { String s -> s ? split( s ) : null }
-                final files = fileBean().files( directory, split( include ), split( exclude ), false, false, failIfNotFound )
+                final files = scanFiles( directory, split( include ), split( exclude ), false, failIfNotFound )
 
                 if ( files )
                 {
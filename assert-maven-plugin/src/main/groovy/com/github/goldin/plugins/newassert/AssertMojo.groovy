@@ -2,6 +2,7 @@ package com.github.goldin.plugins.newassert
 
 import static com.github.goldin.plugins.common.GMojoUtils.*
 import com.github.goldin.plugins.common.BaseGroovyMojo
+import com.github.goldin.plugins.common.ChecksumCache
 import org.apache.maven.plugins.annotations.LifecyclePhase
 import org.apache.maven.plugins.annotations.Mojo
 import org.apache.maven.plugins.annotations.Parameter
@@ -150,7 +151,7 @@ class AssertMojo extends BaseGroovyMojo
 
                 File       basedir        = new File( line.substring( 0, j ))
                 String     includePattern = line.substring( j + 1 )
-                Collection c              = fileBean().files( basedir, [ includePattern ], [], true, false, false )
+                Collection c              = scanFiles( basedir, [ includePattern ], [], true, false )
                 assert     c, "File pattern [$line] - no files matched"
 
                 log.info( "File pattern [$line] - [${ c.size()}] file${ generalBean().s( c.size()) } matched" )
@@ -197,7 +198,13 @@ class AssertMojo extends BaseGroovyMojo
                 "Verifying [${ file1.canonicalPath }]/[$pattern] file(s) have corresponding and identical file(s) in [${ file2.canonicalPath }]" :
                 "Verifying [${ file1.canonicalPath }] is identical to [${ file2.canonicalPath }]" )
 
-            int filesChecked = verifyBean().equal( file1, file2, verifyChecksum, pattern, endOfLine )
+            /**
+             * Two files compared by checksum are first compared using checksums cache,
+             * verifyBean() is only called when they differ to report the difference
+             */
+            boolean identicalFiles = ( verifyChecksum && file1.file && file2.file && ( ! pattern ) && ( ! endOfLine ) &&
+                                       ChecksumCache.identical( file1, file2 ))
+            int     filesChecked   = identicalFiles ? 1 : verifyBean().equal( file1, file2, verifyChecksum, pattern, endOfLine )
 
             log.info( "[${ file1.canonicalPath }] is identical to [${ file2.canonicalPath }] " +
                            "($filesChecked file${ ( filesChecked == 1 ) ? '' : 's' } checked)" )
@@ -0,0 +1,212 @@
+package com.github.goldin.plugins.copy.benchmarks;
+
+import com.github.goldin.plugins.copy.ArchiveEngine;
+import com.github.goldin.plugins.copy.ArchiveEngines;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Compares {@link ArchiveEngine} implementations packing and extracting Zip archives of several corpora:
+ * <ul>
+ * <li>"small" - 10000 files of 4 KB, like class files and resources: 40 MB</li>
+ * <li>"huge"  - 4 files of 64 MB, like distributions and database dumps: 256 MB</li>
+ * <li>"mixed" - 2000 files of 4 KB, 200 files of 256 KB and 2 files of 32 MB: 121.8 MB</li>
+ * </ul>
+ * Files contain generated data compressing roughly by half, throughput can be derived from the corpus size
+ * and the time reported. Run with "-prof gc" to report allocation per operation.
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ArchiveEngineBenchmark
+{
+    private static final int KB = 1024;
+    private static final int MB = 1024 * KB;
+
+    @Param({ "jdk", "commons-compress", "truezip", "parallel" })
+    public String engine;
+
+    @Param({ "small", "huge", "mixed" })
+    public String corpus;
+
+    /**
+     * Compression level, 9 is the default {@code <compressionLevel>} of a resource.
+     */
+    @Param({ "9" })
+    public int level;
+
+    private File              root;
+    private File              archive;
+    private File              packed;
+    private File              unpacked;
+    private Map<String, File> entries;
+
+
+    @Setup( Level.Trial )
+    public void createCorpus () throws IOException
+    {
+        root     = Files.createTempDirectory( "archive-engine-benchmark" ).toFile();
+        archive  = new File( root, "archive.zip" );
+        packed   = new File( root, "packed.zip" );
+        unpacked = new File( root, "unpacked" );
+        entries  = new LinkedHashMap<String, File>();
+
+        final Random random = new Random( 42 );
+        final File   files  = new File( root, "files" );
+
+        if ( "small".equals( corpus ))
+        {
+            generate( files, "small", 10000, 4 * KB, random );
+        }
+        else if ( "huge".equals( corpus ))
+        {
+            generate( files, "huge", 4, 64 * MB, random );
+        }
+        else if ( "mixed".equals( corpus ))
+        {
+            generate( files, "small",  2000, 4   * KB, random );
+            generate( files, "medium", 200,  256 * KB, random );
+            generate( files, "huge",   2,    32  * MB, random );
+        }
+        else
+        {
+            throw new IllegalArgumentException( "Unknown corpus [" + corpus + "]" );
+        }
+
+        engine().pack( packed, entries, false, null );
+        unpacked.mkdirs();
+    }
+
+
+    /**
+     * Generates files in directories of 100 files each.
+     */
+    private void generate ( File directory, String prefix, int count, int size, Random random ) throws IOException
+    {
+        final byte[] buffer = new byte[ Math.min( size, MB ) ];
+
+        for ( int j = 0; j < count; j++ )
+        {
+            final String name = prefix + "/" + ( j / 100 ) + "/" + prefix + "-" + j + ".bin";
+            final File   file = new File( directory, name );
+            file.getParentFile().mkdirs();
+
+            final OutputStream os = new BufferedOutputStream( new FileOutputStream( file ));
+
+            try
+            {
+                for ( int written = 0; written < size; written += buffer.length )
+                {
+                    fill( buffer, random );
+                    os.write( buffer, 0, Math.min( buffer.length, size - written ));
+                }
+            }
+            finally
+            {
+                os.close();
+            }
+
+            entries.put( name, file );
+        }
+    }
+
+
+    /**
+     * Fills the buffer with bytes of a 16 symbols alphabet, compressing roughly by half.
+     */
+    private static void fill ( byte[] buffer, Random random )
+    {
+        for ( int j = 0; j < buffer.length; j++ ) { buffer[ j ] = ( byte ) ( 'a' + random.nextInt( 16 )); }
+    }
+
+
+    private ArchiveEngine engine ()
+    {
+        return ArchiveEngines.zipEngine( engine, Runtime.getRuntime().availableProcessors(), level, null );
+    }
+
+
+    @TearDown( Level.Invocation )
+    public void deleteUnpacked () throws IOException
+    {
+        delete( unpacked );
+        unpacked.mkdirs();
+    }
+
+
+    @TearDown( Level.Trial )
+    public void deleteCorpus () throws IOException
+    {
+        delete( root );
+    }
+
+
+    private static void delete ( File file ) throws IOException
+    {
+        if ( ! file.exists()) { return; }
+
+        Files.walkFileTree( file.toPath(), new SimpleFileVisitor<Path>()
+        {
+            @Override
+            public FileVisitResult visitFile ( Path path, BasicFileAttributes attributes ) throws IOException
+            {
+                Files.delete( path );
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory ( Path path, IOException e ) throws IOException
+            {
+                Files.delete( path );
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+
+    @Benchmark
+    public File pack ()
+    {
+        return engine().pack( archive, entries, false, null );
+    }
+
+
+    @Benchmark
+    public List<File> unpack ()
+    {
+        final List<String> none = Collections.emptyList();
+        return engine().unpack( packed, unpacked, none, none, true, true, null );
+    }
+}
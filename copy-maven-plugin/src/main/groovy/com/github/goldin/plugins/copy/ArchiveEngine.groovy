@@ -0,0 +1,63 @@
+package com.github.goldin.plugins.copy
+
+
+/**
+ * Engine packing and extracting archives of {@code <pack>} and {@code <unpack>}, as selected by {@code <archiveEngine>}.
+ * Engines are created for a single operation and are not required to be thread-safe.
+ *
+ * @see ArchiveEngines
+ */
+interface ArchiveEngine
+{
+    /**
+     * Engine name, as specified by {@code <archiveEngine>}.
+     */
+    String getName ()
+
+
+    /**
+     * Determines if engine can pack and extract the archive specified.
+     */
+    boolean supports ( File archive )
+
+
+    /**
+     * Determines if engine can apply {@link EntryTransform} to entries packed and extracted.
+     */
+    boolean transforms ()
+
+
+    /**
+     * Packs files specified to the archive.
+     *
+     * @param archive   archive to pack the files to
+     * @param entries   archive entry name ("dir/file.txt") => file to pack
+     * @param update    whether existing archive entries should be kept, replacing only those specified
+     * @param transform transform to apply to the content of files packed, may be {@code null} if files are packed as-is,
+     *                  should be {@code null} if engine doesn't {@link #transforms}
+     * @return archive packed
+     */
+    File pack ( File archive, Map<String, File> entries, boolean update, EntryTransform transform )
+
+
+    /**
+     * Extracts the archive specified.
+     *
+     * @param archive              archive to extract
+     * @param destinationDirectory directory to extract the archive to
+     * @param includes             patterns of entries to extract, all entries are extracted if empty
+     * @param excludes             patterns of entries not to extract, can be empty
+     * @param preservePath         whether entries path should be preserved, otherwise entries are extracted to the destination directory itself
+     * @param failIfNotFound       whether execution should fail if any of the include patterns doesn't match an entry
+     * @param transform            transform to apply to the content of entries extracted, may be {@code null} if entries are extracted as-is,
+     *                             should be {@code null} if engine doesn't {@link #transforms}
+     * @return files extracted
+     */
+    List<File> unpack ( File           archive,
+                        File           destinationDirectory,
+                        List<String>   includes,
+                        List<String>   excludes,
+                        boolean        preservePath,
+                        boolean        failIfNotFound,
+                        EntryTransform transform )
+}
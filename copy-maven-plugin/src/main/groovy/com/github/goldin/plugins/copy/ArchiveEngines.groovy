@@ -0,0 +1,243 @@
+package com.github.goldin.plugins.copy
+
+import org.codehaus.plexus.util.SelectorUtils
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+
+
+/**
+ * {@link ArchiveEngine} implementations selected by {@code <archiveEngine>} and helpers shared by them.
+ */
+final class ArchiveEngines
+{
+    static final String       JDK              = 'jdk'
+    static final String       COMMONS_COMPRESS = 'commons-compress'
+    static final String       TRUEZIP          = 'truezip'
+    static final String       PARALLEL         = 'parallel'
+    static final List<String> NAMES            = [ JDK, COMMONS_COMPRESS, TRUEZIP, PARALLEL ].asImmutable()
+
+    /**
+     * Extensions of Zip archives engines can pack and extract.
+     */
+    static final List<String> ZIP_EXTENSIONS   = [ 'zip', 'jar', 'war', 'ear', 'sar', 'hpi', 'jpi' ].asImmutable()
+
+    private static final int  BUFFER_SIZE      = 64 * 1024
+
+
+    private ArchiveEngines (){}
+
+
+    /**
+     * Creates new Zip archive engine.
+     *
+     * @param name        engine name, one of {@link #NAMES}
+     * @param threads     number of threads compressing or inflating entries, used by "parallel" engine only
+     * @param level       compression level, from 0 (stored) to 9
+     * @param entriesTime time of entries packed, files last modified time is used if {@code null}
+     * @return new archive engine
+     */
+    @Requires({ name && ( threads > 0 ) && ( level >= 0 ) && ( level <= 9 ) })
+    @Ensures ({ result })
+    static ArchiveEngine zipEngine ( String name, int threads, int level, Long entriesTime )
+    {
+        switch ( name.trim().toLowerCase())
+        {
+            case JDK              : return new JdkArchiveEngine( level, entriesTime )
+            case COMMONS_COMPRESS : return new CommonsCompressArchiveEngine( level, entriesTime )
+            case TRUEZIP          : return new TrueZipArchiveEngine( level, entriesTime )
+            case PARALLEL         : return new ParallelArchiveEngine( threads, level, entriesTime )
+            default               : assert false, "Unknown <archiveEngine> [$name], should be one of $NAMES or \"default\""
+        }
+    }
+
+
+    /**
+     * Determines if archive specified is a Zip archive, according to its extension.
+     */
+    static boolean zip ( File archive )
+    {
+        final name = archive.name.toLowerCase()
+        ZIP_EXTENSIONS.any { name.endsWith( '.' + it ) }
+    }
+
+
+    /**
+     * Retrieves directory entries ("dir/", "dir/subdir/") of all parent paths of the entries specified.
+     */
+    static SortedSet<String> directories ( Collection<String> names )
+    {
+        final SortedSet<String> directories = new TreeSet<String>()
+
+        for ( name in names )
+        {
+            for ( int j = name.indexOf( '/' ); j > 0; j = name.indexOf( '/', j + 1 )) { directories << name.substring( 0, j + 1 ) }
+        }
+
+        directories
+    }
+
+
+    /**
+     * Retrieves modification time of the directory entry specified: time of the directory its first file
+     * is packed from, or of the file itself when its path doesn't mirror the entry name.
+     *
+     * @param directory directory entry ("dir/", "dir/subdir/"), as returned by {@link #directories}
+     * @param entries   entries packed, mapping their names to files
+     * @return modification time of the directory entry
+     */
+    @Requires({ directory.endsWith( '/' ) && entries })
+    static long directoryTime ( String directory, Map<String, File> entries )
+    {
+        final Map.Entry<String, File> child = entries.find { it.key.startsWith( directory ) }
+        assert child, "No entries found under [$directory]"
+
+        final int levels = child.key.substring( directory.length()).count( '/' ) + 1
+        File      file   = child.value.canonicalFile
+        for ( int j = 0; ( j < levels ) && file; j++ ){ file = file.parentFile }
+
+        final String path = File.separator + directory.substring( 0, directory.length() - 1 ).replace( '/', File.separator )
+        ( file && file.directory && file.path.endsWith( path )) ? file.lastModified() : child.value.lastModified()
+    }
+
+
+    /**
+     * Retrieves file to write the archive specified to: a temporary file next to it when it is updated,
+     * otherwise the archive itself, creating its directory.
+     *
+     * @param archive archive to pack
+     * @param update  whether existing archive is updated
+     * @return file to write the archive to, should be passed to {@link #replace} when written
+     */
+    static File output ( File archive, boolean update )
+    {
+        if ( update && archive.file ) { return new File( archive.path + '.tmp' ) }
+
+        final directory = archive.canonicalFile.parentFile
+        assert ( directory.directory || directory.mkdirs()), "Failed to create [$directory]"
+        assert (( ! archive.file ) || archive.delete()), "Failed to delete [$archive]"
+        archive
+    }
+
+
+    /**
+     * Replaces the archive with the output it was written to, if they differ.
+     */
+    static File replace ( File archive, File output )
+    {
+        if ( output != archive )
+        {
+            final boolean replaced = archive.delete() && output.renameTo( archive )
+            assert replaced, "Failed to replace [$archive] with [$output]"
+        }
+
+        archive
+    }
+
+
+    /**
+     * Writes content of the file packed to the archive entry stream, transforming it if transform applies to the entry.
+     * Entry stream is left open.
+     *
+     * @param name      entry name
+     * @param file      file to pack
+     * @param os        archive entry stream
+     * @param transform transform to apply, may be {@code null}
+     */
+    static void packEntry ( String name, File file, OutputStream os, EntryTransform transform )
+    {
+        final InputStream is = new BufferedInputStream( new FileInputStream( file ), BUFFER_SIZE )
+
+        if ( transform?.applies( name )) { transform.transform( name, file, is, os ) }
+        else                             { is.withStream { os << it } }
+    }
+
+
+    /**
+     * Writes content of the archive entry extracted to the file, transforming it if transform applies to the entry.
+     * Entry stream is closed.
+     *
+     * @param name      entry name
+     * @param is        archive entry stream
+     * @param file      file to extract the entry to
+     * @param transform transform to apply, may be {@code null}
+     */
+    static void extractEntry ( String name, InputStream is, File file, EntryTransform transform )
+    {
+        final OutputStream os = new BufferedOutputStream( new FileOutputStream( file ), BUFFER_SIZE )
+
+        try
+        {
+            if ( transform?.applies( name )) { transform.transform( name, file, is, os ) }
+            else                             { is.withStream { os << it } }
+        }
+        finally
+        {
+            os.close()
+        }
+    }
+
+
+    /**
+     * Archive extraction: entries matched by include and exclude patterns and destination files they are extracted to.
+     */
+    static final class Extraction
+    {
+        private final File         archive
+        private final File         destinationDirectory
+        private final String       rootPath
+        private final List<String> includes
+        private final List<String> excludes
+        private final boolean      preservePath
+        private final Set<String>  matched = new HashSet<String>()
+
+
+        @Requires({ archive && destinationDirectory && ( includes != null ) && ( excludes != null ) })
+        Extraction ( File archive, File destinationDirectory, List<String> includes, List<String> excludes, boolean preservePath )
+        {
+            this.archive              = archive
+            this.destinationDirectory = destinationDirectory
+            this.rootPath             = destinationDirectory.canonicalPath
+            this.includes             = includes
+            this.excludes             = excludes
+            this.preservePath         = preservePath
+        }
+
+
+        /**
+         * Determines the file entry specified should be extracted to, creating its directory.
+         *
+         * @param name entry name, directory entries end with "/"
+         * @return file to extract the entry to, {@code null} if entry shouldn't be extracted or it is a directory
+         */
+        File file ( String name )
+        {
+            final List<String> patterns = includes.findAll { SelectorUtils.matchPath( it, name ) }
+            if (( includes && ( ! patterns )) || excludes.any { SelectorUtils.matchPath( it, name ) }) { return null }
+            matched.addAll( patterns )
+
+            final boolean directory = name.endsWith( '/' )
+            if ( directory && ( ! preservePath )) { return null }
+
+            final File file = new File( destinationDirectory, preservePath ? name : name.substring( name.lastIndexOf( '/' ) + 1 ))
+            assert ( file.canonicalPath == rootPath ) || file.canonicalPath.startsWith( rootPath + File.separator ), \
+                   "[$archive] - entry [$name] is outside of [$rootPath]"
+
+            final File fileDirectory = directory ? file : file.parentFile
+            assert ( fileDirectory.directory || fileDirectory.mkdirs()), "Failed to create [$fileDirectory]"
+            directory ? null : file
+        }
+
+
+        /**
+         * Verifies all include patterns matched an entry, if required.
+         */
+        void verify ( boolean failIfNotFound )
+        {
+            if ( failIfNotFound )
+            {
+                final notMatched = includes - matched
+                assert ( ! notMatched ), "[$archive] - no entries matched ${ notMatched }"
+            }
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.github.goldin.plugins.copy
+
+import com.github.goldin.plugins.common.FileScanner.Glob
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.nio.file.Files
+import java.nio.file.LinkOption
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+
+
+/**
+ * Deletes files matched by include and exclude patterns in a single post-order walk of the directory,
+ * removing directories that became empty on the way up.
+ *
+ * Subdirectories are walked by a fork/join pool, so wide trees are spread over several threads.
+ * Symbolic links are deleted as files and never followed.
+ */
+final class CleanEngine
+{
+    /**
+     * Number of files deleted by a single task when deleting files specified
+     */
+    private static final int FILES_BATCH = 256
+
+    private final File        root
+    private final List<Glob>  includes
+    private final List<Glob>  excludes
+    private final boolean     cleanEmptyDirectories
+    private final int         threads
+
+    private final Queue<File> filesDeleted       = new ConcurrentLinkedQueue<File>()
+    private final Queue<File> directoriesDeleted = new ConcurrentLinkedQueue<File>()
+
+
+    /**
+     * Creates new clean engine.
+     *
+     * @param root                  directory to clean
+     * @param includes              patterns of files to delete, all files are deleted if {@code null} or empty
+     * @param excludes              patterns of files not to delete, may be {@code null}
+     * @param cleanEmptyDirectories whether empty directories should be deleted in addition to files matched
+     * @param threads               number of threads walking the directory
+     */
+    @Requires({ root && ( threads > 0 ) })
+    CleanEngine ( File root, List<String> includes, List<String> excludes, boolean cleanEmptyDirectories, int threads )
+    {
+        this.root                  = root
+        this.includes              = ( includes ?: [ '**' ] ).collect { new Glob( it ) }
+        this.excludes              = ( excludes ?: []       ).collect { new Glob( it ) }
+        this.cleanEmptyDirectories = cleanEmptyDirectories
+        this.threads               = threads
+    }
+
+
+    /**
+     * Deletes files matched by include and exclude patterns, and empty directories if enabled.
+     *
+     * @return files deleted, sorted, followed by directories deleted
+     */
+    @Requires({ root.directory })
+    @Ensures ({ result != null })
+    List<File> clean ()
+    {
+        walk( true )
+    }
+
+
+    /**
+     * Deletes files specified, like those left by {@code <filter>}, and empty directories if enabled.
+     *
+     * @param files files to delete
+     * @return files deleted, sorted, followed by directories deleted
+     */
+    @Requires({ root.directory && ( files != null ) })
+    @Ensures ({ result != null })
+    List<File> clean ( Collection<File> files )
+    {
+        final pool = new ForkJoinPool( threads )
+
+        try
+        {
+            pool.invoke( new FilesTask( files as List<File> ))
+        }
+        finally
+        {
+            pool.shutdown()
+        }
+
+        cleanEmptyDirectories ? walk( false ) : result()
+    }
+
+
+    private List<File> walk ( boolean matchFiles )
+    {
+        final pool = new ForkJoinPool( threads )
+
+        try
+        {
+            pool.invoke( new DirectoryTask( root, new String[ 0 ], ( ! matchFiles )))
+        }
+        finally
+        {
+            pool.shutdown()
+        }
+
+        result()
+    }
+
+
+    private List<File> result ()
+    {
+        ( filesDeleted as List<File> ).sort() + ( directoriesDeleted as List<File> ).sort { File f -> - f.path.length() }
+    }
+
+
+    /**
+     * Determines if all paths under the directory specified are excluded, so it doesn't need to be matched.
+     */
+    private boolean excludedDirectory ( String[] path )
+    {
+        for ( exclude in excludes ) { if ( exclude.matchesAllUnder( path )) { return true }}
+        false
+    }
+
+
+    private boolean matches ( String[] path )
+    {
+        for ( exclude in excludes ) { if ( exclude.matches( path )) { return false }}
+        for ( include in includes ) { if ( include.matches( path )) { return true  }}
+        false
+    }
+
+
+    private void delete ( File file, Queue<File> deleted )
+    {
+        Files.delete( file.toPath())
+        deleted << file
+    }
+
+
+    /**
+     * Deletes the files specified, splitting them between tasks.
+     */
+    private class FilesTask extends RecursiveAction
+    {
+        private final List<File> files
+
+        FilesTask ( List<File> files ) { this.files = files }
+
+        @Override
+        protected void compute ()
+        {
+            if ( files.size() <= FILES_BATCH )
+            {
+                for ( file in files ) { if ( Files.exists( file.toPath(), LinkOption.NOFOLLOW_LINKS )) { delete( file, filesDeleted ) }}
+                return
+            }
+
+            final middle = ( int ) ( files.size() / 2 )
+            invokeAll( new FilesTask( files.subList( 0, middle )), new FilesTask( files.subList( middle, files.size())))
+        }
+    }
+
+
+    /**
+     * Deletes files matched in the directory, walks its subdirectories in parallel and deletes the directory if it became empty.
+     */
+    private class DirectoryTask extends RecursiveAction
+    {
+        private final File     directory
+        private final String[] path     // Path segments relative to the root, empty for the root itself
+        private final boolean  excluded // Whether files of this directory are not matched
+
+        DirectoryTask ( File directory, String[] path, boolean excluded )
+        {
+            this.directory = directory
+            this.path      = path
+            this.excluded  = excluded
+        }
+
+        @Override
+        protected void compute ()
+        {
+            final List<DirectoryTask> subdirectories = []
+            final String[]            filePath       = Arrays.copyOf( path, path.length + 1 )
+
+            for ( file in ( directory.listFiles() ?: new File[ 0 ] ))
+            {
+                final attributes        = Files.readAttributes( file.toPath(), BasicFileAttributes, LinkOption.NOFOLLOW_LINKS )
+                filePath[ path.length ] = file.name
+
+                if ( attributes.directory )
+                {
+                    final String[] subdirectoryPath     = filePath.clone()
+                    final boolean  subdirectoryExcluded = excluded || excludedDirectory( subdirectoryPath )
+                    if (( ! subdirectoryExcluded ) || cleanEmptyDirectories )
+                    {
+                        subdirectories << new DirectoryTask( file, subdirectoryPath, subdirectoryExcluded )
+                    }
+                }
+                else if (( ! excluded ) && matches( filePath ))
+                {
+                    delete( file, filesDeleted )
+                }
+            }
+
+            if ( subdirectories.size() == 1 ) { subdirectories.first().compute() }
+            else if ( subdirectories )        { invokeAll( subdirectories ) }
+
+            if ( cleanEmptyDirectories && ( directory.list()?.length == 0 )) { delete( directory, directoriesDeleted ) }
+        }
+    }
+}
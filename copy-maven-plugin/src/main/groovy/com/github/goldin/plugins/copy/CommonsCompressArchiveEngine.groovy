@@ -0,0 +1,142 @@
+package com.github.goldin.plugins.copy
+
+import org.apache.commons.compress.archivers.zip.Zip64Mode
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream
+import org.apache.commons.compress.archivers.zip.ZipFile
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.util.zip.ZipEntry
+
+
+/**
+ * Zip {@link ArchiveEngine} based on commons-compress, packing and extracting entries on a single thread.
+ * Entries kept when archive is updated are copied raw, without being inflated and compressed again,
+ * files are extracted in the order they are stored in the archive, keeping their executable permission.
+ */
+final class CommonsCompressArchiveEngine implements ArchiveEngine
+{
+    private final int  level
+    private final Long entriesTime
+
+
+    /**
+     * Creates new engine.
+     *
+     * @param level       compression level, from 0 (stored) to 9
+     * @param entriesTime time of entries packed, files last modified time is used if {@code null}
+     */
+    @Requires({ ( level >= 0 ) && ( level <= 9 ) })
+    CommonsCompressArchiveEngine ( int level, Long entriesTime = null )
+    {
+        this.level       = level
+        this.entriesTime = entriesTime
+    }
+
+
+    @Override
+    String getName (){ ArchiveEngines.COMMONS_COMPRESS }
+
+
+    @Override
+    boolean supports ( File archive ){ ArchiveEngines.zip( archive ) }
+
+
+    @Override
+    boolean transforms (){ true }
+
+
+    @Override
+    @Requires({ archive && entries && entries.values().every { it.file } })
+    @Ensures ({ result.file })
+    File pack ( File archive, Map<String, File> entries, boolean update, EntryTransform transform )
+    {
+        final File                   output   = ArchiveEngines.output( archive, update )
+        final ZipFile                previous = ( output != archive ) ? new ZipFile( archive ) : null
+        final ZipArchiveOutputStream zip      = new ZipArchiveOutputStream( output )
+        final Set<String>            written  = new HashSet<String>()
+        boolean                      packed   = false
+
+        zip.level       = level
+        zip.method      = (( level > 0 ) ? ZipEntry.DEFLATED : ZipEntry.STORED )
+        zip.useZip64    = Zip64Mode.AsNeeded
+
+        try
+        {
+            for ( directory in ArchiveEngines.directories( entries.keySet()))
+            {
+                final entry = new ZipArchiveEntry( directory )
+                entry.time  = ( entriesTime != null ) ? entriesTime : ArchiveEngines.directoryTime( directory, entries )
+                zip.putArchiveEntry( entry )
+                zip.closeArchiveEntry()
+                written << directory
+            }
+
+            for ( previousEntry in ( previous?.entriesInPhysicalOrder?.toList() ?: [] ))
+            {
+                if ( entries.containsKey( previousEntry.name ) || written.contains( previousEntry.name )) { continue }
+                previous.getRawInputStream( previousEntry ).withStream { InputStream is -> zip.addRawArchiveEntry( previousEntry, is ) }
+            }
+
+            entries.each {
+                String name, File file ->
+                // Size of files transformed is only known once they are written
+                final entry = transform?.applies( name ) ? new ZipArchiveEntry( name ) : new ZipArchiveEntry( file, name )
+                entry.time  = ( entriesTime != null ) ? entriesTime : file.lastModified()
+                if ( file.canExecute()) { entry.unixMode = 0100755 }
+                zip.putArchiveEntry( entry )
+                ArchiveEngines.packEntry( name, file, zip, transform )
+                zip.closeArchiveEntry()
+            }
+
+            packed = true
+        }
+        finally
+        {
+            zip.close()
+            previous?.close()
+            if ( ! packed ) { output.delete() }
+        }
+
+        ArchiveEngines.replace( archive, output )
+    }
+
+
+    @Override
+    @Requires({ archive.file && destinationDirectory && ( includes != null ) && ( excludes != null ) })
+    @Ensures ({ result != null })
+    List<File> unpack ( File           archive,
+                        File           destinationDirectory,
+                        List<String>   includes,
+                        List<String>   excludes,
+                        boolean        preservePath,
+                        boolean        failIfNotFound,
+                        EntryTransform transform )
+    {
+        final extraction = new ArchiveEngines.Extraction( archive, destinationDirectory, includes, excludes, preservePath )
+        final zipFile    = new ZipFile( archive )
+        final files      = new ArrayList<File>()
+
+        try
+        {
+            for ( entry in zipFile.entriesInPhysicalOrder )
+            {
+                final File file = extraction.file( entry.name )
+                if ( file == null ) { continue }
+
+                ArchiveEngines.extractEntry( entry.name, zipFile.getInputStream( entry ), file, transform )
+                // noinspection JavaStylePropertiesInvocation, GroovySetterCallCanBePropertyAccess
+                file.setLastModified( entry.time )
+                if (( entry.unixMode & 0100 ) != 0 ) { file.setExecutable( true, false ) }
+                files << file
+            }
+        }
+        finally
+        {
+            zipFile.close()
+        }
+
+        extraction.verify( failIfNotFound )
+        files
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.goldin.plugins.copy
+
+import org.gcontracts.annotations.Requires
+
+
+/**
+ * File to deploy to Maven repository, as specified by {@code <deploy>}.
+ */
+final class CopyDeployment
+{
+    final File   file
+    final String url
+    final String groupId
+    final String artifactId
+    final String version
+    final String classifier
+
+
+    @Requires({ file && url && groupId && artifactId && version })
+    CopyDeployment ( File file, String url, String groupId, String artifactId, String version, String classifier )
+    {
+        this.file       = file
+        this.url        = url
+        this.groupId    = groupId
+        this.artifactId = artifactId
+        this.version    = version
+        this.classifier = classifier
+    }
+
+
+    @Override
+    String toString ()
+    {
+        "[$file.canonicalPath] to [$url] as [<$groupId>:<$artifactId>:<$version>${ classifier ? ':<' + classifier + '>' : '' }]"
+    }
+}
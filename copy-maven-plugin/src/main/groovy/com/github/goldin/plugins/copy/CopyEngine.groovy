@@ -0,0 +1,335 @@
+package com.github.goldin.plugins.copy
+
+import static com.github.goldin.plugins.common.GMojoUtils.*
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.nio.channels.FileChannel
+import java.nio.file.FileStore
+import java.nio.file.Files
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+
+/**
+ * Copies files as-is (no filtering or replacements), trying the cheapest copy strategy first:
+ * copy-on-write clone, kernel-side channel transfer, large-buffer stream copy.
+ */
+final class CopyEngine
+{
+    /**
+     * Copy strategies, from the cheapest to the most expensive one.
+     */
+    static enum Strategy
+    {
+        Reflink, // Copy-on-write clone (FICLONE), btrfs/XFS only
+        Channel, // FileChannel.transferTo(), copying is done by the kernel
+        Stream   // Large-buffer stream copy
+    }
+
+
+    /**
+     * Ways of materializing a file at the destination path, see {@link #link}.
+     */
+    static enum LinkMode
+    {
+        Copy,     // Copy with the cheapest strategy available
+        Hardlink, // Hard link, source and destination share the same file
+        Symlink,  // Symbolic link to the source file
+        Reflink   // Copy-on-write clone, regardless of the file size
+    }
+
+
+    private static final int         BUFFER_SIZE   = 1024 * 1024
+    private static final long        CHANNEL_CHUNK = 64 * 1024 * 1024
+    private static final boolean     LINUX         = System.getProperty( 'os.name', '' ).toLowerCase().contains( 'linux' )
+    private static final Set<String> REFLINK_TYPES = [ 'btrfs', 'xfs' ] as Set // File systems supporting FICLONE
+
+    private final Strategy firstStrategy
+    private final long     reflinkThreshold
+
+    /**
+     * Source and destination file stores where copy-on-write clone has failed and shouldn't be attempted again,
+     * file stores of directories are looked up once.
+     */
+    private final Set<List<FileStore>>      reflinkFailed = Collections.synchronizedSet( new HashSet<List<FileStore>>())
+    private final Map<String, FileStore>    fileStores    = new ConcurrentHashMap<String, FileStore>()
+    private final Map<Strategy, AtomicLong> filesCopied   = Strategy.values().collectEntries { [ it, new AtomicLong( 0 ) ] }
+    private final Map<LinkMode, AtomicLong> filesLinked   = LinkMode.values().collectEntries { [ it, new AtomicLong( 0 ) ] }
+
+
+    /**
+     * Creates new copy engine.
+     *
+     * @param firstStrategy    strategy to try first, more expensive strategies are tried if it fails
+     * @param reflinkThreshold minimal size of files to clone, smaller files are not worth a process to be forked
+     */
+    @Requires({ firstStrategy && ( reflinkThreshold >= 0 ) })
+    CopyEngine ( Strategy firstStrategy, long reflinkThreshold )
+    {
+        this.firstStrategy    = firstStrategy
+        this.reflinkThreshold = reflinkThreshold
+    }
+
+
+    /**
+     * Creates new copy engine from {@code <copyStrategy>} value.
+     *
+     * @param copyStrategy     "auto" or name of the strategy to try first
+     * @param reflinkThreshold minimal size of files to clone
+     * @return new copy engine or {@code null} if "default" strategy is specified
+     */
+    @Requires({ copyStrategy })
+    static CopyEngine create ( String copyStrategy, long reflinkThreshold )
+    {
+        if ( copyStrategy.equalsIgnoreCase( 'default' )) { return null }
+        if ( copyStrategy.equalsIgnoreCase( 'auto'    )) { return new CopyEngine( Strategy.Reflink, reflinkThreshold ) }
+
+        final  strategy = Strategy.values().find { it.name().equalsIgnoreCase( copyStrategy ) }
+        assert strategy, "Unknown <copyStrategy> [$copyStrategy], should be one of ${ [ 'default', 'auto' ] + Strategy.values()*.name()*.toLowerCase() }"
+        new CopyEngine( strategy, reflinkThreshold )
+    }
+
+
+    /**
+     * Converts {@code <linkMode>} value to link mode.
+     *
+     * @param linkMode "copy", "hardlink", "symlink" or "reflink"
+     * @return link mode corresponding to the value specified
+     */
+    @Requires({ linkMode })
+    @Ensures ({ result })
+    static LinkMode linkMode ( String linkMode )
+    {
+        final  mode = LinkMode.values().find { it.name().equalsIgnoreCase( linkMode ) }
+        assert mode, "Unknown <linkMode> [$linkMode], should be one of ${ LinkMode.values()*.name()*.toLowerCase() }"
+        mode
+    }
+
+
+    /**
+     * Copies source file to destination file, preserving its last modified time.
+     *
+     * @param sourceFile      file to copy
+     * @param destinationFile file to copy the source to, overwritten if exists
+     * @return strategy used to copy the file
+     */
+    @Requires({ sourceFile.file && destinationFile && ( sourceFile.canonicalPath != destinationFile.canonicalPath ) })
+    @Ensures ({ result && destinationFile.file })
+    Strategy copy ( File sourceFile, File destinationFile )
+    {
+        destinationFile.parentFile.mkdirs()
+
+        for ( strategy in Strategy.values().findAll { it >= firstStrategy })
+        {
+            if ( copyWith( strategy, sourceFile, destinationFile ))
+            {
+                assert destinationFile.length() == sourceFile.length(), \
+                       "[$destinationFile] size [${ destinationFile.length() }] is different from [$sourceFile] size [${ sourceFile.length() }]"
+
+                // noinspection JavaStylePropertiesInvocation, GroovySetterCallCanBePropertyAccess
+                destinationFile.setLastModified( sourceFile.lastModified())
+                filesCopied[ strategy ].incrementAndGet()
+                return strategy
+            }
+        }
+
+        throw new IllegalStateException( "Failed to copy [$sourceFile] to [$destinationFile]" )
+    }
+
+
+    /**
+     * Materializes source file at the destination path with the link mode specified.
+     * File is copied if link can't be created, like when source and destination are on different file systems.
+     *
+     * @param sourceFile      file to link
+     * @param destinationFile link to create, overwritten if exists (links existing are replaced, not followed)
+     * @param mode            link mode
+     * @return true if link or clone was created, false if file was copied
+     */
+    @Requires({ sourceFile.file && destinationFile && mode &&
+                ( sourceFile.canonicalPath != new File( destinationFile.absoluteFile.parentFile.canonicalFile, destinationFile.name ).path ) })
+    @Ensures ({ destinationFile.file })
+    boolean link ( File sourceFile, File destinationFile, LinkMode mode )
+    {
+        final destination = destinationFile.toPath()
+        destinationFile.parentFile.mkdirs()
+        Files.deleteIfExists( destination )
+
+        if (( mode == LinkMode.Hardlink ) || ( mode == LinkMode.Symlink ))
+        {
+            try
+            {
+                if ( mode == LinkMode.Hardlink ) { Files.createLink( destination, sourceFile.toPath()) }
+                else                             { Files.createSymbolicLink( destination, sourceFile.toPath().toAbsolutePath()) }
+
+                filesLinked[ mode ].incrementAndGet()
+                return true
+            }
+            catch ( IOException e )
+            {
+                if ( log.debugEnabled ) { log.debug( "Failed to create $mode [$destinationFile] of [$sourceFile], copying it: $e" ) }
+            }
+            catch ( UnsupportedOperationException e )
+            {
+                if ( log.debugEnabled ) { log.debug( "Failed to create $mode [$destinationFile] of [$sourceFile], copying it: $e" ) }
+            }
+        }
+        else if (( mode == LinkMode.Reflink ) && reflink( sourceFile, destinationFile, 0 ))
+        {
+            // noinspection JavaStylePropertiesInvocation, GroovySetterCallCanBePropertyAccess
+            destinationFile.setLastModified( sourceFile.lastModified())
+            filesLinked[ mode ].incrementAndGet()
+            return true
+        }
+
+        copy( sourceFile, destinationFile )
+        filesLinked[ LinkMode.Copy ].incrementAndGet()
+        false
+    }
+
+
+    /**
+     * Retrieves number of files copied with each strategy.
+     */
+    Map<Strategy, Long> statistics ()
+    {
+        filesCopied.collectEntries { Strategy strategy, AtomicLong counter -> [ strategy, counter.get() ] }
+    }
+
+
+    /**
+     * Retrieves number of files materialized with each link mode, files copied when link couldn't be created are counted as copies.
+     */
+    Map<LinkMode, Long> linkStatistics ()
+    {
+        filesLinked.collectEntries { LinkMode mode, AtomicLong counter -> [ mode, counter.get() ] }
+    }
+
+
+    /**
+     * Attempts to copy the file with the strategy specified.
+     *
+     * @return true if file was copied, false if strategy is not applicable or has failed,
+     *         exception is thrown only if the last strategy fails
+     */
+    private boolean copyWith ( Strategy strategy, File sourceFile, File destinationFile )
+    {
+        switch ( strategy )
+        {
+            case Strategy.Reflink : return reflink( sourceFile, destinationFile, reflinkThreshold )
+            case Strategy.Channel : return channelCopy( sourceFile, destinationFile )
+            default               : streamCopy( sourceFile, destinationFile )
+                                    return true
+        }
+    }
+
+
+    /**
+     * Clones the file with "cp --reflink=always" making source and destination share data blocks.
+     * Only attempted on Linux for files larger than the threshold specified, within a single btrfs or XFS file store,
+     * and not attempted again between file stores where it has failed once.
+     */
+    private boolean reflink ( File sourceFile, File destinationFile, long threshold )
+    {
+        if (( ! LINUX ) || ( sourceFile.length() < threshold )) { return false }
+
+        List<FileStore> stores = null
+
+        try
+        {
+            stores = [ fileStore( sourceFile.parentFile ), fileStore( destinationFile.parentFile ) ]
+            if ( reflinkFailed.contains( stores )) { return false }
+            if (( stores[ 0 ] != stores[ 1 ] ) || ( ! ( stores[ 0 ].type().toLowerCase() in REFLINK_TYPES )))
+            {
+                reflinkFailed << stores
+                return false
+            }
+
+            final process = new ProcessBuilder( 'cp', '--reflink=always', sourceFile.canonicalPath, destinationFile.canonicalPath ).
+                            redirectErrorStream( true ).start()
+            final output  = process.inputStream.text // Consuming the output so that process doesn't block
+            if ( process.waitFor() == 0 ) { return true }
+            if ( log.debugEnabled ) { log.debug( "Failed to clone [$sourceFile] to [$destinationFile]: ${ output.trim() }" ) }
+        }
+        catch ( IOException e )
+        {
+            if ( log.debugEnabled ) { log.debug( "Failed to clone [$sourceFile] to [$destinationFile]: $e" ) }
+        }
+
+        if ( stores ) { reflinkFailed << stores }
+        destinationFile.delete()
+        false
+    }
+
+
+    /**
+     * Retrieves file store of the directory specified.
+     */
+    private FileStore fileStore ( File directory )
+    {
+        final String path  = directory.canonicalPath
+        FileStore    store = fileStores[ path ]
+
+        if ( store == null )
+        {
+            store              = Files.getFileStore( directory.toPath())
+            fileStores[ path ] = store
+        }
+
+        store
+    }
+
+
+    /**
+     * Copies the file with {@link FileChannel#transferTo} so that data isn't copied to user space.
+     */
+    private boolean channelCopy ( File sourceFile, File destinationFile )
+    {
+        final   is     = new FileInputStream( sourceFile )
+        final   os     = new FileOutputStream( destinationFile )
+        boolean copied = false
+
+        try
+        {
+            final FileChannel from     = is.channel
+            final FileChannel to       = os.channel
+            final long        size     = from.size()
+            long              position = 0
+
+            while ( position < size )
+            {
+                final long transferred = from.transferTo( position, Math.min( CHANNEL_CHUNK, size - position ), to )
+                if ( transferred < 1 ) { throw new IOException( "[$sourceFile] - no bytes transferred at position [$position]" ) }
+                position += transferred
+            }
+
+            copied = true
+        }
+        catch ( IOException e )
+        {
+            if ( log.debugEnabled ) { log.debug( "Failed to transfer [$sourceFile] to [$destinationFile], copying it with streams: $e" ) }
+        }
+        finally
+        {
+            is.close()
+            os.close()
+        }
+
+        if ( ! copied ) { destinationFile.delete() }
+        copied
+    }
+
+
+    private void streamCopy ( File sourceFile, File destinationFile )
+    {
+        final buffer = new byte[ BUFFER_SIZE ]
+
+        sourceFile.withInputStream {
+            InputStream is ->
+            destinationFile.withOutputStream {
+                OutputStream os ->
+                for ( int n = is.read( buffer ); n > -1; n = is.read( buffer )) { os.write( buffer, 0, n ) }
+            }
+        }
+    }
+}
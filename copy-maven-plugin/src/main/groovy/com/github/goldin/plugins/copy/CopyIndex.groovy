@@ -0,0 +1,161 @@
+package com.github.goldin.plugins.copy
+
+import static com.github.goldin.plugins.common.GMojoUtils.*
+import com.github.goldin.plugins.common.ChecksumCache
+import org.gcontracts.annotations.Requires
+import java.util.concurrent.ConcurrentHashMap
+
+
+/**
+ * Persistent index of files copied by a {@code <resource>} to one of its target paths,
+ * used by {@code <skipIdenticalUseIndex>} to skip files that didn't change since they were copied
+ * without opening either source or destination file.
+ *
+ * Index file is specific to the resource settings shaping the output (replacements, filtering, encoding, etc),
+ * so changing any of them starts a new index.
+ */
+final class CopyIndex
+{
+    private final File                indexFile
+    private final String              description
+
+    /**
+     * Destination file canonical path => {@link Entry} of the last copy.
+     */
+    private final Map<String, Entry>  entries  = new ConcurrentHashMap<String, Entry>()
+    private volatile boolean          modified = false
+
+
+    /**
+     * State of source and destination files after the last copy.
+     */
+    private static final class Entry
+    {
+        String sourcePath
+        long   sourceSize
+        long   sourceTime
+        long   destinationSize
+        long   destinationTime
+        String checksum // Source file checksum, empty if not calculated
+
+        @Override
+        String toString () { [ sourceSize, sourceTime, destinationSize, destinationTime, checksum, sourcePath ].join( '|' ) }
+
+        static Entry parse ( String s )
+        {
+            final values = s.split( /\|/, 6 )
+            if ( values.size() != 6 ) { return null }
+
+            new Entry( sourceSize      : values[ 0 ] as long,
+                       sourceTime      : values[ 1 ] as long,
+                       destinationSize : values[ 2 ] as long,
+                       destinationTime : values[ 3 ] as long,
+                       checksum        : values[ 4 ],
+                       sourcePath      : values[ 5 ] )
+        }
+    }
+
+
+    /**
+     * Creates new index, loading it from the directory specified if it was saved before.
+     *
+     * @param indexDirectory  directory to keep index files in
+     * @param sourceDirectory directory files are copied from
+     * @param targetPath      directory files are copied to
+     * @param fingerprint     resource settings shaping the output of files copied
+     */
+    @Requires({ indexDirectory && sourceDirectory && targetPath && ( fingerprint != null ) })
+    CopyIndex ( File indexDirectory, File sourceDirectory, File targetPath, String fingerprint )
+    {
+        final key        = "${ sourceDirectory.canonicalPath }|${ targetPath.canonicalPath }|$fingerprint"
+        this.indexFile   = new File( indexDirectory, "${ UUID.nameUUIDFromBytes( key.getBytes( 'UTF-8' )) }.index" )
+        this.description = "[$sourceDirectory] => [$targetPath]"
+
+        if ( indexFile.file )
+        {
+            final properties = new Properties()
+            indexFile.withInputStream { properties.load( it ) }
+
+            for ( String destinationPath in properties.stringPropertyNames())
+            {
+                final entry = Entry.parse( properties.getProperty( destinationPath ))
+                if ( entry ) { entries[ destinationPath ] = entry }
+            }
+        }
+    }
+
+
+    /**
+     * Determines if source file is unchanged since it was copied to the destination file
+     * and destination file wasn't modified since then.
+     *
+     * @param sourceFile      file to copy
+     * @param destinationFile file to copy the source to
+     * @param useChecksum     whether source file checksum should be compared if its timestamp has changed
+     * @return true if the file doesn't need to be copied again, false otherwise
+     */
+    @Requires({ sourceFile && destinationFile })
+    boolean upToDate ( File sourceFile, File destinationFile, boolean useChecksum )
+    {
+        final entry = entries[ destinationFile.canonicalPath ]
+
+        if (( ! entry ) ||
+            ( entry.sourcePath      != sourceFile.canonicalPath      ) ||
+            ( entry.sourceSize      != sourceFile.length()           ) ||
+            ( entry.destinationSize != destinationFile.length()      ) ||
+            ( entry.destinationTime != destinationFile.lastModified()) ||
+            ( ! destinationFile.file ))
+        {
+            return false
+        }
+
+        if ( entry.sourceTime == sourceFile.lastModified()) { return true }
+
+        if ( useChecksum && entry.checksum && ( entry.checksum == ChecksumCache.checksum( sourceFile )))
+        {
+            entry.sourceTime = sourceFile.lastModified()
+            modified         = true
+            return true
+        }
+
+        false
+    }
+
+
+    /**
+     * Records source and destination files after the copy.
+     *
+     * @param sourceFile      file copied
+     * @param destinationFile file the source was copied to
+     * @param useChecksum     whether source file checksum should be recorded
+     */
+    @Requires({ sourceFile.file && destinationFile.file })
+    void update ( File sourceFile, File destinationFile, boolean useChecksum )
+    {
+        entries[ destinationFile.canonicalPath ] = new Entry( sourcePath      : sourceFile.canonicalPath,
+                                                              sourceSize      : sourceFile.length(),
+                                                              sourceTime      : sourceFile.lastModified(),
+                                                              destinationSize : destinationFile.length(),
+                                                              destinationTime : destinationFile.lastModified(),
+                                                              checksum        : ( useChecksum ? ChecksumCache.checksum( sourceFile ) : '' ))
+        modified = true
+    }
+
+
+    /**
+     * Saves the index if it was modified.
+     */
+    void save ()
+    {
+        if ( ! modified ) { return }
+
+        final properties = new Properties()
+        entries.each { String destinationPath, Entry entry -> properties.setProperty( destinationPath, entry.toString()) }
+
+        final tempFile = new File( fileBean().mkdirs( indexFile.parentFile ), indexFile.name + '.tmp' )
+        tempFile.withOutputStream { properties.store( it, description ) }
+        fileBean().delete( indexFile )
+        assert tempFile.renameTo( indexFile ), "Failed to rename [$tempFile] to [$indexFile]"
+        modified = false
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.goldin.plugins.copy
+
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+
+/**
+ * Metrics of a single {@code <resource>}: counters of each operation performed and time spent in each phase.
+ * Updated concurrently by threads processing the resource files.
+ *
+ * Phases are measured in wall-clock time and nested operations overlap, like files filtered
+ * to a temporary directory before being packed counted in both "copy" and "compress" phases.
+ * Phases time is therefore not summed: files and bytes throughput is calculated over the
+ * resource wall-clock time, network throughput - over the "network" phase time.
+ */
+final class CopyMetrics
+{
+    static enum Phase
+    {
+        Scan,     // Listing files matched by include and exclude patterns
+        Filter,   // Evaluating <filter> expression
+        Copy,     // Copying, filtering or linking files
+        Compress, // Packing and unpacking archives
+        Network   // Downloading and uploading files
+    }
+
+
+    static enum Counter
+    {
+        FilesScanned,     // Files matched by include and exclude patterns
+        FilesMatched,     // Files left after <filter> was applied
+        FilesCopied,      // Files copied, filtered or extracted
+        FilesLinked,      // Files hard linked, symbolically linked or cloned according to <linkMode>
+        FilesSkipped,     // Files skipped as identical to their destination
+        FilesDeleted,     // Files and directories deleted by <clean>
+        BytesRead,        // Bytes of files copied or archives unpacked
+        BytesWritten,     // Bytes of files copied, archives packed or files extracted
+        ArchivesPacked,
+        ArchivesUnpacked,
+        NetworkBytes      // Bytes downloaded or uploaded
+    }
+
+
+    /**
+     * Operation ("copy", "pack", "unpack", etc) => counters
+     */
+    private final Map<String, Map<Counter, AtomicLong>> operations = new ConcurrentHashMap<String, Map<Counter, AtomicLong>>()
+    private final Map<Phase, AtomicLong>                phaseNanos = Phase.values().collectEntries { [ it, new AtomicLong( 0 ) ] }
+
+
+    /**
+     * Adds value to the operation counter.
+     *
+     * @param operation operation performed, like "copy" or "pack"
+     * @param counter   counter to update
+     * @param value     value to add
+     */
+    @Requires({ operation && counter })
+    void add ( String operation, Counter counter, long value = 1 )
+    {
+        Map<Counter, AtomicLong> counters = operations[ operation ]
+
+        if ( counters == null )
+        {
+            operations.putIfAbsent( operation, Counter.values().collectEntries { [ it, new AtomicLong( 0 ) ] })
+            counters = operations[ operation ]
+        }
+
+        counters[ counter ].addAndGet( value )
+    }
+
+
+    /**
+     * Runs the action specified, adding time it took to the phase.
+     *
+     * @param phase  phase the action belongs to
+     * @param action action to run
+     * @return action result
+     */
+    @Requires({ phase && action })
+    <T> T time ( Phase phase, Closure<T> action )
+    {
+        final long t = System.nanoTime()
+        try     { action() }
+        finally { phaseNanos[ phase ].addAndGet( System.nanoTime() - t ) }
+    }
+
+
+    /**
+     * Retrieves counter value summed over all operations.
+     */
+    @Requires({ counter })
+    long total ( Counter counter )
+    {
+        ( long ) operations.values().sum( 0L ){ Map<Counter, AtomicLong> counters -> counters[ counter ].get() }
+    }
+
+
+    /**
+     * Converts metrics to a Map, suitable for a JSON report.
+     *
+     * @param resource resource the metrics belong to
+     * @return metrics of the resource: operations counters, totals, phases time and throughput
+     */
+    @Requires({ resource })
+    @Ensures ({ result })
+    Map<String, Object> toMap ( CopyResource resource )
+    {
+        final Closure<Map<String, Long>> counters = {
+            Closure<Long> value -> Counter.values().collectEntries { Counter c -> [ name( c ), value( c ) ] }
+        }
+
+        final long  timeMs       = ( resource.endTime >= resource.startTime ) ? ( resource.endTime - resource.startTime ) : 0
+        final long  timeNs       = timeMs * 1000000
+        final long  networkNs    = phaseNanos[ Phase.Network ].get()
+
+        [ resource    : resource.toString(),
+          id          : resource.id,
+          description : resource.description,
+          timeMs      : timeMs,
+          phasesMs    : Phase.values().collectEntries { Phase p -> [ name( p ), ( long ) ( phaseNanos[ p ].get() / 1000000 ) ] },
+          totals      : counters { Counter c -> total( c ) },
+          operations  : operations.keySet().sort().collectEntries {
+                            String operation -> [ operation, counters { Counter c -> operations[ operation ][ c ].get() } ]
+                        },
+          throughput  : [ bytesWrittenPerSecond : perSecond( total( Counter.BytesWritten ), timeNs     ),
+                          networkBytesPerSecond : perSecond( total( Counter.NetworkBytes ), networkNs  ),
+                          filesPerSecond        : perSecond( total( Counter.FilesCopied ) + total( Counter.FilesLinked ), timeNs ) ]]
+    }
+
+
+    private static long perSecond ( long value, long nanos )
+    {
+        ( nanos > 0 ) ? ( long ) ( value * 1000000000.0 / nanos ) : 0
+    }
+
+
+    /**
+     * "FilesScanned" => "filesScanned"
+     */
+    private static String name ( Enum e )
+    {
+        e.name()[ 0 ].toLowerCase() + e.name().substring( 1 )
+    }
+}
@@ -1,12 +1,15 @@
 package com.github.goldin.plugins.copy
 
 import static com.github.goldin.plugins.common.GMojoUtils.*
-import com.github.goldin.gcommons.beans.ExecOption
 import com.github.goldin.gcommons.util.GroovyConfig
 import com.github.goldin.plugins.common.BaseGroovyMojo
+import com.github.goldin.plugins.common.ChecksumCache
+import com.github.goldin.plugins.common.Chmod
+import com.github.goldin.plugins.common.FileScanner
 import com.github.goldin.plugins.common.NetworkUtils
 import com.github.goldin.plugins.common.Replace
-import groovy.io.FileType
+import com.github.goldin.plugins.common.ThreadLocals
+import groovy.json.JsonOutput
 import org.apache.maven.plugin.MojoExecutionException
 import org.apache.maven.plugins.annotations.*
 import org.apache.maven.project.MavenProjectHelper
@@ -14,6 +17,13 @@ import org.apache.maven.shared.filtering.MavenFileFilter
 import org.codehaus.plexus.util.FileUtils
 import org.gcontracts.annotations.Ensures
 import org.gcontracts.annotations.Requires
+import javax.xml.bind.DatatypeConverter
+import java.nio.file.Files
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CancellationException
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicReference
 
 
 /**
@@ -47,12 +57,75 @@ class CopyMojo extends BaseGroovyMojo
     @Parameter ( required = false )
     private boolean skipIdenticalUseChecksum = false
 
+    /**
+     * Whether {@code <skipIdentical>} should skip files unchanged since they were last copied
+     * using the index kept in {@code <indexDirectory>}, without comparing them to destination files
+     */
+    @Parameter ( required = false )
+    private boolean skipIdenticalUseIndex = false
+
+    @Parameter ( required = true, defaultValue = '${project.build.directory}/copy-maven-plugin/index' )
+    private File indexDirectory
+
+    /**
+     * Whether JSON report of resources metrics should be written to {@code <metricsReport>}:
+     * files scanned, copied and skipped, bytes read and written, archives packed and unpacked, network bytes,
+     * time spent in each phase and throughput, for every resource and operation
+     */
+    @Parameter ( required = false )
+    private boolean metrics = false
+
+    @Parameter ( required = true, defaultValue = '${project.build.directory}/copy-maven-plugin/metrics-${mojoExecution.executionId}.json' )
+    private File metricsReport
+
+    /**
+     * Whether source directories of resources should be watched after they're processed, copying files as they change,
+     * until the build is interrupted or {@code <watchTimeout>} expires
+     */
+    @Parameter ( required = false )
+    private boolean watch = false
+
+    /**
+     * Period of time (in milliseconds) with no changes after which files changed are copied when {@code <watch>} is enabled
+     */
+    @Parameter ( required = false )
+    private long watchDebounce = 200
+
+    /**
+     * Period of time (in milliseconds) to watch source directories for, zero to watch them until the build is interrupted
+     */
+    @Parameter ( required = false )
+    private long watchTimeout = 0
+
+    /**
+     * File to keep checksums of files compared in between builds, checksums are only kept in memory if not specified
+     */
+    @Parameter ( required = false )
+    private File checksumCache
+
     @Parameter ( required = false )
     private boolean skipPacked = false
 
     @Parameter ( required = false )
     private boolean skipUnpacked = false
 
+    /**
+     * Whether {@code <unpack>} should keep a marker of each archive unpacked in the destination directory
+     * and skip unpacking it again while archive content, entries unpacked, settings shaping the output and files unpacked are the same
+     */
+    @Parameter ( required = false )
+    private boolean unpackMarkers = false
+
+    /**
+     * Whether {@code <unpack>} should extract archives once to {@code <unpackCacheDirectory>}, shared by all builds,
+     * and hard-link files extracted to destination directories. Files hard-linked should not be modified in place.
+     */
+    @Parameter ( required = false )
+    private boolean sharedUnpackCache = false
+
+    @Parameter ( required = true, defaultValue = '${user.home}/.m2/copy-maven-plugin/unpacked' )
+    private File unpackCacheDirectory
+
     @Parameter ( required = false )
     private boolean stripVersion = false
 
@@ -65,6 +138,104 @@ class CopyMojo extends BaseGroovyMojo
     @Parameter ( required = false )
     private boolean parallelDownload = false
 
+    /**
+     * Whether files of each resource should be copied by a pool of {@code <copyThreads>} threads.
+     * Archives unpacked to the same destination are still unpacked one after another, see {@code <unpackThreads>}
+     */
+    @Parameter ( required = false )
+    private boolean parallelCopy = false
+
+    /**
+     * Number of threads copying files of each resource when {@code <parallelCopy>} is enabled,
+     * can be overridden by a resource {@code <copyThreads>}
+     */
+    @Parameter ( required = false )
+    private int copyThreads = Runtime.runtime.availableProcessors()
+
+    /**
+     * Number of threads walking directories and deleting files of {@code <clean>}
+     */
+    @Parameter ( required = false )
+    private int cleanThreads = Runtime.runtime.availableProcessors()
+
+    /**
+     * Whether files of copy and unpack resources should be copied or unpacked while their directory is still scanned,
+     * scanned files are passed through a queue of at most {@code <streamingQueue>} files and copied in batches.
+     * Files copied are spilled to disk before {@code <process>} is evaluated and are passed to it in the order
+     * they were copied, which may differ between builds, rather than sorted as files of resources not streamed.
+     * Resources with {@code <filter>}, which is evaluated with all files at once, are not streamed.
+     */
+    @Parameter ( required = false )
+    private boolean streaming = false
+
+    /**
+     * Maximal number of files scanned and waiting to be copied when {@code <streaming>} is enabled,
+     * scanning blocks once the queue is full, can be overridden by a resource {@code <streamingQueue>}
+     */
+    @Parameter ( required = false )
+    private int streamingQueue = 10000
+
+    /**
+     * Whether {@code <pack>} should create Zip archives compressing their entries on {@code <packThreads>} threads,
+     * large entries are split into blocks compressed in parallel
+     */
+    @Parameter ( required = false )
+    private boolean parallelPack = false
+
+    /**
+     * Number of threads compressing entries of Zip archives packed with {@code <parallelPack>} and of "tar.zst" archives,
+     * can be overridden by a resource {@code <packThreads>}
+     */
+    @Parameter ( required = false )
+    private int packThreads = Runtime.runtime.availableProcessors()
+
+    /**
+     * zstd compression level of "tar.zst" archives {@code <pack>} creates, from 1 (fastest) to 22,
+     * "tar.zst" archives are compressed on {@code <packThreads>} threads
+     */
+    @Parameter ( required = false )
+    private int zstdLevel = 3
+
+    /**
+     * Whether {@code <unpack>} should extract Zip archives inflating their entries on {@code <unpackThreads>} threads
+     */
+    @Parameter ( required = false )
+    private boolean parallelUnpack = false
+
+    /**
+     * Number of threads inflating entries of Zip archives unpacked with {@code <parallelUnpack>},
+     * can be overridden by a resource {@code <unpackThreads>}
+     */
+    @Parameter ( required = false )
+    private int unpackThreads = Runtime.runtime.availableProcessors()
+
+    /**
+     * Time of entries in archives created by {@code <archiveEngine>} or with {@code <parallelPack>}, in seconds since the epoch or ISO 8601 format,
+     * files last modified time is used if not specified
+     */
+    @Parameter ( required = false, defaultValue = '${project.build.outputTimestamp}' )
+    private String outputTimestamp
+
+    /**
+     * How files are copied when no filtering or replacements apply: "default" to copy them as before,
+     * "auto" (copy-on-write clone on btrfs/XFS, then channel transfer, then stream copy), "reflink", "channel" or "stream"
+     */
+    @Parameter ( required = false )
+    private String copyStrategy = 'default'
+
+    /**
+     * Minimal size of files to attempt a copy-on-write clone of, smaller files are not worth it
+     */
+    @Parameter ( required = false )
+    private long reflinkThreshold = 8 * 1024 * 1024
+
+    /**
+     * How dependencies are materialized in target paths when they're copied with no patterns or further processing:
+     * "copy", "hardlink", "symlink" or "reflink" (copy-on-write clone), files are copied when links can't be created
+     */
+    @Parameter ( required = false )
+    private String linkMode = 'copy'
+
     @Parameter ( required = false )
     private String customArchiveFormats
 
@@ -90,6 +261,13 @@ class CopyMojo extends BaseGroovyMojo
     @Parameter ( required = false )
     private String nonFilteredExtensions
 
+    /**
+     * Size of the window (in characters) {@code <replace>} patterns are matched over when files are streamed
+     * instead of being read into memory, zero to always read them into memory. A single match can't be longer than the window.
+     */
+    @Parameter ( required = false )
+    private int replaceWindow = 0
+
     @Parameter ( required = false )
     private boolean failIfNotFound = true
 
@@ -102,6 +280,43 @@ class CopyMojo extends BaseGroovyMojo
     @Parameter ( required = false )
     private boolean useTrueZipForUnpack = true
 
+    /**
+     * Engine {@code <pack>} and {@code <unpack>} use for Zip archives: "jdk" ({@code java.util.zip}), "commons-compress", "truezip",
+     * "parallel" (on {@code <packThreads>} and {@code <unpackThreads>} threads) or "default" to choose it with
+     * {@code <parallelPack>}, {@code <parallelUnpack>}, {@code <useTrueZipForPack>} and {@code <useTrueZipForUnpack>} as before.
+     * Entries filtered or replaced are transformed as they are packed or extracted only by "jdk", "commons-compress" and "truezip",
+     * otherwise they are transformed in a temporary directory as before
+     */
+    @Parameter ( required = false )
+    private String archiveEngine = 'default'
+
+    /**
+     * Whether resources should be processed concurrently, respecting their {@code <after>} declarations
+     */
+    @Parameter ( required = false )
+    private boolean parallelResources = false
+
+    /**
+     * Maximal number of resources processed concurrently when {@code <parallelResources>} is enabled
+     */
+    @Parameter ( required = false )
+    private int resourcesThreads = Runtime.runtime.availableProcessors()
+
+    /**
+     * Whether archives of {@code <deploy>} resources should be deployed after all resources are processed,
+     * archives deployed to the same repository are sent as a single request.
+     * Archives shouldn't be modified or deleted by resources processed after them.
+     */
+    @Parameter ( required = false )
+    private boolean batchDeploy = false
+
+    /**
+     * Maximal number of deploy requests sent concurrently when {@code <batchDeploy>} is enabled,
+     * archives deployed to the same repository are split between them
+     */
+    @Parameter ( required = false )
+    private int deployThreads = 1
+
     @Parameter ( required = false )
     private CopyResource[] resources
 
@@ -115,6 +330,13 @@ class CopyMojo extends BaseGroovyMojo
 
 
     private final CopyMojoHelper helper = new CopyMojoHelper( this )
+    private       CopyEngine     copyEngine
+    private       CopyEngine     linkEngine
+
+    /**
+     * Archives to deploy when all resources are processed, if {@code <batchDeploy>} is enabled
+     */
+    private final List<CopyDeployment> deployments = Collections.synchronizedList( new ArrayList<CopyDeployment>())
 
 
     /**
@@ -140,12 +362,36 @@ class CopyMojo extends BaseGroovyMojo
         }
         file''' ]
 
+    /**
+     * Minimal number of files {@code <chmod>} is applied to in parallel.
+     */
+    private static final int CHMOD_PARALLEL_FILES = 1000
+
+    /**
+     * Maximal number of files {@code <chmod>} is applied to at once.
+     */
+    private static final int CHMOD_BATCH = 100000
+
+    /**
+     * Maximal number of files taken from the queue of streamed files and filtered at once.
+     */
+    private static final int STREAMING_BATCH = 1000
+
+    /**
+     * Maximal number of files streamed resources keep in memory for {@code <process>}, the rest are spilled to disk.
+     */
+    private static final int STREAMING_SPILL_THRESHOLD = 100000
+
+    /**
+     * Marks the end of files streamed.
+     */
+    private static final File END_OF_FILES = new File( '' )
+
 
     /**
      * Copies the Resources specified
      */
     @Override
-    @SuppressWarnings([ 'AbcComplexity', 'CatchThrowable' ])
     void doExecute()
     {
         final  resources = resources()
@@ -153,55 +399,160 @@ class CopyMojo extends BaseGroovyMojo
 
         updateCustomArchiveFormats()
 
-        for ( CopyResource resource in resources )
+        copyEngine = CopyEngine.create( copyStrategy, reflinkThreshold )
+        linkEngine = copyEngine ?: new CopyEngine( CopyEngine.Strategy.Channel, reflinkThreshold )
+        final scheduler = new CopyResourcesScheduler( resources )
+
+        if ( checksumCache ) { ChecksumCache.load( checksumCache ) }
+
+        try
         {
-            resource.with {
+            if ( parallelResources )
+            {
+                assert ( resourcesThreads > 0 ), "<resourcesThreads> should be positive, [$resourcesThreads] specified"
+                scheduler.execute( resourcesThreads ){ CopyResource resource -> executeResource( resource ) }
+            }
+            else
+            {
+                for ( CopyResource resource in scheduler.ordered()){ executeResource( resource ) }
+            }
+        }
+        finally
+        {
+            if ( checksumCache ) { ChecksumCache.save( checksumCache ) }
+        }
 
-                boolean failed = false
+        if ( deployments )
+        {
+            assert ( deployThreads > 0 ), "<deployThreads> should be positive, [$deployThreads] specified"
+            helper.deploy( new ArrayList<CopyDeployment>( deployments ), deployThreads )
+        }
 
-                try
-                {
-                    startTime = System.currentTimeMillis()
-                    processResource( resource )
-                }
-                catch( Throwable e )
-                {
-                    failed              = true
-                    String errorMessage = "Processing <resource> [$resource] ${ failsWith ? 'expectedly ' : '' }failed with [${ e.class.name }]"
+        if ( verbose && copyEngine )
+        {
+            final statistics = copyEngine.statistics().findAll { it.value > 0 }
+            if ( statistics ) { log.info( "Files copied: ${ statistics.collect { "${ it.key.name().toLowerCase() } - ${ it.value }" }.join( ', ' ) }" )}
+        }
 
-                    if ( failsWith )
-                    {
-                        if ( ! e.class.name.endsWith( failsWith ))
-                        {
-                            throw new MojoExecutionException(
-                                "Resource [$resource] should have failed with [$failsWith], failed with [$e] instead",
-                                e )
-                        }
-                    }
-                    else if ( generalBean().choose( failOnError, this.failOnError ))
-                    {
-                        throw new MojoExecutionException( errorMessage, e )
-                    }
+        if ( metrics ) { writeMetricsReport( resources ) }
 
-                    ( failsWith ? log.&info : log.&warn )( errorMessage )
-                }
+        if ( verbose && linkEngine )
+        {
+            final statistics = linkEngine.linkStatistics().findAll { it.value > 0 }
+            if ( statistics ) { log.info( "Dependencies materialized: ${ statistics.collect { "${ it.key.name().toLowerCase() } - ${ it.value }" }.join( ', ' ) }" )}
+        }
+
+        if ( watch ) { watchResources() }
+    }
+
+
+    /**
+     * Watches source directories of resources processed, copying files as they change.
+     */
+    private void watchResources ()
+    {
+        final resources = watchedResources()
+        if ( ! resources )
+        {
+            log.warn( '<watch> is enabled but no <resource> can be watched: they should copy files from a local <directory> to local <targetPath>' )
+            return
+        }
+
+        final watcher = new CopyWatcher( resources.keySet().toList(), resources, watchDebounce )
+        log.info( "Watching ${ resources.keySet()*.directory.toSet() } for changes${ watchTimeout ? ' for [' + watchTimeout + '] ms' : ', press Ctrl+C to stop' }" )
+
+        watcher.watch( watchTimeout ){
+            CopyResource resource, Collection<File> changed, Collection<File> deleted ->
+            final long t = System.currentTimeMillis()
+
+            try
+            {
+                final copied = copyChanged( resource, changed, deleted )
+                log.info( "<resource> [$resource]: [${ copied.size() }] file${ generalBean().s( copied.size()) } copied, " +
+                          "[${ deleted.size() }] deleted, [${ System.currentTimeMillis() - t }] ms" )
+            }
+            catch ( Exception e )
+            {   // Watching goes on, file may be fixed with the next save
+                log.error( "<resource> [$resource]: failed to copy $changed", e )
+            }
+        }
+    }
+
+
+    /**
+     * Writes JSON report of metrics of resources processed to {@code <metricsReport>}.
+     *
+     * @param resources resources processed
+     */
+    @Requires({ resources })
+    private void writeMetricsReport ( List<CopyResource> resources )
+    {
+        final report = [ project   : "${ project.groupId }:${ project.artifactId }:${ project.version }".toString(),
+                         time      : System.currentTimeMillis(),
+                         resources : resources.findAll { it.metrics }.collect { CopyResource r -> r.metrics.toMap( r ) } ]
+
+        fileBean().mkdirs( metricsReport.parentFile )
+        metricsReport.write( JsonOutput.prettyPrint( JsonOutput.toJson( report )), 'UTF-8' )
+        log.info( "Metrics report written to [$metricsReport.canonicalPath]" )
+    }
+
+
+    /**
+     * Processes the resource specified, handling its {@code <failsWith>}, {@code <failOnError>} and {@code <stop>} options.
+     *
+     * @param resource resource to process
+     */
+    @SuppressWarnings([ 'AbcComplexity', 'CatchThrowable' ])
+    @Requires({ resource })
+    private void executeResource ( CopyResource resource )
+    {
+        resource.with {
+
+            boolean failed = false
+
+            try
+            {
+                resource.metrics = new CopyMetrics()
+                startTime        = System.currentTimeMillis()
+                processResource( resource )
+            }
+            catch( Throwable e )
+            {
+                failed              = true
+                String errorMessage = "Processing <resource> [$resource] ${ failsWith ? 'expectedly ' : '' }failed with [${ e.class.name }]"
 
-                if ( failsWith && ( ! failed ))
+                if ( failsWith )
                 {
-                    throw new MojoExecutionException( "Resource [$resource] should have failed with [$failsWith] but it didn't" )
+                    if ( ! e.class.name.endsWith( failsWith ))
+                    {
+                        throw new MojoExecutionException(
+                            "Resource [$resource] should have failed with [$failsWith], failed with [$e] instead",
+                            e )
+                    }
                 }
-
-                if ( stop )
+                else if ( generalBean().choose( failOnError, this.failOnError ))
                 {
-                    /**
-                     * Used for troubleshooting purposes only
-                     */
-                    log.info( '''
-                              ------------------------------------------------
-                                *** Build stopped with <stop>true</stop> ***
-                              ------------------------------------------------'''.stripIndent())
-                    System.exit( 0 )
+                    throw new MojoExecutionException( errorMessage, e )
                 }
+
+                ( failsWith ? log.&info : log.&warn )( errorMessage )
+            }
+
+            if ( failsWith && ( ! failed ))
+            {
+                throw new MojoExecutionException( "Resource [$resource] should have failed with [$failsWith] but it didn't" )
+            }
+
+            if ( stop )
+            {
+                /**
+                 * Used for troubleshooting purposes only
+                 */
+                log.info( '''
+                          ------------------------------------------------
+                            *** Build stopped with <stop>true</stop> ***
+                          ------------------------------------------------'''.stripIndent())
+                System.exit( 0 )
             }
         }
     }
@@ -301,7 +652,10 @@ class CopyMojo extends BaseGroovyMojo
                 if ( isDownload )
                 {
                     tempDirectory = fileBean().tempDirectory()
-                    DownloadHelper.download( resource, resource.directory, tempDirectory, verbose, groovyConfig )
+                    resource.metrics.time( CopyMetrics.Phase.Network ){
+                        DownloadHelper.download( resource, resource.directory, tempDirectory, verbose, groovyConfig )
+                    }
+                    resource.metrics.add( 'download', CopyMetrics.Counter.NetworkBytes, fileBean().directorySize( tempDirectory ))
 
                     assert ( tempDirectory.list() || ( ! failIfNotFound )), \
                            "No files were downloaded from [$resource.directory] " +
@@ -337,15 +691,18 @@ class CopyMojo extends BaseGroovyMojo
                             excludes        = null           //
                         }
 
-                        NetworkUtils.upload( resource.targetPaths(),
-                                             sourceDirectory,
-                                             includes,
-                                             excludes,
-                                             resource.preservePath,
-                                             verbose,
-                                             failIfNotFound,
-                                             generalBean().choose( resource.skipIdentical,            skipIdentical ),
-                                             generalBean().choose( resource.skipIdenticalUseChecksum, skipIdenticalUseChecksum ))
+                        final uploaded = resource.metrics.time( CopyMetrics.Phase.Network ){
+                            NetworkUtils.upload( resource.targetPaths(),
+                                                 sourceDirectory,
+                                                 includes,
+                                                 excludes,
+                                                 resource.preservePath,
+                                                 verbose,
+                                                 failIfNotFound,
+                                                 generalBean().choose( resource.skipIdentical,            skipIdentical ),
+                                                 generalBean().choose( resource.skipIdenticalUseChecksum, skipIdenticalUseChecksum ))
+                        }
+                        resource.metrics.add( 'upload', CopyMetrics.Counter.NetworkBytes, uploaded )
                         return
                     }
                 }
@@ -379,6 +736,23 @@ class CopyMojo extends BaseGroovyMojo
         final isStripTimestamp           = generalBean().choose( resource.stripTimestamp,           this.stripTimestamp )
         final eliminateDuplicates        = generalBean().choose( resource.eliminateDuplicates,      this.eliminateDuplicates )
         final parallelDownload           = generalBean().choose( resource.parallelDownload,         this.parallelDownload  )
+        final mode                       = CopyEngine.linkMode( generalBean().choose( resource.linkMode, this.linkMode ))
+
+        if ( plainDependencies( resource, mode, dependenciesAtM2 ))
+        {
+            final dependencies = dependenciesAtM2 ?
+                resolve( resourceDependencies, eliminateDuplicates, parallelDownload, verbose, failIfNotFound ) :
+                resolve( resourceDependencies, eliminateDuplicates, parallelDownload, verbose, failIfNotFound, isStripVersion, isStripTimestamp )
+
+            linkDependencies( resource, dependencies, mode, dependenciesAtM2, isStripVersion, isStripTimestamp,
+                              isSkipIdentical, isSkipIdenticalUseChecksum, verbose )
+            return
+        }
+
+        if ( mode != CopyEngine.LinkMode.Copy )
+        {
+            log.warn( "<linkMode> [${ mode.name().toLowerCase() }] is ignored - dependencies of <resource> [$resource] are processed after being copied" )
+        }
 
         if ( dependenciesAtM2 )
         {
@@ -403,29 +777,7 @@ class CopyMojo extends BaseGroovyMojo
                     skipIdenticalUseChecksum = isSkipIdenticalUseChecksum
                     dependencies             = null
                     dependency               = null
-                    destFileName  =
-                        ( d.destFileName && ( d.destFileName != f.name )) ? d.destFileName : /* the one from <dependency> but not default one, set by Maven */
-                        ( destFileName )                                  ? destFileName   : /* the one from <resource> */
-                                                                            f.name
-                    if ( d.stripVersion || isStripVersion )
-                    {
-                        if ( d.version.endsWith( '-SNAPSHOT' ))
-                        {
-                            final version    = d.version.substring( 0, d.version.lastIndexOf( '-SNAPSHOT' ))
-                            final classifier = d.classifier.with              { delegate ? "-$delegate" : '' }
-                            final extension  = fileBean().extension( f ).with { delegate ? ".$delegate" : '' }
-                            destFileName     = destFileName.replaceAll( ~/-\Q$version\E.+?\Q$classifier$extension\E$/,
-                                                                        "$classifier$extension".toString())
-                        }
-                        else
-                        {
-                            destFileName = destFileName.replace( "-${ d.version }", '' )
-                        }
-                    }
-                    else if ( d.stripTimestamp || isStripTimestamp )
-                    {
-                        destFileName = helper.stripTimestampFromVersion( destFileName )
-                    }
+                    destFileName             = m2FileName( d, f, destFileName, isStripVersion, isStripTimestamp )
 
                     processFilesResource(( CopyResource ) delegate, verbose, true )
                 }
@@ -471,36 +823,155 @@ class CopyMojo extends BaseGroovyMojo
 
 
     /**
-     * Resolves and filters resource dependencies.
+     * Determines the name of dependency served from local Maven repo in the target path.
      *
-     * @param inputDependencies   dependencies to resolve and filter
-     * @param eliminateDuplicates whether duplicate dependencies should be removed from result
-     * @param parallelDownload    whether dependencies should be downloaded in parallel
-     * @param verbose             whether resolving process should be logged
-     * @param failIfNotFound      whether execution should fail if zero artifacts were resolved
-     * @param stripVersion        whether dependencies version should be stripped
-     * @param stripTimestamp      whether dependencies snapshot timestamp should be stripped
-     * @return                    dependencies resolved and filtered
+     * @param d              dependency resolved
+     * @param f              dependency file
+     * @param destFileName   {@code <destFileName>} of the resource, may be {@code null}
+     * @param stripVersion   whether dependency version should be stripped
+     * @param stripTimestamp whether dependency snapshot timestamp should be stripped
+     * @return dependency file name in the target path
      */
-    @Requires({ inputDependencies })
-    @Ensures ({ result != null })
-    private Collection<CopyDependency> resolve ( List<CopyDependency> inputDependencies,
-                                                 boolean              eliminateDuplicates,
-                                                 boolean              parallelDownload,
-                                                 boolean              verbose,
-                                                 boolean              failIfNotFound,
-                                                 boolean              stripVersion   = false,
-                                                 boolean              stripTimestamp = false )
+    @Requires({ d && f })
+    @Ensures ({ result })
+    private String m2FileName ( CopyDependency d, File f, String destFileName, boolean stripVersion, boolean stripTimestamp )
     {
-        final result = helper.resolveDependencies( inputDependencies, eliminateDuplicates, parallelDownload, verbose, failIfNotFound ).
-        findAll { CopyDependency d -> d.artifact?.file?.file }. // Filtering out (optional) unresolved artifacts
-        collect { CopyDependency d ->
-
-            d.destFileName = d.destFileName ?:
-                             ( d.groupId.startsWith( IVY_PREFIX )) ?
-                               /**
-                                * Ivy dependencies may carry a fake <classifier> (serving as a pattern to name the artifact)
-                                * in "destFileName" which now needs to be removed.
+        String fileName =
+            ( d.destFileName && ( d.destFileName != f.name )) ? d.destFileName : /* the one from <dependency> but not default one, set by Maven */
+            ( destFileName )                                  ? destFileName   : /* the one from <resource> */
+                                                                f.name
+        if ( d.stripVersion || stripVersion )
+        {
+            if ( d.version.endsWith( '-SNAPSHOT' ))
+            {
+                final version    = d.version.substring( 0, d.version.lastIndexOf( '-SNAPSHOT' ))
+                final classifier = d.classifier.with              { delegate ? "-$delegate" : '' }
+                final extension  = fileBean().extension( f ).with { delegate ? ".$delegate" : '' }
+                fileName         = fileName.replaceAll( ~/-\Q$version\E.+?\Q$classifier$extension\E$/,
+                                                        "$classifier$extension".toString())
+            }
+            else
+            {
+                fileName = fileName.replace( "-${ d.version }", '' )
+            }
+        }
+        else if ( d.stripTimestamp || stripTimestamp )
+        {
+            fileName = helper.stripTimestampFromVersion( fileName )
+        }
+
+        fileName
+    }
+
+
+    /**
+     * Determines whether resource dependencies are linked as-is to local target paths, with no processing involved,
+     * so they can be materialized there directly, without per-dependency resources and scanning.
+     * Dependencies copied ({@code <linkMode>} "copy") or matched against include and exclude patterns are processed as files.
+     *
+     * @param resource         resource to check
+     * @param mode             link mode
+     * @param dependenciesAtM2 whether dependencies are served from local Maven repo
+     * @return true if dependencies can be materialized in target paths directly, false otherwise
+     */
+    @Requires({ resource && mode })
+    private boolean plainDependencies ( CopyResource resource, CopyEngine.LinkMode mode, boolean dependenciesAtM2 )
+    {
+        if ( mode == CopyEngine.LinkMode.Copy ) { return false }
+
+        resource.with {
+            ! ( includes       || excludes       ||
+                filter         || listFilter     || filtering      || process        || deploy          || replaces()   ||
+                manifest       || attachArtifact || chmod          || clean          || mkdir           || pack         ||
+                unpack         || move           || destFilePrefix || destFileSuffix || destFileExtension            ||
+                ( destFileName && ( ! dependenciesAtM2 ))                                                              ||
+                generalBean().choose( skipIdenticalUseIndex, this.skipIdenticalUseIndex )                              ||
+                netBean().isNet( targetPaths()))
+        }
+    }
+
+
+    /**
+     * Materializes dependencies resolved in all target paths of the resource with the link mode specified.
+     *
+     * @param resource         resource to handle
+     * @param dependencies     dependencies resolved
+     * @param mode             link mode
+     * @param dependenciesAtM2 whether dependencies are served from local Maven repo
+     * @param stripVersion     whether dependencies version should be stripped
+     * @param stripTimestamp   whether dependencies snapshot timestamp should be stripped
+     * @param skipIdentical    whether dependencies identical to those in target paths should be skipped
+     * @param useChecksum      whether checksum should be used to determine if files are identical
+     * @param verbose          verbose logging
+     */
+    @Requires({ resource && ( dependencies != null ) && mode })
+    private void linkDependencies ( CopyResource               resource,
+                                    Collection<CopyDependency> dependencies,
+                                    CopyEngine.LinkMode        mode,
+                                    boolean                    dependenciesAtM2,
+                                    boolean                    stripVersion,
+                                    boolean                    stripTimestamp,
+                                    boolean                    skipIdentical,
+                                    boolean                    useChecksum,
+                                    boolean                    verbose )
+    {
+        for ( d in dependencies )
+        {
+            final f        = verifyBean().file( d.artifact.file ).canonicalFile
+            final fileName = dependenciesAtM2 ? m2FileName( d, f, resource.destFileName, stripVersion, stripTimestamp ) : d.destFileName
+
+            for ( targetPath in resource.targetPaths())
+            {
+                final destinationFile = new File( targetPath, fileName )
+
+                if ( skipIdentical && destinationFile.file &&
+                     ( Files.isSameFile( f.toPath(), destinationFile.toPath()) || helper.identicalFiles( f, destinationFile, useChecksum )))
+                {
+                    if ( verbose ) { log.info( "[$f] skipped - content is identical to destination [$destinationFile]" ) }
+                    resource.metrics.add( 'link', CopyMetrics.Counter.FilesSkipped )
+                    continue
+                }
+
+                final linked = resource.metrics.time( CopyMetrics.Phase.Copy ){ linkEngine.link( f, destinationFile, mode ) }
+                resource.metrics.add( 'link', linked ? CopyMetrics.Counter.FilesLinked : CopyMetrics.Counter.FilesCopied )
+                resource.metrics.add( 'link', CopyMetrics.Counter.BytesWritten, linked ? 0 : f.length())
+                if ( verbose ) { log.info( "[$f] ${ linked ? mode.name().toLowerCase() + 'ed' : 'copied' } to [$destinationFile]" ) }
+            }
+        }
+    }
+
+
+    /**
+     * Resolves and filters resource dependencies.
+     *
+     * @param inputDependencies   dependencies to resolve and filter
+     * @param eliminateDuplicates whether duplicate dependencies should be removed from result
+     * @param parallelDownload    whether dependencies should be downloaded in parallel
+     * @param verbose             whether resolving process should be logged
+     * @param failIfNotFound      whether execution should fail if zero artifacts were resolved
+     * @param stripVersion        whether dependencies version should be stripped
+     * @param stripTimestamp      whether dependencies snapshot timestamp should be stripped
+     * @return                    dependencies resolved and filtered
+     */
+    @Requires({ inputDependencies })
+    @Ensures ({ result != null })
+    private Collection<CopyDependency> resolve ( List<CopyDependency> inputDependencies,
+                                                 boolean              eliminateDuplicates,
+                                                 boolean              parallelDownload,
+                                                 boolean              verbose,
+                                                 boolean              failIfNotFound,
+                                                 boolean              stripVersion   = false,
+                                                 boolean              stripTimestamp = false )
+    {
+        final result = helper.resolveDependencies( inputDependencies, eliminateDuplicates, parallelDownload, verbose, failIfNotFound ).
+        findAll { CopyDependency d -> d.artifact?.file?.file }. // Filtering out (optional) unresolved artifacts
+        collect { CopyDependency d ->
+
+            d.destFileName = d.destFileName ?:
+                             ( d.groupId.startsWith( IVY_PREFIX )) ?
+                               /**
+                                * Ivy dependencies may carry a fake <classifier> (serving as a pattern to name the artifact)
+                                * in "destFileName" which now needs to be removed.
                                 */
                                 d.artifact.file.name :
                                 helper.artifactFileName( d.artifact,
@@ -546,11 +1017,19 @@ class CopyMojo extends BaseGroovyMojo
         if ( zipEntriesExclude ) { assert resource.unpack, '<zipEntryExclude> or <zipEntriesExclude> can only be used with <unpack>true</unpack>' }
         if ( resource.prefix   ) { assert resource.pack,   '<prefix> can only be used with <pack>true</pack>' }
 
-        List<File> filesToProcess = []
+        final      streamed       = streaming( resource )
+        final      fanOut         = fanOut( resource )
+        List<File> filesToProcess = streamed ? new SpilledFileList( STREAMING_SPILL_THRESHOLD ) : []
+        final      filterWrappers = (( resource.filtering && ( ! ( resource.clean || resource.pack || resource.unpack ))) ?
+                                       helper.filterWrappers( fileFilter, generalBean().choose( resource.filterWithDollarOnly, filterWithDollarOnly )) :
+                                       null )
 
         if ( resource.clean )
         {
-            filesToProcess.addAll( clean( sourceDirectory, includes, excludes, resource.cleanEmptyDirectories, resource.filter, verbose, failIfNotFound ))
+            final deleted = clean( sourceDirectory, includes, excludes, resource.cleanEmptyDirectories, resource.filter,
+                                   generalBean().choose( resource.cleanThreads, cleanThreads ), verbose, failIfNotFound )
+            resource.metrics.add( 'clean', CopyMetrics.Counter.FilesDeleted, deleted.size())
+            filesToProcess.addAll( deleted )
         }
         else
         {
@@ -559,7 +1038,10 @@ class CopyMojo extends BaseGroovyMojo
                 verifyBean().directory( sourceDirectory )
             }
 
-            for ( path in resource.targetPaths())
+            /**
+             * When fanning out, files are scanned once and copied to all target paths in a single iteration
+             */
+            for ( path in ( fanOut ? [ resource.targetPaths().first() ] : resource.targetPaths()))
             {
                 if ( resource.mkdir )
                 {
@@ -572,36 +1054,305 @@ class CopyMojo extends BaseGroovyMojo
                 if ( resource.pack )
                 {
                     final manifestDir = ( manifest.entries ? helper.prepareManifest( manifest ) : null )
-                    pack( resource, sourceDirectory, targetPath, includes, excludes, failIfNotFound, manifestDir )?.with{ filesToProcess << delegate }
+                    final archive     = resource.metrics.time( CopyMetrics.Phase.Compress ){
+                        pack( resource, sourceDirectory, targetPath, includes, excludes, failIfNotFound, manifestDir )
+                    }
+                    if ( archive )
+                    {
+                        resource.metrics.add( 'pack', CopyMetrics.Counter.ArchivesPacked )
+                        resource.metrics.add( 'pack', CopyMetrics.Counter.BytesWritten, archive.length())
+                        filesToProcess << archive
+                    }
                     if ( manifestDir ) { fileBean().delete( manifestDir ) }
                 }
                 else if ( sourceDirectory /* null when mkdir is performed */ )
                 {
-                    final files = fileBean().files( sourceDirectory, includes, excludes, true, false, failIfNotFound )
-                    for ( filteredFile in filter( files, resource.filter, verbose, failIfNotFound ))
-                    {
-                        fileBean().mkdirs( targetPath )
+                    final            operation = resource.unpack ? 'unpack' : 'copy'
+                    final List<File> targets   = fanOut ? resource.targetPaths().collect { new File( it ) } : [ targetPath ]
+                    List<CopyIndex>  indexes   = []
+                    boolean          started   = false
+                    final            copyFiles = {
+                        List<File> filteredFiles ->
+
+                        if ( ! filteredFiles ) { return }
 
-                        if ( resource.unpack )
+                        if ( ! started )
                         {
-                            filesToProcess.addAll( unpack( resource, filteredFile, targetPath, zipEntries, zipEntriesExclude, verbose, failIfNotFound ))
+                            indexes = targets.collect { File target -> resource.unpack ? null : copyIndex( resource, sourceDirectory, target ) }
+                            started = true
+                            targets.each { File target -> fileBean().mkdirs( target ) }
+                        }
+
+                        final processed = resource.metrics.time( resource.unpack ? CopyMetrics.Phase.Compress : CopyMetrics.Phase.Copy ){
+                            processFiles( resource, sourceDirectory, filteredFiles, targets ){
+                                File filteredFile ->
+                                resource.unpack ? unpack( resource, filteredFile, targetPath, zipEntries, zipEntriesExclude, verbose, failIfNotFound ) :
+                                fanOut          ? fanOutResourceFile( resource, sourceDirectory, filteredFile, targets, filterWrappers, indexes, verbose ) :
+                                                  [ copyResourceFile( resource, sourceDirectory, filteredFile, targetPath, filterWrappers, indexes.first(), verbose ) ].grep()
+                            }
+                        }
+
+                        processed.each { List<File> processedFiles -> filesToProcess.addAll( processedFiles ) }
+                    }
+
+                    try
+                    {
+                        if ( streamed )
+                        {
+                            streamFiles( resource, operation, sourceDirectory, includes, excludes, failIfNotFound, copyFiles )
                         }
                         else
                         {
-                            copyResourceFile( resource, sourceDirectory, filteredFile, targetPath, verbose )?.with { filesToProcess << delegate }
+                            final files         = resource.metrics.time( CopyMetrics.Phase.Scan   ){ scanFiles( sourceDirectory, includes, excludes, true, failIfNotFound ) }
+                            final filteredFiles = resource.metrics.time( CopyMetrics.Phase.Filter ){ filter( files, resource.filter, verbose, failIfNotFound ) }
+                            resource.metrics.add( operation, CopyMetrics.Counter.FilesScanned, files.size())
+                            resource.metrics.add( operation, CopyMetrics.Counter.FilesMatched, filteredFiles.size())
+                            copyFiles( filteredFiles )
                         }
                     }
+                    finally
+                    {
+                        indexes.each { CopyIndex index -> index?.save() }
+                    }
                 }
             }
         }
 
         assert ( resource.startTime > 0 )
         resource.endTime = System.currentTimeMillis()
-        process( filesToProcess, resource.chmod, resource.process, resource.clean, ( resource.endTime - resource.startTime ))
+
+        try
+        {
+            process( filesToProcess, resource.chmod, resource.process, resource.clean, ( resource.endTime - resource.startTime ))
+        }
+        finally
+        {
+            if ( filesToProcess instanceof SpilledFileList ) { (( SpilledFileList ) filesToProcess ).close() }
+        }
+
         resource
     }
 
 
+    /**
+     * Determines if files of the resource specified should be copied to all its target paths at once:
+     * scanned and filtered once, read and transformed once for all target paths.
+     */
+    private boolean fanOut ( CopyResource resource )
+    {
+        ( resource.targetPaths().size() > 1 ) && ( ! resource.with { clean || mkdir || pack || unpack || move })
+    }
+
+
+    /**
+     * Determines if files of the resource specified should be streamed.
+     */
+    private boolean streaming ( CopyResource resource )
+    {
+        if ( ! generalBean().choose( resource.streaming, streaming )) { return false }
+        if ( resource.filter )
+        {
+            log.info( "<resource> [$resource] is not streamed, <filter> needs all files at once" )
+            return false
+        }
+
+        true
+    }
+
+
+    /**
+     * Scans files of the resource on a separate thread, passing them through a bounded queue
+     * to be copied or unpacked in batches while the scan continues.
+     *
+     * @param resource        current copy resource
+     * @param operation       operation performed, "copy" or "unpack"
+     * @param sourceDirectory base directory of files to scan
+     * @param includes        include patterns of files
+     * @param excludes        exclude patterns of file
+     * @param failIfNotFound  whether execution should fail if no files were matched
+     * @param copyFiles       action copying or unpacking each batch of files scanned
+     */
+    @Requires({ resource && operation && sourceDirectory && copyFiles })
+    private void streamFiles ( CopyResource resource,
+                               String       operation,
+                               File         sourceDirectory,
+                               List<String> includes,
+                               List<String> excludes,
+                               boolean      failIfNotFound,
+                               Closure      copyFiles )
+    {
+        final capacity  = generalBean().choose( resource.streamingQueue, streamingQueue )
+        final batchSize = Math.min( capacity, STREAMING_BATCH )
+        final queue     = new ArrayBlockingQueue<File>( capacity )
+        final cancelled = new AtomicBoolean( false )
+        final error     = new AtomicReference<Throwable>()
+        final locals    = ThreadLocals.snapshot()
+        final put       = {
+            File f ->
+            while ( ! queue.offer( f, 100, TimeUnit.MILLISECONDS ))
+            {
+                if ( cancelled.get()) { throw new CancellationException( 'Streaming was cancelled' ) }
+            }
+        }
+        final scanner   = new Thread({
+            try
+            {
+                ThreadLocals.restore( locals )
+                final scanned = resource.metrics.time( CopyMetrics.Phase.Scan ){
+                    new FileScanner( sourceDirectory, includes, excludes ).scan( failIfNotFound, put )
+                }
+                resource.metrics.add( operation, CopyMetrics.Counter.FilesScanned, scanned )
+            }
+            catch ( Throwable e ) { error.set( e ) }
+            finally
+            {
+                if ( ! cancelled.get()) { put( END_OF_FILES ) }
+            }
+        } as Runnable, "copy-maven-plugin-scanner [$sourceDirectory.canonicalPath]" )
+
+        long matched = 0
+        scanner.start()
+
+        try
+        {
+            for ( boolean end = false; ! end; )
+            {
+                final List<File> batch = [ queue.take() ]
+                queue.drainTo( batch, batchSize - 1 )
+                if ( batch.last().is( END_OF_FILES )) { batch.remove( batch.size() - 1 ); end = true }
+                if ( ! batch ) { continue }
+
+                matched += batch.size()
+                copyFiles( batch )
+            }
+        }
+        finally
+        {
+            cancelled.set( true )
+            scanner.join()
+        }
+
+        if ( error.get()) { throw error.get() }
+        resource.metrics.add( operation, CopyMetrics.Counter.FilesMatched, matched )
+    }
+
+
+    /**
+     * Retrieves resources {@code <watch>} can watch: copying files from a local {@code <directory>}
+     * with no {@code <filter>}, {@code <process>}, {@code <move>} or other operations that need all files at once.
+     *
+     * @return resources to watch => their exclude patterns, including default excludes
+     */
+    @Ensures ({ result != null })
+    private Map<CopyResource, List<String>> watchedResources ()
+    {
+        final Map<CopyResource, List<String>> watched = [:]
+
+        for ( resource in resources())
+        {
+            final watchable = resource.directory && runIf( resource.runIf ) && ( ! netBean().isNet( resource.directory )) &&
+                              ( ! netBean().isNet( resource.targetPaths())) && ( ! resource.dependencies()) &&
+                              ( ! resource.with { clean || mkdir || pack || unpack || move || filter || process || deploy || attachArtifact })
+            if ( ! watchable )
+            {
+                log.info( "<resource> [$resource] is not watched" )
+                continue
+            }
+
+            resource.directory = canonicalPath( resource.directory )
+            final defaultExcludes = ( resource.defaultExcludes ?: defaultExcludes())
+            watched[ resource ]   = ( resource.excludes ?: [] ) + (( defaultExcludes == 'false' ) ? [] : split( defaultExcludes ))
+        }
+
+        watched
+    }
+
+
+    /**
+     * Copies files of the resource changed since it was processed, the same way the resource copies them,
+     * and deletes target files of source files deleted.
+     *
+     * @param resource resource watched
+     * @param changed  source files created or modified
+     * @param deleted  source files deleted
+     * @return files copied
+     */
+    @Requires({ resource && ( changed != null ) && ( deleted != null ) })
+    @Ensures ({ result != null })
+    private List<File> copyChanged ( CopyResource resource, Collection<File> changed, Collection<File> deleted )
+    {
+        final sourceDirectory = new File( resource.directory )
+        final isVerbose       = generalBean().choose( resource.verbose, verbose )
+        final files           = changed.findAll { it.file }.sort()
+        final filterWrappers  = ( resource.filtering ?
+                                    helper.filterWrappers( fileFilter, generalBean().choose( resource.filterWithDollarOnly, filterWithDollarOnly )) :
+                                    null )
+        final List<File> copied = []
+
+        if ( resource.metrics == null ) { resource.metrics = new CopyMetrics() }
+
+        for ( path in resource.targetPaths())
+        {
+            final targetPath = fileBean().mkdirs( new File( path ))
+
+            for ( f in deleted )
+            {
+                final targetFile = targetFile( resource, sourceDirectory, f, targetPath )
+                if ( targetFile.file )
+                {
+                    fileBean().delete( targetFile )
+                    if ( isVerbose ) { log.info( "[$targetFile] deleted - [$f] was deleted" ) }
+                }
+            }
+
+            processFiles( resource, sourceDirectory, files, [ targetPath ] ){
+                File f -> [ copyResourceFile( resource, sourceDirectory, f, targetPath, filterWrappers, null, isVerbose ) ].grep()
+            }.each { List<File> copiedFiles -> copied.addAll( copiedFiles ) }
+        }
+
+        if ( copied ) { process( copied, resource.chmod, null, false, 0 ) }
+        copied
+    }
+
+
+    /**
+     * Applies the action specified to each file, serially or using a pool of threads if {@code <parallelCopy>} is enabled.
+     * When run in parallel, largest files are started first and target directories of copied files are created upfront.
+     * Archives are always unpacked serially as they all share the same destination: entries overlapping are
+     * then overwritten in the order archives are specified and directories are not created concurrently.
+     *
+     * @param resource        current copy resource
+     * @param sourceDirectory files base directory
+     * @param files           files to copy or unpack
+     * @param targetPaths     target locations to copy or unpack the files to
+     * @param action          action copying or unpacking a file and returning the files created
+     * @return                results of the action, in the order of files specified
+     */
+    @Requires({ resource && sourceDirectory && ( files != null ) && targetPaths && action })
+    @Ensures ({ result.size() == files.size() })
+    private List<List<File>> processFiles ( CopyResource        resource,
+                                            File                sourceDirectory,
+                                            List<File>          files,
+                                            List<File>          targetPaths,
+                                            Closure<List<File>> action )
+    {
+        final boolean parallel = generalBean().choose( resource.parallelCopy, parallelCopy )
+        final int     threads  = generalBean().choose( resource.copyThreads,  copyThreads  )
+
+        if ( resource.unpack || ( ! ( parallel && ( threads > 1 ) && ( files.size() > 1 )))) { return files.collect( action ) }
+
+        /**
+         * Creating target directories serially so that concurrent copies don't race for them
+         */
+        targetPaths.collectMany { File targetPath -> files.collect { File f -> targetFile( resource, sourceDirectory, f, targetPath ).parentFile }}.
+                    toSet().each { fileBean().mkdirs( it ) }
+
+        final List<File>            largestFirst = files.sort( false ){ File f1, File f2 -> f2.length() <=> f1.length() }
+        final Map<File, List<File>> results      = [ largestFirst, collectParallel( threads, largestFirst, action ) ].transpose().collectEntries()
+        files.collect { File f -> results[ f ] }
+    }
+
+
     /**
      * Calculates new name of the file to copy taking its resource into consideration.
      *
@@ -635,6 +1386,28 @@ class CopyMojo extends BaseGroovyMojo
     }
 
 
+    /**
+     * Calculates target file of the file to copy.
+     *
+     * @param resource        current copy resource
+     * @param sourceDirectory file base directory
+     * @param sourceFile      file to copy
+     * @param targetPath      target location to copy the file to
+     * @return target file the file specified is copied to
+     */
+    @Requires({ resource && sourceDirectory && sourceFile && targetPath })
+    @Ensures ({ result })
+    private File targetFile ( CopyResource resource, File sourceDirectory, File sourceFile, File targetPath )
+    {
+        String newName = newName( sourceFile, resource )
+        String newPath = resource.preservePath ? fileBean().relativePath( sourceDirectory, new File( sourceFile.parentFile, newName )) : newName
+        File   file    = new File( targetPath, newPath )
+
+        assert file.canonicalPath.endsWith( newName )
+        file
+    }
+
+
     /**
      * Copies the file specified.
      *
@@ -642,39 +1415,172 @@ class CopyMojo extends BaseGroovyMojo
      * @param sourceDirectory file base directory
      * @param sourceFile      file to copy
      * @param targetPath      target location to copy the file to
+     * @param filterWrappers  filter wrappers to filter the file with, may be <code>null</code> if resource isn't filtered
+     * @param index           index of files copied before, may be <code>null</code>
      * @param verbose         verbose logging
+     * @param engine          {@link CopyEngine} to copy the file with, may be <code>null</code> to copy it with {@code fileBean()}
      * @return file copied if copying was performed, null otherwise
      */
     @Requires({ resource && sourceDirectory.directory && sourceFile.file && targetPath.directory })
     @Ensures({ ( result == null ) || ( result.file ) })
-    private File copyResourceFile ( CopyResource resource,
-                                    File         sourceDirectory,
-                                    File         sourceFile,
-                                    File         targetPath,
-                                    boolean      verbose )
+    private File copyResourceFile ( CopyResource                  resource,
+                                    File                          sourceDirectory,
+                                    File                          sourceFile,
+                                    File                          targetPath,
+                                    List<FileUtils.FilterWrapper> filterWrappers,
+                                    CopyIndex                     index,
+                                    boolean                       verbose,
+                                    CopyEngine                    engine = copyEngine )
     {
         assert ! netBean().isNet( sourceDirectory.path )
         assert ! netBean().isNet( targetPath.path )
 
-        String  newName  = newName( sourceFile, resource )
+        File    file     = targetFile( resource, sourceDirectory, sourceFile, targetPath )
         boolean noFilter = split(( resource.nonFilteredExtensions ?: nonFilteredExtensions ?: '' ).toLowerCase()).
-                           contains( fileBean().extension( new File( newName )).toLowerCase())
-        String  newPath  = resource.preservePath ? fileBean().relativePath( sourceDirectory, new File( sourceFile.parentFile, newName )) : newName
-        File    file     = new File( targetPath, newPath )
-
-        assert file.canonicalPath.endsWith( newName )
+                           contains( fileBean().extension( file ).toLowerCase())
+        long    size     = sourceFile.length() // Source file is gone once moved
 
-        helper.copyFile( sourceFile.canonicalFile,
+        File copied = helper.copyFile( sourceFile.canonicalFile,
                          file.canonicalFile,
                          generalBean().choose( resource.skipIdentical,            skipIdentical ),
                          generalBean().choose( resource.skipIdenticalUseChecksum, skipIdenticalUseChecksum ),
                          ( noFilter ? [] : resource.replaces()) as Replace[],
                          (( ! noFilter ) && resource.filtering ),
                          resource.encoding,
-                         fileFilter,
+                         filterWrappers,
+                         engine,
+                         index,
                          verbose,
                          resource.move,
-                         generalBean().choose( resource.filterWithDollarOnly, filterWithDollarOnly ))
+                         generalBean().choose( resource.filterWithDollarOnly, filterWithDollarOnly ),
+                         generalBean().choose( resource.replaceWindow,        replaceWindow ))
+
+        if ( copied )
+        {
+            resource.metrics.add( 'copy', CopyMetrics.Counter.FilesCopied )
+            resource.metrics.add( 'copy', CopyMetrics.Counter.BytesRead,    size )
+            resource.metrics.add( 'copy', CopyMetrics.Counter.BytesWritten, copied.length())
+        }
+        else
+        {
+            resource.metrics.add( 'copy', CopyMetrics.Counter.FilesSkipped )
+        }
+
+        copied
+    }
+
+
+    /**
+     * Copies the file specified to all target paths, reading and transforming it once.
+     * Files filtered or replaced are transformed into the first target path and copied from there to other target paths,
+     * files copied as-is are copied from the source to every target path, using {@code <copyStrategy>}.
+     *
+     * @param resource        current copy resource
+     * @param sourceDirectory file base directory
+     * @param sourceFile      file to copy
+     * @param targetPaths     target locations to copy the file to
+     * @param filterWrappers  filter wrappers to filter the file with, may be <code>null</code> if resource isn't filtered
+     * @param indexes         indexes of files copied before to each target location, elements may be <code>null</code>
+     * @param verbose         verbose logging
+     * @return files copied
+     */
+    @Requires({ resource && sourceDirectory && sourceFile && ( targetPaths.size() > 1 ) && ( indexes.size() == targetPaths.size()) })
+    @Ensures ({ result != null })
+    private List<File> fanOutResourceFile ( CopyResource                  resource,
+                                            File                          sourceDirectory,
+                                            File                          sourceFile,
+                                            List<File>                    targetPaths,
+                                            List<FileUtils.FilterWrapper> filterWrappers,
+                                            List<CopyIndex>               indexes,
+                                            boolean                       verbose )
+    {
+        final noFilter  = split(( resource.nonFilteredExtensions ?: nonFilteredExtensions ?: '' ).toLowerCase()).
+                          contains( fileBean().extension( targetFile( resource, sourceDirectory, sourceFile, targetPaths.first())).toLowerCase())
+        final transform = ( ! noFilter ) && ( resource.filtering || resource.replaces())
+
+        if ( ! transform )
+        {
+            return [ targetPaths, indexes ].transpose().collect {
+                File targetPath, CopyIndex index ->
+                copyResourceFile( resource, sourceDirectory, sourceFile, targetPath, filterWrappers, index, verbose, copyEngine )
+            }.grep()
+        }
+
+        final copied = copyResourceFile( resource, sourceDirectory, sourceFile, targetPaths.first(), filterWrappers, indexes.first(), verbose )
+        final output = targetFile( resource, sourceDirectory, sourceFile, targetPaths.first()).canonicalFile
+
+        ([ copied ] + [ targetPaths.tail(), indexes.tail() ].transpose().collect {
+            File targetPath, CopyIndex index ->
+            final fanOutCopy = helper.copyFile( output,
+                                                targetFile( resource, sourceDirectory, sourceFile, targetPath ).canonicalFile,
+                                                generalBean().choose( resource.skipIdentical,            skipIdentical ),
+                                                generalBean().choose( resource.skipIdenticalUseChecksum, skipIdenticalUseChecksum ),
+                                                [] as Replace[],
+                                                false,
+                                                resource.encoding,
+                                                null,
+                                                copyEngine,
+                                                index,
+                                                verbose,
+                                                false,
+                                                false,
+                                                0 )
+
+            resource.metrics.add( 'copy', fanOutCopy ? CopyMetrics.Counter.FilesCopied : CopyMetrics.Counter.FilesSkipped )
+            if ( fanOutCopy ) { resource.metrics.add( 'copy', CopyMetrics.Counter.BytesWritten, fanOutCopy.length()) }
+            fanOutCopy
+        }).grep()
+    }
+
+
+    /**
+     * Creates index of files copied from the source directory to the target path
+     * if {@code <skipIdentical>} and {@code <skipIdenticalUseIndex>} are enabled.
+     *
+     * Index is specific to the settings shaping the output of files copied. Resources making Groovy
+     * replacements or moving files are not indexed, their output may change with every execution.
+     * When files are filtered, only changes in project coordinates, project properties and user properties are detected.
+     *
+     * @param resource        current copy resource
+     * @param sourceDirectory directory files are copied from
+     * @param targetPath      directory files are copied to
+     * @return index of files copied or <code>null</code> if it shouldn't be used
+     */
+    @Requires({ resource && sourceDirectory && targetPath })
+    private CopyIndex copyIndex ( CopyResource resource, File sourceDirectory, File targetPath )
+    {
+        final boolean useIndex = generalBean().choose( resource.skipIdentical,         skipIdentical ) &&
+                                 generalBean().choose( resource.skipIdenticalUseIndex, skipIdenticalUseIndex ) &&
+                                 ( ! resource.move ) && ( ! resource.replaces().any { it.groovy })
+        if ( ! useIndex ) { return null }
+
+        new CopyIndex( indexDirectory, sourceDirectory, targetPath, outputFingerprint( resource ))
+    }
+
+
+    /**
+     * Creates fingerprint of the resource settings shaping the output of files copied or unpacked:
+     * replacements, filtering, encoding and destination names.
+     * When files are filtered, only project coordinates, project properties and user properties are taken into account.
+     *
+     * @param resource current copy resource
+     * @return fingerprint of the resource settings
+     */
+    @Requires({ resource })
+    @Ensures ({ result != null })
+    private String outputFingerprint ( CopyResource resource )
+    {
+        [
+            resource.replaces().collect { Replace r -> [ r.from, r.to, r.endOfLine, r.addDollar, r.quoteReplacement, r.replaceAll ] },
+            resource.filtering,
+            generalBean().choose( resource.filterWithDollarOnly, filterWithDollarOnly ),
+            resource.nonFilteredExtensions ?: nonFilteredExtensions,
+            resource.encoding,
+            resource.preservePath,
+            [ resource.destFileName, resource.destFilePrefix, resource.destFileSuffix, resource.destFileExtension ],
+            resource.filtering ? [ project.groupId, project.artifactId, project.version,
+                                   new TreeMap( project.properties ), new TreeMap( session.userProperties ) ] : []
+        ].toString()
     }
 
 
@@ -708,7 +1614,9 @@ class CopyMojo extends BaseGroovyMojo
             return null
         }
 
-        final packUsingTemp  = ( resource.replaces() || resource.filtering )
+        final transform      = entryTransform( resource, true )
+        final engine         = packEngine( resource, targetArchive )
+        final packUsingTemp  = ( transform && ( ! engine?.transforms()))
         final filesDirectory = packUsingTemp ? fileBean().tempDirectory() : sourceDirectory
         final skipPacked     = generalBean().choose( resource.skipPacked, this.skipPacked )
 
@@ -720,11 +1628,19 @@ class CopyMojo extends BaseGroovyMojo
 
         fileBean().with {
 
-            pack( filesDirectory, targetArchive, includes, excludes,
-                  generalBean().choose( resource.useTrueZipForPack, useTrueZipForPack ),
-                  failIfNotFound, resource.update,
-                  split( resource.defaultExcludes ?: defaultExcludes()),
-                  resource.destFileName, resource.prefix, ( ! skipPacked ), manifestDir, resource.compressionLevel )
+            if ( engine )
+            {
+                packFiles( resource, engine, filesDirectory, targetArchive, includes, excludes, failIfNotFound, skipPacked, manifestDir,
+                           ( packUsingTemp ? null : transform ))
+            }
+            else
+            {
+                pack( filesDirectory, targetArchive, includes, excludes,
+                      generalBean().choose( resource.useTrueZipForPack, useTrueZipForPack ),
+                      failIfNotFound, resource.update,
+                      split( resource.defaultExcludes ?: defaultExcludes()),
+                      resource.destFileName, resource.prefix, ( ! skipPacked ), manifestDir, resource.compressionLevel )
+            }
 
             assert targetArchive.file
             if ( resource.move ) { delete( files( sourceDirectory, includes, excludes, true, false, failIfNotFound, true ) as File[] ) }
@@ -748,13 +1664,187 @@ class CopyMojo extends BaseGroovyMojo
                 data[ 0 .. 3 ].collect { String s -> verifyBean().notNullOrEmpty( s ) }
             def classifier = (( data.size() == 5 ) ? verifyBean().notNullOrEmpty( data[ 4 ] ) : null )
 
-            helper.deploy( targetArchive, url, groupId, artifactId, version, classifier )
+            if ( batchDeploy ) { deployments << new CopyDeployment( targetArchive, url, groupId, artifactId, version, classifier ) }
+            else               { helper.deploy( targetArchive, url, groupId, artifactId, version, classifier ) }
         }
 
         verifyBean().file( targetArchive )
     }
 
 
+    /**
+     * Retrieves {@link ArchiveEngine} to pack the archive specified with.
+     *
+     * @param resource      current copy resource
+     * @param targetArchive archive to pack
+     * @return archive engine or {@code null} if archive should be packed by {@code fileBean()}
+     */
+    private ArchiveEngine packEngine ( CopyResource resource, File targetArchive )
+    {
+        final threads = generalBean().choose( resource.packThreads, packThreads )
+
+        if ( TarPacker.supports( targetArchive ))
+        {
+            return new TarArchiveEngine( threads, generalBean().choose( resource.zstdLevel, zstdLevel ), entriesTime())
+        }
+
+        if ( resource.destFileName ) { return null }
+
+        final name   = zipEngineName( resource, generalBean().choose( resource.parallelPack, parallelPack ))
+        final engine = name ? ArchiveEngines.zipEngine( name, threads, resource.compressionLevel, entriesTime()) : null
+        engine?.supports( targetArchive ) ? engine : null
+    }
+
+
+    /**
+     * Retrieves {@link ArchiveEngine} to extract the archive specified with.
+     *
+     * @param resource      current copy resource
+     * @param sourceArchive archive to extract
+     * @return archive engine or {@code null} if archive should be extracted by {@code fileBean()}
+     */
+    private ArchiveEngine unpackEngine ( CopyResource resource, File sourceArchive )
+    {
+        final threads = generalBean().choose( resource.unpackThreads, unpackThreads )
+
+        if ( TarPacker.supports( sourceArchive ))
+        {
+            return new TarArchiveEngine( threads, generalBean().choose( resource.zstdLevel, zstdLevel ), entriesTime())
+        }
+
+        final name   = zipEngineName( resource, generalBean().choose( resource.parallelUnpack, parallelUnpack ))
+        final engine = name ? ArchiveEngines.zipEngine( name, threads, resource.compressionLevel, entriesTime()) : null
+        engine?.supports( sourceArchive ) ? engine : null
+    }
+
+
+    /**
+     * Retrieves name of the Zip archive engine selected by {@code <archiveEngine>}.
+     *
+     * @param resource current copy resource
+     * @param parallel whether {@code <parallelPack>} or {@code <parallelUnpack>} is enabled, for "default" engine
+     * @return name of the engine or {@code null} if archive should be handled by {@code fileBean()}
+     */
+    private String zipEngineName ( CopyResource resource, boolean parallel )
+    {
+        final name = generalBean().choose( resource.archiveEngine, archiveEngine )?.trim()?.toLowerCase() ?: 'default'
+        ( name != 'default' ) ? name : parallel ? ArchiveEngines.PARALLEL : null
+    }
+
+
+    /**
+     * Creates {@link EntryTransform} applying {@code <filtering>} and {@code <replace>} of the resource to archive entries,
+     * files with {@code <nonFilteredExtensions>} are packed and extracted as-is.
+     *
+     * @param resource current copy resource
+     * @param pack     whether entries are packed, files packed are only filtered if they contain "${" when {@code <filterWithDollarOnly>} is enabled
+     * @return transform to apply or {@code null} if resource isn't filtered and has no replacements
+     */
+    @Requires({ resource })
+    private EntryTransform entryTransform ( CopyResource resource, boolean pack )
+    {
+        if ( ! ( resource.replaces() || resource.filtering )) { return null }
+
+        final nonFiltered    = split(( resource.nonFilteredExtensions ?: nonFilteredExtensions ?: '' ).toLowerCase())
+        final dollarOnly     = generalBean().choose( resource.filterWithDollarOnly, filterWithDollarOnly )
+        final filterWrappers = resource.filtering ? helper.filterWrappers( fileFilter, dollarOnly ) : []
+        final replaces       = resource.replaces() as Replace[]
+        final window         = generalBean().choose( resource.replaceWindow, replaceWindow )
+
+        new EntryTransform({ String name -> ( ! nonFiltered.contains( fileBean().extension( new File( name )).toLowerCase())) }, {
+            String name, File file, InputStream is, OutputStream os ->
+            final filter = resource.filtering && (( ! ( dollarOnly && pack )) || helper.containsDollarBrace( file, resource.encoding ))
+            helper.transform( is, os, file, ( filter ? filterWrappers : [] ), replaces, resource.encoding, window )
+        })
+    }
+
+
+    /**
+     * Packs directory specified with {@link ArchiveEngine} specified.
+     *
+     * @param resource        current copy resource
+     * @param engine          archive engine to pack the directory with
+     * @param filesDirectory  directory to pack
+     * @param targetArchive   target archive to pack the directory to
+     * @param includes        files to include, may be <code>null</code>
+     * @param excludes        files to exclude, may be <code>null</code>
+     * @param failIfNotFound  fail if no files were included
+     * @param skipPacked      whether existing archive should be kept
+     * @param manifestDir     directory where Manifest file to be packed is stored
+     * @param transform       transform to apply to files packed, may be <code>null</code>, {@code <filter>} is then applied to them as well
+     */
+    @Requires({ resource && engine && filesDirectory.directory && targetArchive })
+    private void packFiles ( CopyResource   resource,
+                             ArchiveEngine  engine,
+                             File           filesDirectory,
+                             File           targetArchive,
+                             List<String>   includes,
+                             List<String>   excludes,
+                             boolean        failIfNotFound,
+                             boolean        skipPacked,
+                             File           manifestDir,
+                             EntryTransform transform )
+    {
+        if ( skipPacked && targetArchive.file )
+        {
+            log.info( "<skipPacked> is true, archive [$targetArchive.canonicalPath] already exists - packing was cancelled" )
+            return
+        }
+
+        final                   defaultExcludes = ( resource.defaultExcludes ?: defaultExcludes())
+        final                   prefix          = resource.prefix ? resource.prefix.replace( '\\', '/' ).replaceAll( '^/+|/+$', '' ).with { it ? "$it/" : '' } : ''
+        final Map<String, File> entries         = [:]
+        final                   entryName       = { File directory, File file -> fileBean().relativePath( directory, file ).replace( '\\', '/' ).replaceAll( '^/+', '' ) }
+
+        final List<String>      manifestEntries = []
+        final                   files           = scanFiles( filesDirectory, includes,
+                                                             ( excludes ?: [] ) + (( defaultExcludes == 'false' ) ? [] : split( defaultExcludes )),
+                                                             true, failIfNotFound )
+
+        /**
+         * Files transformed used to be copied to a temporary directory first, with their <filter> applied
+         */
+        for ( file in ( transform ? filter( files, resource.filter, false, failIfNotFound ) : files ))
+        {
+            entries[ prefix + entryName( filesDirectory, file ) ] = file
+        }
+
+        if ( manifestDir )
+        {
+            for ( file in scanFiles( manifestDir, null, null, true, false ))
+            {
+                entries[ entryName( manifestDir, file ) ] = file
+                manifestEntries << entryName( manifestDir, file )
+            }
+        }
+
+        if ( ! entries ) { return }
+
+        final time = System.currentTimeMillis()
+        engine.pack( targetArchive, entries, resource.update, transform?.except( manifestEntries ))
+
+        if ( generalBean().choose( resource.verbose, verbose ))
+        {
+            log.info( "[${ entries.size() }] file${ generalBean().s( entries.size()) } packed to [$targetArchive.canonicalPath] " +
+                      "by [$engine.name] engine (${ System.currentTimeMillis() - time } ms)" )
+        }
+    }
+
+
+    /**
+     * Converts {@code <outputTimestamp>} to milliseconds.
+     *
+     * @return {@code <outputTimestamp>} in milliseconds or {@code null} if it is not specified or is a single character
+     */
+    private Long entriesTime ()
+    {
+        if (( ! outputTimestamp ) || ( outputTimestamp.trim().length() < 2 )) { return null }
+
+        ( outputTimestamp.trim() ==~ /\d+/ ) ? ( outputTimestamp.trim() as long ) * 1000 :
+                                                 DatatypeConverter.parseDateTime( outputTimestamp.trim()).timeInMillis
+    }
+
+
     /**
      *
      * @param resource             resource to unpack
@@ -790,22 +1880,122 @@ class CopyMojo extends BaseGroovyMojo
             return []
         }
 
-        final   readFiles       = { File directory -> fileBean().files( directory, null, null, true, false, false ) }
-        boolean unpackUsingTemp = ( resource.replaces() || resource.filtering )
-        File    unpackDirectory = unpackUsingTemp ? fileBean().tempDirectory() : destinationDirectory
-        final   previousFiles   = readFiles( destinationDirectory )
+        final boolean useMarkers = generalBean().choose( resource.unpackMarkers, unpackMarkers ) && ( ! resource.replaces().any { it.groovy })
+        final boolean useShared  = generalBean().choose( resource.sharedUnpackCache, sharedUnpackCache )
+        final         cache      = ( useMarkers || useShared ) ?
+            new UnpackCache( sourceArchive, zipEntries, zipEntriesExclude, resource.preservePath, outputFingerprint( resource )) :
+            null
 
-        ( zipEntries || zipEntriesExclude ) ?
-            fileBean().unpackZipEntries( sourceArchive, unpackDirectory, zipEntries, zipEntriesExclude, resource.preservePath, failIfNotFound ) :
-            fileBean().unpack( sourceArchive, unpackDirectory, generalBean().choose( resource.useTrueZipForUnpack, useTrueZipForUnpack ))
+        if ( useMarkers )
+        {
+            final unpacked = cache.unpacked( destinationDirectory )
+            if ( unpacked != null )
+            {
+                if ( verbose )
+                {
+                    log.info( "[$sourceArchive.canonicalPath] was already unpacked to [$destinationDirectory.canonicalPath] - unpacking was skipped" )
+                }
+
+                resource.metrics.add( 'unpack', CopyMetrics.Counter.FilesSkipped, unpacked.size())
+                return unpacked
+            }
 
-        if ( unpackUsingTemp )
+            cache.unmark( destinationDirectory )
+        }
+
+        final      transform = entryTransform( resource, false )
+        List<File> unpacked
+
+        if ( useShared )
+        {
+            final tree = cache.sharedTree( unpackCacheDirectory ) {
+                File directory -> extract( resource, sourceArchive, directory, zipEntries, zipEntriesExclude, failIfNotFound, null )
+            }
+
+            if ( transform )
+            {
+                processFilesResource( resource.makeCopy( this, destinationDirectory, tree, null, null ), false, true )
+                unpacked = scanFiles( tree, null, null, true, false ).collect {
+                    File f -> new File( destinationDirectory, fileBean().relativePath( tree, f ))
+                }
+            }
+            else
+            {
+                unpacked = UnpackCache.link( tree, destinationDirectory )
+            }
+        }
+        else
+        {
+            /**
+             * Entries are transformed as they are extracted unless engine can't transform them or <filter> needs all of them
+             */
+            final engine          = unpackEngine( resource, sourceArchive )
+            final unpackUsingTemp = ( transform && ( resource.filter || ( ! engine?.transforms())))
+            final readFiles       = { File directory -> scanFiles( directory, null, null, true, false ) }
+            final unpackDirectory = unpackUsingTemp ? fileBean().tempDirectory() : destinationDirectory
+            final previousFiles   = (( engine != null ) || unpackUsingTemp ) ? null : readFiles( destinationDirectory )
+            final extracted       = extract( resource, sourceArchive, unpackDirectory, zipEntries, zipEntriesExclude, failIfNotFound,
+                                             ( unpackUsingTemp ? null : transform ))
+
+            if ( unpackUsingTemp )
+            {
+                processFilesResource( resource.makeCopy( this, destinationDirectory, unpackDirectory, null, null ), false, true )
+                unpacked = ( extracted ?: readFiles( unpackDirectory )).collect {
+                    File f -> new File( destinationDirectory, fileBean().relativePath( unpackDirectory, f ))
+                }
+                fileBean().delete( unpackDirectory )
+            }
+            else
+            {
+                unpacked = ( extracted != null ) ? extracted : ( readFiles( destinationDirectory ) - previousFiles )
+            }
+        }
+
+        if ( useMarkers ) { cache.markUnpacked( destinationDirectory, unpacked ) }
+
+        resource.metrics.add( 'unpack', CopyMetrics.Counter.ArchivesUnpacked )
+        resource.metrics.add( 'unpack', CopyMetrics.Counter.BytesRead,    sourceArchive.length())
+        resource.metrics.add( 'unpack', CopyMetrics.Counter.FilesCopied,  unpacked.size())
+        resource.metrics.add( 'unpack', CopyMetrics.Counter.BytesWritten, ( long ) unpacked.sum( 0L ){ File f -> f.length() })
+        unpacked
+    }
+
+
+    /**
+     * Extracts the archive specified.
+     *
+     * @param resource          resource to unpack
+     * @param sourceArchive     archive to extract
+     * @param directory         directory to extract the archive to
+     * @param zipEntries        Zip entries to extract, can be empty
+     * @param zipEntriesExclude Zip entries not to extract, can be empty
+     * @param failIfNotFound    whether execution should fail if no entries were matched
+     * @param transform         transform to apply to entries extracted, <code>null</code> to extract them with no filtering or replacements
+     * @return files extracted if they are known, {@code null} otherwise
+     */
+    private List<File> extract ( CopyResource   resource,
+                                 File           sourceArchive,
+                                 File           directory,
+                                 List<String>   zipEntries,
+                                 List<String>   zipEntriesExclude,
+                                 boolean        failIfNotFound,
+                                 EntryTransform transform )
+    {
+        final engine = unpackEngine( resource, sourceArchive )
+
+        if ( engine )
         {
-            processFilesResource( resource.makeCopy( this, destinationDirectory, unpackDirectory, null, null ), false, true )
-            fileBean().delete( unpackDirectory )
+            return engine.unpack( sourceArchive, directory, zipEntries, zipEntriesExclude,
+                                  (( zipEntries || zipEntriesExclude ) ? resource.preservePath : true ), failIfNotFound, transform )
         }
 
-        ( readFiles( destinationDirectory ) - previousFiles )
+        assert ( transform == null ), "[$sourceArchive.canonicalPath] - entries can't be transformed as they are extracted"
+
+        ( zipEntries || zipEntriesExclude ) ?
+            fileBean().unpackZipEntries( sourceArchive, directory, zipEntries, zipEntriesExclude, resource.preservePath, failIfNotFound ) :
+            fileBean().unpack( sourceArchive, directory, generalBean().choose( resource.useTrueZipForUnpack, useTrueZipForUnpack ))
+
+        null
     }
 
 
@@ -851,15 +2041,17 @@ class CopyMojo extends BaseGroovyMojo
      * @param excludes              files to exclude, may be <code>null</code>
      * @param cleanEmptyDirectories whether empty directories should be cleaned in addition to files matched
      * @param filterExpression      files "filter" expression
+     * @param threads               number of threads walking the directory and deleting files
      * @param verbose               verbose logging
      * @param failIfNotFound        fail if directory not found or no files were included
      */
-    @Requires({ sourceDirectory })
+    @Requires({ sourceDirectory && ( threads > 0 ) })
     private List<File> clean( File         sourceDirectory,
                               List<String> includes,
                               List<String> excludes,
                               boolean      cleanEmptyDirectories,
                               String       filterExpression,
+                              int          threads,
                               boolean      verbose,
                               boolean      failIfNotFound )
     {
@@ -869,18 +2061,19 @@ class CopyMojo extends BaseGroovyMojo
             return []
         }
 
-        List<File> files        = fileBean().files( sourceDirectory, includes, excludes, true, false, failIfNotFound )
-        List<File> filesDeleted = filter( files, filterExpression, verbose, failIfNotFound )
+        final      engine       = new CleanEngine( sourceDirectory, includes, excludes, cleanEmptyDirectories, threads )
+        List<File> filesDeleted
 
-        fileBean().delete( filesDeleted as File[] )
-
-        if ( cleanEmptyDirectories )
+        if ( filterExpression )
+        {   // <filter> needs all files matched before any of them is deleted
+            List<File> files = scanFiles( sourceDirectory, includes, excludes, true, failIfNotFound )
+            filesDeleted     = engine.clean( filter( files, filterExpression, verbose, failIfNotFound ))
+        }
+        else
         {
-            List<File> directoriesDeleted = ( fileBean().recurse( sourceDirectory, [ type : FileType.DIRECTORIES ], {} ) + sourceDirectory ).
-                                            findAll{ File f -> assert f.directory
-                                                               fileBean().directorySize( f ) == 0 } /* Not all files could be deleted */
-            fileBean().delete( directoriesDeleted as File[] )
-            filesDeleted += directoriesDeleted
+            filesDeleted = engine.clean()
+            assert ( filesDeleted || ( ! failIfNotFound )), \
+                   "No files found in [$sourceDirectory.canonicalPath] matching ${ includes ?: [] }/${ excludes ?: [] }"
         }
 
         if ( verbose ) { log.info( "[$sourceDirectory.canonicalPath] files deleted: $filesDeleted" )}
@@ -946,13 +2139,31 @@ class CopyMojo extends BaseGroovyMojo
     @Requires({ ( files != null ) && ( time >= 0 ) })
     private void process( List<File> files, String chmod, String processExpression, boolean isClean, long time )
     {
-        // noinspection GroovyAssignmentToMethodParameter
-        files = files.toSet().sort()
-        if ( ! isClean ){ verifyBean().exists( files as File[] )}
+        if ( files instanceof SpilledFileList )
+        {   // Files streamed are unique and are read lazily
+            if ( ! isClean ){ for ( f in files ) { verifyBean().exists( f ) }}
+        }
+        else
+        {
+            // noinspection GroovyAssignmentToMethodParameter
+            files = files.toSet().sort()
+            if ( ! isClean ){ verifyBean().exists( files as File[] )}
+        }
 
         if ( chmod && files )
         {
-            exec( "chmod $chmod '${ files.join( "' '" )}'", basedir, true, false, ExecOption.CommonsExec )
+            final      mode    = new Chmod( chmod )
+            final      threads = ( files.size() < CHMOD_PARALLEL_FILES ) ? 1 : Runtime.runtime.availableProcessors()
+            final      apply   = { List<File> filesBatch -> collectParallel( threads, filesBatch ){ File file -> mode.apply( file ) }}
+            List<File> batch   = []
+
+            for ( f in files )
+            {
+                if ( f.exists()) { batch << f }
+                if ( batch.size() == CHMOD_BATCH ) { apply( batch ); batch = [] }
+            }
+
+            apply( batch )
         }
 
         if ( processExpression )
@@ -3,6 +3,7 @@ package com.github.goldin.plugins.copy
 import static com.github.goldin.plugins.common.ConversionUtils.*
 import static com.github.goldin.plugins.common.GMojoUtils.*
 import com.github.goldin.plugins.common.BaseGroovyMojo
+import com.github.goldin.plugins.common.ChecksumCache
 import com.github.goldin.plugins.common.Replace
 import com.github.goldin.plugins.common.ThreadLocals
 import org.apache.maven.artifact.Artifact
@@ -33,6 +34,8 @@ import java.util.jar.Manifest
 @SuppressWarnings([ 'FinalClassWithProtectedMember', 'GroovyAccessibility' ])
 final class CopyMojoHelper
 {
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024
+
     private final BaseGroovyMojo mojo
 
     @Requires({ mojo })
@@ -402,20 +405,47 @@ final class CopyMojoHelper
     @Requires({ f && f.file && url && groupId && artifactId && version })
     void deploy ( File f, String url, String groupId, String artifactId, String version, String classifier )
     {
-        final description  = "[$f.canonicalPath] to [$url] as [<$groupId>:<$artifactId>:<$version>${ classifier ? ':<' + classifier + '>' : '' }]"
-        final request      = new DeployRequest()
-        request.repository = new RemoteRepository( url: url, type: 'default' )
-        request.artifacts  = [ toAetherArtifact( toMavenArtifact(
-            groupId, artifactId, version, '', fileBean().extension( f ), classifier, false, f )) ]
+        deploy([ new CopyDeployment( f, url, groupId, artifactId, version, classifier ) ], 1 )
+    }
 
-        try
-        {
-            mojo.repoSystem.deploy( mojo.repoSession, request )
-            log.info( "Deployed $description" )
+
+    /**
+     * Deploys files to Maven repos specified.
+     * Files deployed to the same repo are sent as a single request, or split between {@code threads} concurrent requests.
+     *
+     * @param deployments files to deploy
+     * @param threads     maximal number of deploy requests sent concurrently
+     */
+    @Requires({ deployments && deployments.every { it.file.file } && ( threads > 0 ) })
+    void deploy ( List<CopyDeployment> deployments, int threads )
+    {
+        final List<List<CopyDeployment>> batches = []
+
+        deployments.groupBy { it.url }.each {
+            String url, List<CopyDeployment> repoDeployments ->
+            final List<List<CopyDeployment>> repoBatches = ( 0 ..< Math.min( threads, repoDeployments.size())).collect { [] }
+            repoDeployments.eachWithIndex { CopyDeployment d, int j -> repoBatches[ j % repoBatches.size() ] << d }
+            batches.addAll( repoBatches )
         }
-        catch ( e )
-        {
-            throw new MojoExecutionException( "Failed to deploy $description", e )
+
+        collectParallel( threads, batches ){
+            List<CopyDeployment> batch ->
+            final request      = new DeployRequest()
+            request.repository = new RemoteRepository( url: batch.first().url, type: 'default' )
+            request.artifacts  = batch.collect {
+                CopyDeployment d ->
+                toAetherArtifact( toMavenArtifact( d.groupId, d.artifactId, d.version, '', fileBean().extension( d.file ), d.classifier, false, d.file ))
+            }
+
+            try
+            {
+                mojo.repoSystem.deploy( mojo.repoSession, request )
+                batch.each { log.info( "Deployed $it" ) }
+            }
+            catch ( e )
+            {
+                throw new MojoExecutionException( "Failed to deploy ${ batch.join( ', ' ) }", e )
+            }
         }
     }
 
@@ -431,27 +461,34 @@ final class CopyMojoHelper
      * @param replaces                 replacements to make
      * @param filtering                whether Maven filtering should be performed
      * @param encoding                 Filtering/replacement encoding
-     * @param fileFilter               {@link MavenFileFilter} instance, allowed to be null if filter is false
+     * @param filterWrappers           filter wrappers created with {@link #filterWrappers}, allowed to be null if filtering is false
+     * @param copyEngine               {@link CopyEngine} instance to copy files with, allowed to be null to copy them with {@code fileBean()}
+     * @param index                    {@link CopyIndex} of files copied before, allowed to be null if it shouldn't be used
      * @param verbose                  whether information is written to log with "INFO" level
      * @param move                     whether file should be moved and not copied
      * @param filterWithDollarOnly     whether only ${ .. } expressions should be recognized as delimiters when files are filtered
+     * @param replaceWindow            size of the window replacements are streamed over, in characters,
+     *                                 zero or negative to read the whole file into memory
      *
      * @return destinationFile if file was copied,
      *         null            if file was skipped (identical)
      */
     @SuppressWarnings([ 'MethodSize', 'AbcComplexity', 'CyclomaticComplexity', 'GroovyMethodParameterCount' ])
     @Requires({ sourceFile.file && destinationFile && ( ! netBean().isNet( destinationFile.path )) && ( replaces != null ) && encoding })
-    File copyFile ( final File            sourceFile,
-                    final File            destinationFile,
-                    final boolean         skipIdentical,
-                    final boolean         skipIdenticalUseChecksum,
-                    final Replace[]       replaces,
-                    final boolean         filtering,
-                    final String          encoding,
-                    final MavenFileFilter fileFilter,
-                    final boolean         verbose,
-                    final boolean         move,
-                    final boolean         filterWithDollarOnly )
+    File copyFile ( final File                          sourceFile,
+                    final File                          destinationFile,
+                    final boolean                       skipIdentical,
+                    final boolean                       skipIdenticalUseChecksum,
+                    final Replace[]                     replaces,
+                    final boolean                       filtering,
+                    final String                        encoding,
+                    final List<FileUtils.FilterWrapper> filterWrappers,
+                    final CopyEngine                    copyEngine,
+                    final CopyIndex                     index,
+                    final boolean                       verbose,
+                    final boolean                       move,
+                    final boolean                       filterWithDollarOnly,
+                    final int                           replaceWindow )
     {
         File             fromFile           = sourceFile
         boolean          operationPerformed = false
@@ -460,6 +497,14 @@ final class CopyMojoHelper
 
         assert ! ( move && samePath()), \
                "It is not possible to <move> [$fromFile] into itself - <move> means source file is deleted"
+        assert ! ( index && ( move || ( ! skipIdentical ))), \
+               "Copy index can only be used with <skipIdentical> and without <move>"
+
+        if ( index && ( ! samePath()) && index.upToDate( sourceFile, destinationFile, skipIdenticalUseChecksum ))
+        {
+            if ( verbose ) { log.info( "[$fromFile] skipped - unchanged since it was copied to [$destinationFile]" ) }
+            return null
+        }
 
         /**
          * Deleting destination file if possible
@@ -468,54 +513,22 @@ final class CopyMojoHelper
 
         try
         {
-            if ( filtering && (( ! filterWithDollarOnly ) || fromFile.getText( encoding ).contains( '${' )))
+            final boolean filter = filtering && (( ! filterWithDollarOnly ) || containsDollarBrace( fromFile, encoding ))
+
+            if ( filter || replaces )
             {
-                List<FileUtils.FilterWrapper> wrappers =
-                    fileFilter.getDefaultFilterWrappers( ThreadLocals.get( MavenProject ), null, false,
-                                                         ThreadLocals.get( MavenSession ), new MavenResourcesExecution())
-                if ( filterWithDollarOnly )
-                {
-                    wrappers.each { Wrapper wrapper -> wrapper.delimiters = [ '${*}' ] as Set }
-                }
-                else if ( fileBean().extension( fromFile ).toLowerCase() == 'bat' )
+                if ( filter && ( ! filterWithDollarOnly ) && ( fileBean().extension( fromFile ).toLowerCase() == 'bat' ))
                 {
                     log.warn( "[$fromFile] - filtering *.bat files without <filterWithDollarOnly> may not work correctly due to '@' character, " +
                               'see http://evgeny-goldin.org/youtrack/issue/pl-233.' )
                 }
 
-                File tempFile = null
-                if ( samePath())
-                {
-                    tempFile = fileBean().tempFile()
-                    fileBean().copy( fromFile, tempFile.parentFile, tempFile.name )
-                    if ( verbose ) { log.info( "[$fromFile] copied to [$tempFile] (to filter it into itself)" ) }
+                transform( fromFile, destinationFile, ( filter ? filterWrappers : [] ), replaces, encoding, replaceWindow )
 
-                    fromFile = tempFile
-                }
+                if ( verbose ) { log.info( "[$fromFile] ${ filter ? 'filtered' : 'content written' } to [$destinationFile]" +
+                                           ( replaces ? ", [${ replaces.size()}] replace${ generalBean().s( replaces.size()) } made" : '' ))}
 
-                assert ! samePath()
-                fileBean().mkdirs( destinationFile.parentFile )
-                fileFilter.copyFile( fromFile, destinationFile, true, wrappers, encoding, true )
-                // noinspection JavaStylePropertiesInvocation, GroovySetterCallCanBePropertyAccess
-                assert destinationFile.setLastModified( System.currentTimeMillis())
-                fileBean().delete(( tempFile ? [ tempFile ] : [] ) as File[] )
-
-                if ( verbose ) { log.info( "[$fromFile] filtered to [$destinationFile]" ) }
-
-                /**
-                 * - Destination file created becomes input file for the following operations
-                 * - If no replacements should be made - we're done
-                 */
                 fromFile           = destinationFile
-                operationPerformed = ( replaces.size() < 1 )
-            }
-
-            if ( replaces )
-            {
-                final content = ( String ) replaces.inject( fromFile.getText( encoding )){ String s, Replace r -> r.replace( s, fromFile ) }
-                write( destinationFile, content, encoding )
-                if ( verbose ) { log.info( "[$fromFile] content written to [$destinationFile], " +
-                                           "[${ replaces.size()}] replace${ generalBean().s( replaces.size()) } made" )}
                 operationPerformed = true
             }
 
@@ -546,8 +559,10 @@ final class CopyMojoHelper
 
                 if ( ! operationPerformed )
                 {
-                    fileBean().copy( fromFile, destinationFile.parentFile, destinationFile.name )
-                    if ( verbose ) { log.info( "[$fromFile] ${ move ? 'moved' : 'copied' } to [$destinationFile]" )}
+                    final strategy = copyEngine ? copyEngine.copy( fromFile, destinationFile ) : null
+                    if ( ! strategy ) { fileBean().copy( fromFile, destinationFile.parentFile, destinationFile.name ) }
+                    if ( verbose ) { log.info( "[$fromFile] ${ move ? 'moved' : 'copied' } to [$destinationFile]" +
+                                               ( strategy ? " (${ strategy.name().toLowerCase() })" : '' ))}
                 }
             }
 
@@ -556,6 +571,7 @@ final class CopyMojoHelper
              * doesn't succeed - source file is deleted
              */
             if ( move && sourceFile.file && ( sourceFile.canonicalPath != destinationFile.canonicalPath )) { fileBean().delete( sourceFile ) }
+            if ( index && ( sourceFile.canonicalPath != destinationFile.canonicalPath ) && destinationFile.file ) { index.update( sourceFile, destinationFile, skipIdenticalUseChecksum ) }
             ( operationSkipped ? null : verifyBean().file( destinationFile ))
         }
         catch ( e )
@@ -565,14 +581,181 @@ final class CopyMojoHelper
     }
 
 
+    /**
+     * Creates filter wrappers to filter files with, they can be reused for all files of a resource.
+     *
+     * @param fileFilter           {@link MavenFileFilter} instance
+     * @param filterWithDollarOnly whether only ${ .. } expressions should be recognized as delimiters
+     * @return filter wrappers to pass to {@link #copyFile}
+     */
+    @Requires({ fileFilter })
+    @Ensures({ result != null })
+    List<FileUtils.FilterWrapper> filterWrappers ( MavenFileFilter fileFilter, boolean filterWithDollarOnly )
+    {
+        List<FileUtils.FilterWrapper> wrappers =
+            fileFilter.getDefaultFilterWrappers( ThreadLocals.get( MavenProject ), null, false,
+                                                 ThreadLocals.get( MavenSession ), new MavenResourcesExecution())
+        if ( filterWithDollarOnly )
+        {
+            wrappers.each { Wrapper wrapper -> wrapper.delimiters = [ '${*}' ] as Set }
+        }
+
+        wrappers
+    }
+
+
+    /**
+     * Determines if the file specified contains a "${" sequence.
+     * Files in ASCII-compatible encodings are scanned as bytes, without decoding them.
+     *
+     * @param file     file to scan
+     * @param encoding file encoding
+     * @return true if file contains a "${" sequence, false otherwise
+     */
+    @Requires({ file.file && encoding })
+    boolean containsDollarBrace ( File file, String encoding )
+    {
+        final byte[] dollarBrace = '${'.getBytes( 'US-ASCII' )
+
+        if ( ! Arrays.equals( '${'.getBytes( encoding ), dollarBrace ))
+        {
+            return file.getText( encoding ).contains( '${' )
+        }
+
+        final InputStream is     = new FileInputStream( file )
+        final byte[]      buffer = new byte[ STREAM_BUFFER_SIZE ]
+        boolean           dollar = false
+
+        try
+        {
+            for ( int n = is.read( buffer ); n > -1; n = is.read( buffer ))
+            {
+                for ( int j = 0; j < n; j++ )
+                {
+                    if ( dollar && ( buffer[ j ] == dollarBrace[ 1 ] )) { return true }
+                    dollar = ( buffer[ j ] == dollarBrace[ 0 ] )
+                }
+            }
+        }
+        finally
+        {
+            is.close()
+        }
+
+        false
+    }
+
+
+    /**
+     * Filters the file specified and makes replacements in it in a single pass, writing the result once.
+     * Replacements are streamed through {@link Replace#writer}s if window is positive and all of them are
+     * {@link Replace#streamable}, so that only a few windows of data are held in memory.
+     *
+     * @param sourceFile      file to filter and make replacements in
+     * @param destinationFile file to write the result to, may be the same as source file
+     * @param filterWrappers  filter wrappers to filter the file with, may be empty
+     * @param replaces        replacements to make, may be empty
+     * @param encoding        files encoding
+     * @param window          size of the window replacements are streamed over, in characters
+     */
+    @Requires({ sourceFile.file && destinationFile && ( filterWrappers != null ) && ( replaces != null ) && encoding })
+    @Ensures({ destinationFile.file })
+    void transform ( File                          sourceFile,
+                     File                          destinationFile,
+                     List<FileUtils.FilterWrapper> filterWrappers,
+                     Replace[]                     replaces,
+                     String                        encoding,
+                     int                           window )
+    {
+        final samePath   = ( sourceFile.canonicalPath == destinationFile.canonicalPath )
+        final targetFile = samePath ? new File( destinationFile.parentFile, destinationFile.name + '.transform' ) : destinationFile
+
+        fileBean().mkdirs( targetFile.parentFile )
+
+        try
+        {
+            transform( new FileInputStream( sourceFile ), new FileOutputStream( targetFile ), sourceFile, filterWrappers, replaces, encoding, window )
+        }
+        catch ( e )
+        {
+            fileBean().delete( targetFile )
+            throw e
+        }
+
+        if ( samePath )
+        {
+            fileBean().delete( destinationFile )
+            assert targetFile.renameTo( destinationFile ), "Failed to rename [$targetFile] to [$destinationFile]"
+        }
+    }
+
+
+    /**
+     * Filters the stream specified and makes replacements in it in a single pass, as {@link #transform(File, File, List, Replace[], String, int)} does.
+     * Both streams are closed.
+     *
+     * @param is              stream to read the content from
+     * @param os              stream to write the result to
+     * @param file            file the content belongs to, passed to replacements
+     * @param filterWrappers  filter wrappers to filter the content with, may be empty
+     * @param replaces        replacements to make, may be empty
+     * @param encoding        content encoding
+     * @param window          size of the window replacements are streamed over, in characters
+     */
+    @Requires({ ( is != null ) && ( os != null ) && file && ( filterWrappers != null ) && ( replaces != null ) && encoding })
+    void transform ( InputStream                   is,
+                     OutputStream                  os,
+                     File                          file,
+                     List<FileUtils.FilterWrapper> filterWrappers,
+                     Replace[]                     replaces,
+                     String                        encoding,
+                     int                           window )
+    {
+        final stream = ( window > 0 ) && replaces.every { it.streamable() }
+
+        Reader reader = new BufferedReader( new InputStreamReader( is, encoding ), STREAM_BUFFER_SIZE )
+        for ( FileUtils.FilterWrapper wrapper in filterWrappers ){ reader = wrapper.getReader( reader ) }
+
+        Writer writer = new BufferedWriter( new OutputStreamWriter( os, encoding ), STREAM_BUFFER_SIZE )
+        if ( stream )
+        {
+            for ( Replace replace in replaces.reverse()){ writer = replace.writer( writer, window, file ) }
+        }
+
+        try
+        {
+            if ( replaces && ( ! stream ))
+            {
+                writer.write( Replace.replace( replaces.toList(), reader.text, file ))
+            }
+            else
+            {
+                final buffer = new char[ STREAM_BUFFER_SIZE ]
+                for ( int n = reader.read( buffer ); n > -1; n = reader.read( buffer )){ writer.write( buffer, 0, n ) }
+            }
+
+            writer.close()
+        }
+        catch ( e )
+        {
+            try { writer.close() } catch ( ignored ){}
+            throw e
+        }
+        finally
+        {
+            reader.close()
+        }
+    }
+
+
     @Requires({ fromFile.file && destinationFile.file })
-    private boolean identicalFiles ( File fromFile, File destinationFile, boolean useChecksum )
+    boolean identicalFiles ( File fromFile, File destinationFile, boolean useChecksum )
     {
         if ( fromFile.length() != destinationFile.length()) { return false }
 
         if ( useChecksum )
         {
-            fileBean().checksum( fromFile ) == fileBean().checksum( destinationFile )
+            ChecksumCache.identical( fromFile, destinationFile )
         }
         else
         {
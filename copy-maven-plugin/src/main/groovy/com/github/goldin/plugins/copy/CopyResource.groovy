@@ -38,6 +38,7 @@ final class CopyResource extends Resource implements Cloneable
         final newResource = new CopyResource()
 
         newResource.startTime                = oldResource.startTime
+        newResource.metrics                  = oldResource.metrics
         newResource.targetPath               = targetPathFile.canonicalPath
         newResource.directory                = directoryFile.canonicalPath
         newResource.includes                 = includePatterns
@@ -104,6 +105,8 @@ final class CopyResource extends Resource implements Cloneable
     CopyDependency       dependency
     List<CopyDependency> dependencies () { generalBean().list( this.dependencies, this.dependency ) }
 
+    List<String> after () { split( this.after ) }
+
     String[] zipEntries
     String   zipEntry
     String[] zipEntriesExclude
@@ -118,6 +121,9 @@ final class CopyResource extends Resource implements Cloneable
      */
     Boolean eliminateDuplicates
     Boolean parallelDownload
+    Boolean parallelCopy
+    Boolean parallelPack
+    Boolean parallelUnpack
     Boolean stripVersion
     Boolean stripTimestamp
     Boolean verbose
@@ -125,11 +131,15 @@ final class CopyResource extends Resource implements Cloneable
     Boolean failOnError
     Boolean skipIdentical
     Boolean skipIdenticalUseChecksum
+    Boolean skipIdenticalUseIndex
     Boolean skipPacked
     Boolean skipUnpacked
+    Boolean unpackMarkers
+    Boolean sharedUnpackCache
     Boolean useTrueZipForPack
     Boolean useTrueZipForUnpack
     Boolean filterWithDollarOnly
+    Boolean streaming         // Whether files are copied or unpacked while their directory is still scanned
     Boolean dependenciesAtM2  // "false" - all <dependencies> are copied to temp directory first,
                               //          "stripVersion" is active,
                               //          <filter> and <process> operate on all of them at once,
@@ -153,15 +163,27 @@ final class CopyResource extends Resource implements Cloneable
     String  failsWith             = ''    // For troubleshooting only: resource processing should fail with exception specified
 
     int     compressionLevel = 9     // Zip compression level
+    Integer zstdLevel                // zstd compression level of "tar.zst" archives
+    Integer copyThreads              // Number of threads copying files when <parallelCopy> is enabled
+    Integer cleanThreads             // Number of threads walking directories and deleting files of <clean>
+    Integer packThreads              // Number of threads compressing archive entries when <parallelPack> is enabled
+    Integer unpackThreads            // Number of threads inflating archive entries when <parallelUnpack> is enabled
+    Integer replaceWindow            // Size of the window <replace> patterns are matched over, in characters
+    Integer streamingQueue           // Maximal number of files scanned and waiting to be copied when <streaming> is enabled
     int     retries          = 5     // Number of retries for FTP download
     long    timeout          = 3600  // FTP download timeout (in seconds)
     long    startTime        = -1    // Time when this resource started to be processed
     long    endTime          = -1    // Time when this resource finished to be processed
+    CopyMetrics metrics              // Metrics of this resource, shared with its copies
 
+    String  id                       // Resource id, to be referenced by other resources <after>
+    String  after                    // Comma-separated ids of resources to be processed before this one
     String  description
     String  runIf
     String  encoding = 'UTF-8'
     String  chmod
+    String  linkMode                 // How dependencies are materialized in target paths: "copy", "hardlink", "symlink" or "reflink"
+    String  archiveEngine            // Engine packing and unpacking Zip archives: "jdk", "commons-compress", "truezip", "parallel" or "default"
     String  wget
     String  curl
     String  destFileName
@@ -258,6 +280,7 @@ final class CopyResource extends Resource implements Cloneable
     @Override
     String toString ()
     {
+        "${ id ? '[' + id + '] ' : '' }" +
         "Target path${ targetPaths().size() == 1 ? '' : 's' } ${ targetPaths() }, " +
         "directory [${ directory ?: '' }], " +
         "dependencies ${ dependencies() }"
@@ -0,0 +1,143 @@
+package com.github.goldin.plugins.copy
+
+import com.github.goldin.plugins.common.ThreadLocals
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.util.concurrent.Callable
+import java.util.concurrent.CompletionService
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorCompletionService
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+
+
+/**
+ * Orders and executes {@code <resource>}s according to their {@code <id>} and {@code <after>} declarations.
+ */
+final class CopyResourcesScheduler
+{
+    private final List<CopyResource> resources
+
+    /**
+     * Mapping of resource index to indexes of resources it should be processed after.
+     */
+    private final Map<Integer, Set<Integer>> dependencies = [:]
+
+
+    @Requires({ resources })
+    CopyResourcesScheduler ( List<CopyResource> resources )
+    {
+        this.resources = resources
+
+        final Map<String, Integer> ids = [:]
+
+        resources.eachWithIndex {
+            CopyResource resource, int j ->
+            if ( resource.id )
+            {
+                assert ( ! ids.containsKey( resource.id )), "<resource> <id> [$resource.id] is used more than once"
+                ids[ resource.id ] = j
+            }
+        }
+
+        resources.eachWithIndex {
+            CopyResource resource, int j ->
+            dependencies[ j ] = resource.after().collect {
+                String id ->
+                assert ids.containsKey( id ), "<resource> [$resource] - <after> refers to unknown <id> [$id], known ids are ${ ids.keySet() }"
+                assert ( ids[ id ] != j ),    "<resource> [$resource] - <after> refers to its own <id> [$id]"
+                ids[ id ]
+            } as Set
+        }
+    }
+
+
+    /**
+     * Orders resources so that each one follows all resources it should be processed {@code <after>}.
+     * Declaration order is kept for resources that are not constrained.
+     *
+     * @return resources ordered
+     */
+    @Ensures({ result.size() == resources.size() })
+    List<CopyResource> ordered ()
+    {
+        final List<Integer> order = []
+
+        while ( order.size() < resources.size())
+        {
+            final next = ( 0 ..< resources.size()).find { int j -> ( ! ( j in order )) && dependencies[ j ].every { it in order }}
+            assert ( next != null ), "<resource>s ${ ( 0 ..< resources.size()).findAll{ ! ( it in order ) }.collect{ resources[ it ] }} " +
+                                     'have circular <after> dependencies'
+            order << next
+        }
+
+        order.collect { resources[ it ] }
+    }
+
+
+    /**
+     * Executes the action specified for each resource using a bounded pool of threads.
+     * Resources are started as soon as all resources they should be processed {@code <after>} are finished.
+     * Once any resource fails no new resources are started, resources already running are waited for
+     * and the first failure is re-thrown.
+     *
+     * @param threads maximal number of resources to execute concurrently
+     * @param action  action to execute for each resource
+     */
+    @Requires({ ( threads > 0 ) && action })
+    void execute ( int threads, Closure action )
+    {
+        ordered() // Verifies there are no circular dependencies
+
+        final Map<Class<?>, ?>           locals   = ThreadLocals.snapshot()
+        final ExecutorService            executor = Executors.newFixedThreadPool( Math.min( threads, resources.size()))
+        final CompletionService<Integer> service  = new ExecutorCompletionService<Integer>( executor )
+        final Set<Integer>               started  = new HashSet<Integer>()
+        final Set<Integer>               finished = new HashSet<Integer>()
+        Throwable                        failure  = null
+        int                              running  = 0
+
+        final startReady = {
+            for ( int j in ( 0 ..< resources.size()))
+            {
+                if (( ! ( j in started )) && dependencies[ j ].every { it in finished })
+                {
+                    final int index = j
+                    started << index
+                    running++
+                    service.submit({ ThreadLocals.restore( locals ); action( resources[ index ] ); index } as Callable<Integer> )
+                }
+            }
+        }
+
+        try
+        {
+            startReady()
+
+            while ( running > 0 )
+            {
+                final Future<Integer> future = service.take()
+                running--
+
+                try
+                {
+                    finished << future.get()
+                }
+                catch ( ExecutionException e )
+                {
+                    failure = failure ?: e.cause
+                }
+
+                if ( ! failure ) { startReady() }
+            }
+        }
+        finally
+        {
+            executor.shutdownNow()
+        }
+
+        if ( failure ) { throw failure }
+        assert finished.size() == resources.size()
+    }
+}
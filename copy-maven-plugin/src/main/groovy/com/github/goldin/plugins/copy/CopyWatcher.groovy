@@ -0,0 +1,199 @@
+package com.github.goldin.plugins.copy
+
+import static com.github.goldin.plugins.common.GMojoUtils.*
+import com.github.goldin.plugins.common.FileScanner.Glob
+import org.gcontracts.annotations.Requires
+import java.nio.file.ClosedWatchServiceException
+import java.nio.file.FileSystems
+import java.nio.file.FileVisitResult
+import java.nio.file.Files
+import java.nio.file.Path
+import java.nio.file.SimpleFileVisitor
+import java.nio.file.StandardWatchEventKinds
+import java.nio.file.WatchEvent
+import java.nio.file.WatchKey
+import java.nio.file.WatchService
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.concurrent.TimeUnit
+import java.util.regex.Pattern
+
+
+/**
+ * Watches source directories of resources with a {@link WatchService} and reports files changed in batches.
+ *
+ * Events are debounced: a batch is reported once no new events arrive for the debounce period,
+ * so that saving a file or checking out a branch results in a single batch.
+ * Directories created are registered as they appear, files they contain are reported as changed.
+ */
+final class CopyWatcher
+{
+    private final List<CopyResource>            resources
+    private final Map<CopyResource, List<Glob>> includes = [:]
+    private final Map<CopyResource, List<Glob>> excludes = [:]
+    private final long                          debounce
+    private final WatchService                  watchService
+    private final Map<WatchKey, Path>           keys     = [:]
+
+
+    /**
+     * Creates new watcher and registers source directories of the resources specified.
+     *
+     * @param resources resources to watch, their {@code <directory>} should be local and canonical
+     * @param excludes  resource => exclude patterns, including default excludes
+     * @param debounce  period of time (in milliseconds) without events after which changes are reported
+     */
+    @Requires({ resources && ( excludes != null ) && ( debounce >= 0 ) })
+    CopyWatcher ( List<CopyResource> resources, Map<CopyResource, List<String>> excludes, long debounce )
+    {
+        this.resources    = resources
+        this.debounce     = debounce
+        this.watchService = FileSystems.default.newWatchService()
+
+        for ( resource in resources )
+        {
+            this.includes[ resource ] = ( resource.includes ?: [ '**' ] ).collect { new Glob( it ) }
+            this.excludes[ resource ] = ( excludes[ resource ] ?: [] ).collect { new Glob( it ) }
+            register( new File( resource.directory ).toPath())
+        }
+    }
+
+
+    /**
+     * Registers the directory specified and all its subdirectories.
+     *
+     * @param directory directory to register
+     * @return files found in directories registered
+     */
+    private List<File> register ( Path directory )
+    {
+        final List<File> files = []
+        if ( ! Files.isDirectory( directory )) { return files }
+
+        Files.walkFileTree( directory, new SimpleFileVisitor<Path>() {
+            @Override
+            FileVisitResult preVisitDirectory ( Path dir, BasicFileAttributes attributes )
+            {
+                keys[ dir.register( watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                                                  StandardWatchEventKinds.ENTRY_MODIFY,
+                                                  StandardWatchEventKinds.ENTRY_DELETE ) ] = dir
+                FileVisitResult.CONTINUE
+            }
+
+            @Override
+            FileVisitResult visitFile ( Path file, BasicFileAttributes attributes )
+            {
+                files << file.toFile()
+                FileVisitResult.CONTINUE
+            }
+        })
+
+        files
+    }
+
+
+    /**
+     * Watches source directories, passing each batch of changes to the action specified.
+     *
+     * @param timeout time (in milliseconds) to watch the directories for, zero to watch them until the thread is interrupted
+     * @param action  action invoked for each resource with files changed: resource, files created or modified, files deleted
+     */
+    @Requires({ ( timeout >= 0 ) && action })
+    void watch ( long timeout, Closure action )
+    {
+        final long deadline = ( timeout > 0 ) ? System.currentTimeMillis() + timeout : Long.MAX_VALUE
+
+        try
+        {
+            while (( ! Thread.currentThread().isInterrupted()) && ( System.currentTimeMillis() < deadline ))
+            {
+                final WatchKey key = watchService.poll( Math.min( 500L, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS )
+                if ( key == null ) { continue }
+
+                final Set<File> changed = new LinkedHashSet<File>()
+                final Set<File> deleted = new LinkedHashSet<File>()
+
+                /**
+                 * Draining events until none arrives for the debounce period
+                 */
+                for ( WatchKey k = key; k != null; k = watchService.poll( debounce, TimeUnit.MILLISECONDS ))
+                {
+                    events( k, changed, deleted )
+                }
+
+                report( changed, deleted, action )
+            }
+        }
+        catch ( InterruptedException ignored )
+        {
+            Thread.currentThread().interrupt()
+        }
+        catch ( ClosedWatchServiceException ignored ){}
+        finally
+        {
+            watchService.close()
+        }
+    }
+
+
+    /**
+     * Reads events of the key specified, registering directories created.
+     */
+    private void events ( WatchKey key, Set<File> changed, Set<File> deleted )
+    {
+        final Path directory = keys[ key ]
+
+        for ( WatchEvent<?> event in key.pollEvents())
+        {
+            if ( event.kind() == StandardWatchEventKinds.OVERFLOW )
+            {   // Events were lost, all files are considered changed
+                for ( resource in resources ) { changed.addAll( scanFiles( new File( resource.directory ), null, null, true, false )) }
+                continue
+            }
+
+            final Path path = directory.resolve(( Path ) event.context())
+            final File file = path.toFile()
+
+            if ( event.kind() == StandardWatchEventKinds.ENTRY_DELETE )
+            {
+                changed.remove( file )
+                deleted << file
+            }
+            else if ( Files.isDirectory( path ))
+            {
+                if ( event.kind() == StandardWatchEventKinds.ENTRY_CREATE ) { changed.addAll( register( path )) }
+            }
+            else
+            {
+                deleted.remove( file )
+                changed << file
+            }
+        }
+
+        if ( ! key.reset()) { keys.remove( key ) }
+    }
+
+
+    /**
+     * Passes files changed to the action, for each resource including them.
+     */
+    private void report ( Set<File> changed, Set<File> deleted, Closure action )
+    {
+        for ( resource in resources )
+        {
+            final                  root     = resource.directory
+            final Closure<Boolean> included = {
+                File f ->
+                final path = f.path
+                if ( ! path.startsWith( root + File.separator )) { return false }
+                final String[] relativePath = path.substring( root.length() + 1 ).split( Pattern.quote( File.separator ))
+                includes[ resource ].any { Glob glob -> glob.matches( relativePath ) } &&
+                ( ! excludes[ resource ].any { Glob glob -> glob.matches( relativePath ) })
+            }
+
+            final resourceChanged = changed.findAll { included( it ) && it.file }
+            final resourceDeleted = deleted.findAll { included( it ) }
+
+            if ( resourceChanged || resourceDeleted ) { action( resource, resourceChanged, resourceDeleted ) }
+        }
+    }
+}
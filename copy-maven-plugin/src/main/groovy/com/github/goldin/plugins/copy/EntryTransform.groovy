@@ -0,0 +1,88 @@
+package com.github.goldin.plugins.copy
+
+import org.gcontracts.annotations.Requires
+
+
+/**
+ * {@code <filtering>} and {@code <replace>} applied by {@link ArchiveEngine} to the content of entries as they are packed or extracted,
+ * so that files transformed don't need to be written to a temporary directory first.
+ */
+final class EntryTransform
+{
+    private final Closure<Boolean> predicate
+    private final Closure          action
+
+
+    /**
+     * Creates new transform.
+     *
+     * @param predicate determines if entry should be transformed: entry name => true or false
+     * @param action    transforms entry content: entry name, file packed or extracted, input stream, output stream,
+     *                  both streams are to be closed by the action
+     */
+    @Requires({ predicate && action })
+    EntryTransform ( Closure<Boolean> predicate, Closure action )
+    {
+        this.predicate = predicate
+        this.action    = action
+    }
+
+
+    /**
+     * Determines if content of the entry specified should be transformed, other entries are packed or extracted as-is.
+     *
+     * @param name entry name ("dir/file.txt")
+     */
+    boolean applies ( String name ){ predicate( name ) }
+
+
+    /**
+     * Provides a copy of this transform not applied to the entries specified.
+     *
+     * @param names names of entries to keep as-is
+     */
+    EntryTransform except ( Collection<String> names )
+    {
+        final Set<String> excluded = new HashSet<String>( names )
+        new EntryTransform({ String name -> ( ! excluded.contains( name )) && applies( name ) }, action )
+    }
+
+
+    /**
+     * Transforms content of the entry specified, reading it from the input stream and writing it to the output stream.
+     * Input stream is closed, output stream is flushed but left open so that archive streams can be written to.
+     *
+     * @param name entry name ("dir/file.txt")
+     * @param file file packed to the entry or extracted from it
+     * @param is   stream to read the entry content from
+     * @param os   stream to write the content transformed to
+     */
+    @Requires({ name && file && ( is != null ) && ( os != null ) })
+    void transform ( String name, File file, InputStream is, OutputStream os )
+    {
+        action( name, file, is, new NonClosingOutputStream( os ))
+    }
+
+
+    /**
+     * Output stream flushed but not closed when it is closed.
+     */
+    private static final class NonClosingOutputStream extends OutputStream
+    {
+        private final OutputStream os
+
+        NonClosingOutputStream ( OutputStream os ){ this.os = os }
+
+        @Override
+        void write ( int b ){ os.write( b ) }
+
+        @Override
+        void write ( byte[] b, int off, int len ){ os.write( b, off, len ) }
+
+        @Override
+        void flush (){ os.flush() }
+
+        @Override
+        void close (){ os.flush() }
+    }
+}
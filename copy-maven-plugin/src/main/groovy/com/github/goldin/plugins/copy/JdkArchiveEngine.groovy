@@ -0,0 +1,141 @@
+package com.github.goldin.plugins.copy
+
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+
+/**
+ * Zip {@link ArchiveEngine} based on {@code java.util.zip}, packing and extracting entries on a single thread.
+ * Entries kept when archive is updated are inflated and compressed again.
+ */
+final class JdkArchiveEngine implements ArchiveEngine
+{
+    private static final int BUFFER_SIZE = 64 * 1024
+
+    private final int  level
+    private final Long entriesTime
+
+
+    /**
+     * Creates new engine.
+     *
+     * @param level       compression level, from 0 (stored) to 9
+     * @param entriesTime time of entries packed, files last modified time is used if {@code null}
+     */
+    @Requires({ ( level >= 0 ) && ( level <= 9 ) })
+    JdkArchiveEngine ( int level, Long entriesTime = null )
+    {
+        this.level       = level
+        this.entriesTime = entriesTime
+    }
+
+
+    @Override
+    String getName (){ ArchiveEngines.JDK }
+
+
+    @Override
+    boolean supports ( File archive ){ ArchiveEngines.zip( archive ) }
+
+
+    @Override
+    boolean transforms (){ true }
+
+
+    @Override
+    @Requires({ archive && entries && entries.values().every { it.file } })
+    @Ensures ({ result.file })
+    File pack ( File archive, Map<String, File> entries, boolean update, EntryTransform transform )
+    {
+        final File            output   = ArchiveEngines.output( archive, update )
+        final ZipFile         previous = ( output != archive ) ? new ZipFile( archive ) : null
+        final ZipOutputStream zip      = new ZipOutputStream( new BufferedOutputStream( new FileOutputStream( output ), BUFFER_SIZE ))
+        final Set<String>     written  = new HashSet<String>()
+        boolean               packed   = false
+
+        zip.level = level
+
+        try
+        {
+            for ( directory in ArchiveEngines.directories( entries.keySet()))
+            {
+                final entry = new ZipEntry( directory )
+                entry.time  = ( entriesTime != null ) ? entriesTime : ArchiveEngines.directoryTime( directory, entries )
+                zip.putNextEntry( entry )
+                zip.closeEntry()
+                written << directory
+            }
+
+            for ( previousEntry in ( previous?.entries()?.toList() ?: [] ))
+            {
+                if ( entries.containsKey( previousEntry.name ) || written.contains( previousEntry.name )) { continue }
+
+                final entry = new ZipEntry( previousEntry.name )
+                entry.time  = previousEntry.time
+                zip.putNextEntry( entry )
+                if ( ! previousEntry.directory ) { previous.getInputStream( previousEntry ).withStream { InputStream is -> zip << is }}
+                zip.closeEntry()
+            }
+
+            entries.each {
+                String name, File file ->
+                final entry = new ZipEntry( name )
+                entry.time  = ( entriesTime != null ) ? entriesTime : file.lastModified()
+                zip.putNextEntry( entry )
+                ArchiveEngines.packEntry( name, file, zip, transform )
+                zip.closeEntry()
+            }
+
+            packed = true
+        }
+        finally
+        {
+            zip.close()
+            previous?.close()
+            if ( ! packed ) { output.delete() }
+        }
+
+        ArchiveEngines.replace( archive, output )
+    }
+
+
+    @Override
+    @Requires({ archive.file && destinationDirectory && ( includes != null ) && ( excludes != null ) })
+    @Ensures ({ result != null })
+    List<File> unpack ( File           archive,
+                        File           destinationDirectory,
+                        List<String>   includes,
+                        List<String>   excludes,
+                        boolean        preservePath,
+                        boolean        failIfNotFound,
+                        EntryTransform transform )
+    {
+        final extraction = new ArchiveEngines.Extraction( archive, destinationDirectory, includes, excludes, preservePath )
+        final zipFile    = new ZipFile( archive )
+        final files      = new ArrayList<File>()
+
+        try
+        {
+            for ( entry in zipFile.entries())
+            {
+                final File file = extraction.file( entry.name )
+                if ( file == null ) { continue }
+
+                ArchiveEngines.extractEntry( entry.name, zipFile.getInputStream( entry ), file, transform )
+                // noinspection JavaStylePropertiesInvocation, GroovySetterCallCanBePropertyAccess
+                file.setLastModified( entry.time )
+                files << file
+            }
+        }
+        finally
+        {
+            zipFile.close()
+        }
+
+        extraction.verify( failIfNotFound )
+        files
+    }
+}
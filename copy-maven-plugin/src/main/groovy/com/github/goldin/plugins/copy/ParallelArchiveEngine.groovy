@@ -0,0 +1,64 @@
+package com.github.goldin.plugins.copy
+
+import org.gcontracts.annotations.Requires
+
+
+/**
+ * Zip {@link ArchiveEngine} compressing entries with {@link ZipPacker} and inflating them with {@link ZipUnpacker} on several threads.
+ */
+final class ParallelArchiveEngine implements ArchiveEngine
+{
+    private final int  threads
+    private final int  level
+    private final Long entriesTime
+
+
+    /**
+     * Creates new engine.
+     *
+     * @param threads     number of threads compressing or inflating entries
+     * @param level       compression level, from 0 (stored) to 9
+     * @param entriesTime time of entries packed, files last modified time is used if {@code null}
+     */
+    @Requires({ ( threads > 0 ) && ( level >= 0 ) && ( level <= 9 ) })
+    ParallelArchiveEngine ( int threads, int level, Long entriesTime = null )
+    {
+        this.threads     = threads
+        this.level       = level
+        this.entriesTime = entriesTime
+    }
+
+
+    @Override
+    String getName (){ ArchiveEngines.PARALLEL }
+
+
+    @Override
+    boolean supports ( File archive ){ ArchiveEngines.zip( archive ) }
+
+
+    @Override
+    boolean transforms (){ false }
+
+
+    @Override
+    File pack ( File archive, Map<String, File> entries, boolean update, EntryTransform transform )
+    {
+        assert ( transform == null ), "[$name] engine doesn't transform entries"
+        new ZipPacker( threads, level, entriesTime ).pack( archive, entries, update )
+    }
+
+
+    @Override
+    List<File> unpack ( File           archive,
+                        File           destinationDirectory,
+                        List<String>   includes,
+                        List<String>   excludes,
+                        boolean        preservePath,
+                        boolean        failIfNotFound,
+                        EntryTransform transform )
+    {
+        assert ( transform == null ), "[$name] engine doesn't transform entries"
+        new ZipUnpacker( threads ).unpack( archive, destinationDirectory, includes, excludes, preservePath, failIfNotFound )
+    }
+}
@@ -0,0 +1,140 @@
+package com.github.goldin.plugins.copy
+
+import org.gcontracts.annotations.Requires
+
+
+/**
+ * Append-only list of files keeping up to {@code threshold} files in memory and spilling the rest
+ * to a temporary file, one path per line. Files are read back lazily, in the order they were added.
+ *
+ * Iteration streams the spilled paths, {@link #get} reads them sequentially and is only meant for occasional access,
+ * like {@code files.first()}. {@link #close} deletes the temporary file.
+ */
+final class SpilledFileList extends AbstractList<File> implements Closeable
+{
+    private final int          threshold
+    private final List<File>   buffer  = []
+    private final List<Reader> readers = []
+    private       File         spill
+    private       Writer       writer
+    private       int          spilled = 0
+
+
+    /**
+     * Creates new list.
+     *
+     * @param threshold maximal number of files kept in memory
+     */
+    @Requires({ threshold > 0 })
+    SpilledFileList ( int threshold )
+    {
+        this.threshold = threshold
+    }
+
+
+    @Override
+    synchronized boolean add ( File file )
+    {
+        assert file && ( ! file.path.contains( '\n' )), "[$file] can't be added"
+        buffer << file
+        if ( buffer.size() >= threshold ) { flush() }
+        true
+    }
+
+
+    private void flush ()
+    {
+        if ( writer == null )
+        {
+            spill  = File.createTempFile( 'copy-maven-plugin-', '.files' )
+            writer = new BufferedWriter( new OutputStreamWriter( new FileOutputStream( spill ), 'UTF-8' ))
+            spill.deleteOnExit()
+        }
+
+        for ( file in buffer ) { writer.write( file.path ); writer.write( '\n' ) }
+        spilled += buffer.size()
+        buffer.clear()
+    }
+
+
+    @Override
+    synchronized int size (){ spilled + buffer.size() }
+
+
+    @Override
+    File get ( int index )
+    {
+        if (( index < 0 ) || ( index >= size())) { throw new IndexOutOfBoundsException( "Index [$index], size [${ size() }]" ) }
+
+        final Iterator<File> iterator = iterator()
+        for ( int j = 0; j < index; j++ ) { iterator.next() }
+        final File file = iterator.next()
+        (( SpilledIterator ) iterator ).close()
+        file
+    }
+
+
+    @Override
+    synchronized Iterator<File> iterator ()
+    {
+        writer?.flush()
+        final Reader reader = spilled ? new BufferedReader( new InputStreamReader( new FileInputStream( spill ), 'UTF-8' )) : null
+        if ( reader ) { readers << reader }
+        new SpilledIterator(( BufferedReader ) reader, spilled, new ArrayList<File>( buffer ))
+    }
+
+
+    @Override
+    synchronized void close ()
+    {
+        readers.each { it.close() }
+        writer?.close()
+        if ( spill ) { assert ( spill.delete() || ( ! spill.file )), "Failed to delete [$spill]" }
+        readers.clear()
+        buffer.clear()
+        spill   = null
+        writer  = null
+        spilled = 0
+    }
+
+
+    /**
+     * Iterates over spilled files read from the temporary file, followed by files kept in memory.
+     */
+    private static final class SpilledIterator implements Iterator<File>
+    {
+        private final BufferedReader reader
+        private final int            spilled
+        private final List<File>     buffered
+        private       int            index = 0
+
+        SpilledIterator ( BufferedReader reader, int spilled, List<File> buffered )
+        {
+            this.reader   = reader
+            this.spilled  = spilled
+            this.buffered = buffered
+        }
+
+        @Override
+        boolean hasNext ()
+        {
+            final boolean hasNext = ( index < ( spilled + buffered.size()))
+            if ( ! hasNext ) { close() }
+            hasNext
+        }
+
+        @Override
+        File next ()
+        {
+            if ( ! hasNext()) { throw new NoSuchElementException() }
+            final File file = ( index < spilled ) ? new File( reader.readLine()) : buffered[ index - spilled ]
+            index++
+            file
+        }
+
+        @Override
+        void remove (){ throw new UnsupportedOperationException() }
+
+        void close (){ reader?.close() }
+    }
+}
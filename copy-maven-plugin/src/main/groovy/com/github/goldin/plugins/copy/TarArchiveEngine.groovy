@@ -0,0 +1,66 @@
+package com.github.goldin.plugins.copy
+
+import org.gcontracts.annotations.Requires
+
+
+/**
+ * "tar.zst" and "tar.lz4" {@link ArchiveEngine}, delegating to {@link TarPacker}.
+ * Used for these archives regardless of {@code <archiveEngine>}.
+ */
+final class TarArchiveEngine implements ArchiveEngine
+{
+    private final int  threads
+    private final int  level
+    private final Long entriesTime
+
+
+    /**
+     * Creates new engine.
+     *
+     * @param threads     number of threads compressing the archive
+     * @param level       zstd compression level
+     * @param entriesTime time of entries packed, files last modified time is used if {@code null}
+     */
+    @Requires({ threads > 0 })
+    TarArchiveEngine ( int threads, int level, Long entriesTime = null )
+    {
+        this.threads     = threads
+        this.level       = level
+        this.entriesTime = entriesTime
+    }
+
+
+    @Override
+    String getName (){ 'tar' }
+
+
+    @Override
+    boolean supports ( File archive ){ TarPacker.supports( archive ) }
+
+
+    @Override
+    boolean transforms (){ false }
+
+
+    @Override
+    File pack ( File archive, Map<String, File> entries, boolean update, EntryTransform transform )
+    {
+        assert ( transform == null ), "[$name] engine doesn't transform entries"
+        assert ( ! update ), "<update> is not supported for [$archive.name] archives"
+        new TarPacker( threads, level, entriesTime ).pack( archive, entries )
+    }
+
+
+    @Override
+    List<File> unpack ( File           archive,
+                        File           destinationDirectory,
+                        List<String>   includes,
+                        List<String>   excludes,
+                        boolean        preservePath,
+                        boolean        failIfNotFound,
+                        EntryTransform transform )
+    {
+        assert ( transform == null ), "[$name] engine doesn't transform entries"
+        TarPacker.unpack( archive, destinationDirectory, includes, excludes, preservePath, failIfNotFound )
+    }
+}
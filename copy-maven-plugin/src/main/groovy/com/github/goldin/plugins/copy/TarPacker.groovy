@@ -0,0 +1,211 @@
+package com.github.goldin.plugins.copy
+
+import com.github.luben.zstd.ZstdInputStream
+import com.github.luben.zstd.ZstdOutputStream
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorInputStream
+import org.apache.commons.compress.compressors.lz4.FramedLZ4CompressorOutputStream
+import org.codehaus.plexus.util.SelectorUtils
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.nio.file.Files
+
+
+/**
+ * Creates and extracts tar archives compressed with zstd ("tar.zst", "tzst") or LZ4 ("tar.lz4").
+ *
+ * zstd compression runs on several threads, both formats decompress several times faster than deflate.
+ * Entries are written in a sorted order, with directory entries for all parent paths and POSIX headers for long names
+ * and large sizes, so packing the same files with the same entries time gives the same archive.
+ */
+final class TarPacker
+{
+    static final List<String> EXTENSIONS  = [ '.tar.zst', '.tzst', '.tar.lz4' ].asImmutable()
+
+    private static final int  BUFFER_SIZE = 1024 * 1024
+
+    private final int  threads
+    private final int  level
+    private final Long entriesTime
+
+
+    /**
+     * Creates new tar packer.
+     *
+     * @param threads     number of threads compressing the archive, zstd only
+     * @param level       zstd compression level, from 1 to 22
+     * @param entriesTime time to set for all entries, files last modified time is used if {@code null}
+     */
+    @Requires({ ( threads > 0 ) && ( level > 0 ) && ( level <= 22 ) })
+    TarPacker ( int threads, int level, Long entriesTime = null )
+    {
+        this.threads     = threads
+        this.level       = level
+        this.entriesTime = entriesTime
+    }
+
+
+    /**
+     * Determines if archive specified is handled by this packer.
+     */
+    @Requires({ archive })
+    static boolean supports ( File archive )
+    {
+        EXTENSIONS.any { archive.name.toLowerCase().endsWith( it ) }
+    }
+
+
+    private static boolean lz4 ( File archive ) { archive.name.toLowerCase().endsWith( '.lz4' ) }
+
+
+    /**
+     * Packs the files specified, creating directory entries for all their parent paths.
+     *
+     * @param archive archive to create, overwritten if exists
+     * @param files   entry names ("/"-separated, relative) => files to pack
+     * @return archive created
+     */
+    @Requires({ supports( archive ) && files && files.values().every { it.file } })
+    @Ensures ({ result.file })
+    File pack ( File archive, Map<String, File> files )
+    {
+        /**
+         * Entry name => file packed, directory entries ("/"-terminated) are mapped to the first file packed in them
+         */
+        final Map<String, File> entries = new TreeMap<String, File>()
+
+        files.each {
+            String name, File file ->
+            assert name && ( ! name.startsWith( '/' )) && ( ! name.endsWith( '/' )), "Invalid entry name [$name]"
+            entries[ name ] = file
+            for ( int j = name.indexOf( '/' ); j > 0; j = name.indexOf( '/', j + 1 ))
+            {
+                final directory = name.substring( 0, j + 1 )
+                if ( ! entries.containsKey( directory )) { entries[ directory ] = file }
+            }
+        }
+
+        final parent = archive.canonicalFile.parentFile
+        assert ( parent.directory || parent.mkdirs()), "Failed to create [$parent]"
+
+        final OutputStream     os     = new BufferedOutputStream( new FileOutputStream( archive ), BUFFER_SIZE )
+        TarArchiveOutputStream tar    = null
+        boolean                packed = false
+
+        try
+        {
+            tar               = new TarArchiveOutputStream( compressor( archive, os ))
+            tar.longFileMode  = TarArchiveOutputStream.LONGFILE_POSIX
+            tar.bigNumberMode = TarArchiveOutputStream.BIGNUMBER_POSIX
+
+            entries.each {
+                String name, File file ->
+                final boolean directory = name.endsWith( '/' )
+                final         entry     = new TarArchiveEntry( name )
+
+                entry.modTime = new Date(( entriesTime != null ) ? entriesTime : file.lastModified())
+                entry.mode    = directory ? 040755 : ( file.canExecute() ? 0100755 : 0100644 )
+                entry.size    = directory ? 0 : file.length()
+
+                tar.putArchiveEntry( entry )
+                if ( ! directory ) { Files.copy( file.toPath(), tar ) }
+                tar.closeArchiveEntry()
+            }
+
+            tar.finish()
+            packed = true
+        }
+        finally
+        {
+            ( tar ?: os ).close() // Compressor may fail to be created
+            if ( ! packed ) { archive.delete() }
+        }
+
+        archive
+    }
+
+
+    private OutputStream compressor ( File archive, OutputStream os )
+    {
+        if ( lz4( archive )) { return new FramedLZ4CompressorOutputStream( os ) }
+
+        final zstd = new ZstdOutputStream( os, level )
+        if ( threads > 1 ) { zstd.setWorkers( threads ) }
+        zstd
+    }
+
+
+    /**
+     * Extracts the archive specified.
+     *
+     * @param archive              archive to extract
+     * @param destinationDirectory directory to extract the archive to
+     * @param includes             patterns of entries to extract, all entries are extracted if empty
+     * @param excludes             patterns of entries not to extract, can be empty
+     * @param preservePath         whether entries path should be preserved, otherwise entries are extracted to the destination directory itself
+     * @param failIfNotFound       whether execution should fail if any of the include patterns doesn't match an entry
+     * @return files extracted, in the order of archive entries; when several entries are extracted to the same file
+     *         (like "a/x.txt" and "b/x.txt" without preserving path) the file is returned once and has the content of the last one
+     */
+    @Requires({ supports( archive ) && archive.file && destinationDirectory && ( includes != null ) && ( excludes != null ) })
+    @Ensures ({ result != null })
+    static List<File> unpack ( File         archive,
+                               File         destinationDirectory,
+                               List<String> includes       = [],
+                               List<String> excludes       = [],
+                               boolean      preservePath   = true,
+                               boolean      failIfNotFound = true )
+    {
+        final is       = new BufferedInputStream( new FileInputStream( archive ), BUFFER_SIZE )
+        final tar      = new TarArchiveInputStream( lz4( archive ) ? new FramedLZ4CompressorInputStream( is ) : new ZstdInputStream( is ))
+        final rootPath = destinationDirectory.canonicalPath
+        final matched  = new HashSet<String>()
+        final files    = new LinkedHashSet<File>()
+
+        try
+        {
+            for ( TarArchiveEntry entry = tar.nextTarEntry; entry != null; entry = tar.nextTarEntry )
+            {
+                final String       name     = entry.name
+                final List<String> patterns = includes.findAll { SelectorUtils.matchPath( it, name ) }
+                if (( includes && ( ! patterns )) || excludes.any { SelectorUtils.matchPath( it, name ) }) { continue }
+                matched.addAll( patterns )
+                if ( entry.directory && ( ! preservePath )) { continue }
+                if ( ! ( entry.directory || entry.file )) { continue } // Links and special files are not extracted
+
+                final file = new File( destinationDirectory, preservePath ? name : name.substring( name.lastIndexOf( '/' ) + 1 ))
+                assert ( file.canonicalPath == rootPath ) || file.canonicalPath.startsWith( rootPath + File.separator ), \
+                       "[$archive] - entry [$name] is outside of [$rootPath]"
+
+                if ( entry.directory )
+                {
+                    assert ( file.directory || file.mkdirs()), "Failed to create [$file]"
+                    continue
+                }
+
+                assert ( file.parentFile.directory || file.parentFile.mkdirs()), "Failed to create [$file.parentFile]"
+                file.withOutputStream { OutputStream os -> os << tar }
+
+                // noinspection JavaStylePropertiesInvocation, GroovySetterCallCanBePropertyAccess
+                file.setLastModified( entry.modTime.time )
+                if (( entry.mode & 0100 ) != 0 ) { file.setExecutable( true, false ) }
+                files.remove( file )
+                files << file
+            }
+        }
+        finally
+        {
+            tar.close()
+        }
+
+        if ( failIfNotFound )
+        {
+            final notMatched = includes - matched
+            assert ( ! notMatched ), "[$archive] - no entries matched ${ notMatched }"
+        }
+
+        new ArrayList<File>( files )
+    }
+}
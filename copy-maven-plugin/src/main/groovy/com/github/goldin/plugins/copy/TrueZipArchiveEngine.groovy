@@ -0,0 +1,178 @@
+package com.github.goldin.plugins.copy
+
+import de.schlichtherle.truezip.file.TArchiveDetector
+import de.schlichtherle.truezip.file.TFile
+import de.schlichtherle.truezip.file.TFileInputStream
+import de.schlichtherle.truezip.file.TFileOutputStream
+import de.schlichtherle.truezip.fs.archive.zip.JarDriver
+import de.schlichtherle.truezip.socket.sl.IOPoolLocator
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+
+
+/**
+ * Zip {@link ArchiveEngine} based on TrueZip, the engine used by {@code <useTrueZipForPack>} and {@code <useTrueZipForUnpack>}.
+ * Archive is accessed as a virtual file system which is unmounted when the operation completes,
+ * entries kept when archive is updated in place are copied raw, without being inflated and compressed again.
+ */
+final class TrueZipArchiveEngine implements ArchiveEngine
+{
+    private final int  level
+    private final Long entriesTime
+
+
+    /**
+     * Creates new engine.
+     *
+     * @param level       compression level, from 0 (stored) to 9
+     * @param entriesTime time of entries packed, files last modified time is used if {@code null}
+     */
+    @Requires({ ( level >= 0 ) && ( level <= 9 ) })
+    TrueZipArchiveEngine ( int level, Long entriesTime = null )
+    {
+        this.level       = level
+        this.entriesTime = entriesTime
+    }
+
+
+    @Override
+    String getName (){ ArchiveEngines.TRUEZIP }
+
+
+    @Override
+    boolean supports ( File archive ){ ArchiveEngines.zip( archive ) }
+
+
+    @Override
+    boolean transforms (){ true }
+
+
+    /**
+     * Creates archive root detecting only the archive specified, entries are not considered archives themselves.
+     */
+    private TFile root ( File archive )
+    {
+        final extension        = archive.name.substring( archive.name.lastIndexOf( '.' ) + 1 )
+        final compressionLevel = level
+        final driver           = new JarDriver( IOPoolLocator.SINGLETON ) {
+            @Override
+            int getLevel (){ compressionLevel }
+        }
+
+        new TFile( archive, new TArchiveDetector( extension, driver ))
+    }
+
+
+    @Override
+    @Requires({ archive && entries && entries.values().every { it.file } })
+    @Ensures ({ result.file })
+    File pack ( File archive, Map<String, File> entries, boolean update, EntryTransform transform )
+    {
+        if ( ! ( update && archive.file )) { ArchiveEngines.output( archive, false ) }
+
+        final TFile root = root( archive )
+
+        try
+        {
+            entries.each {
+                String name, File file ->
+                final entry = new TFile( root, name, TArchiveDetector.NULL )
+
+                if ( transform?.applies( name ))
+                {
+                    final os = new TFileOutputStream( entry )
+                    try     { ArchiveEngines.packEntry( name, file, os, transform ) }
+                    finally { os.close() }
+                    final boolean timeSet = entry.setLastModified( file.lastModified())
+                    assert timeSet, "Failed to update time of [$entry]"
+                }
+                else
+                {
+                    TFile.cp_p( file, entry )
+                }
+
+                if ( entriesTime != null )
+                {
+                    final boolean timeSet = entry.setLastModified( entriesTime )
+                    assert timeSet, "Failed to update time of [$entry]"
+                }
+            }
+        }
+        finally
+        {
+            TFile.umount( root )
+        }
+
+        archive
+    }
+
+
+    @Override
+    @Requires({ archive.file && destinationDirectory && ( includes != null ) && ( excludes != null ) })
+    @Ensures ({ result != null })
+    List<File> unpack ( File           archive,
+                        File           destinationDirectory,
+                        List<String>   includes,
+                        List<String>   excludes,
+                        boolean        preservePath,
+                        boolean        failIfNotFound,
+                        EntryTransform transform )
+    {
+        final extraction = new ArchiveEngines.Extraction( archive, destinationDirectory, includes, excludes, preservePath )
+        final root       = root( archive )
+        final files      = new ArrayList<File>()
+
+        try
+        {
+            extract( root, '', extraction, files, transform )
+        }
+        finally
+        {
+            TFile.umount( root )
+        }
+
+        extraction.verify( failIfNotFound )
+        files
+    }
+
+
+    /**
+     * Extracts entries of the archive directory specified, recursively.
+     *
+     * @param directory  archive directory to extract
+     * @param path       directory path in the archive, empty for the archive root
+     * @param extraction current extraction
+     * @param files      files extracted
+     * @param transform  transform to apply to entries extracted, may be {@code null}
+     */
+    private void extract ( TFile directory, String path, ArchiveEngines.Extraction extraction, List<File> files, EntryTransform transform )
+    {
+        for ( name in ( directory.list() ?: new String[ 0 ] ).sort())
+        {
+            final TFile entry = new TFile( directory, name, TArchiveDetector.NULL )
+
+            if ( entry.directory )
+            {
+                extraction.file( path + name + '/' )
+                extract( entry, path + name + '/', extraction, files, transform )
+                continue
+            }
+
+            final File file = extraction.file( path + name )
+            if ( file == null ) { continue }
+
+            if ( transform?.applies( path + name ))
+            {
+                ArchiveEngines.extractEntry( path + name, new TFileInputStream( entry ), file, transform )
+                // noinspection JavaStylePropertiesInvocation, GroovySetterCallCanBePropertyAccess
+                file.setLastModified( entry.lastModified())
+            }
+            else
+            {
+                TFile.cp_p( entry, file )
+            }
+
+            files << file
+        }
+    }
+}
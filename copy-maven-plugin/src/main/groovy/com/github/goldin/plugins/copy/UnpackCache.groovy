@@ -0,0 +1,193 @@
+package com.github.goldin.plugins.copy
+
+import static com.github.goldin.plugins.common.GMojoUtils.*
+import com.github.goldin.plugins.common.ChecksumCache
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+
+
+/**
+ * Content-addressed cache of archives unpacked.
+ *
+ * Completion markers are kept in the destination directory, keyed by archive content and settings shaping the output,
+ * listing the files unpacked, so that unpacking is skipped when the same archive was already unpacked with the same settings
+ * and none of the files unpacked has changed since then.
+ *
+ * Shared trees are kept in a cache directory common to all builds, keyed by archive content and entries extracted,
+ * so that an archive extracted by several modules is inflated once and hard-linked to destination directories.
+ * Files hard-linked share their content with the cache and should not be modified in place.
+ */
+final class UnpackCache
+{
+    static final String MARKERS_DIRECTORY = '.copy-maven-plugin-unpacked'
+
+    private final File   archive
+    private final String treeKey
+    private final String markerKey
+
+
+    /**
+     * Creates new unpack cache for the archive specified.
+     *
+     * @param archive           archive to unpack
+     * @param zipEntries        Zip entries to unpack, can be empty
+     * @param zipEntriesExclude Zip entries not to unpack, can be empty
+     * @param preservePath      whether Zip entries path is preserved
+     * @param fingerprint       settings shaping the output of files unpacked, like filtering and replacements
+     */
+    @Requires({ archive.file && ( zipEntries != null ) && ( zipEntriesExclude != null ) && ( fingerprint != null ) })
+    UnpackCache ( File archive, List<String> zipEntries, List<String> zipEntriesExclude, boolean preservePath, String fingerprint )
+    {
+        this.archive   = archive
+        this.treeKey   = key( "${ ChecksumCache.checksum( archive ) }|${ archive.length() }|$zipEntries|$zipEntriesExclude|$preservePath" )
+        this.markerKey = key( "$treeKey|$fingerprint" )
+    }
+
+
+    private static String key ( String s )
+    {
+        UUID.nameUUIDFromBytes( s.getBytes( 'UTF-8' )).toString()
+    }
+
+
+    /**
+     * Retrieves files unpacked to the destination directory if it has an up-to-date marker.
+     *
+     * @param destinationDirectory directory the archive is unpacked to
+     * @return files unpacked or {@code null} if archive should be unpacked again: it wasn't unpacked before with the same
+     *         settings or any of the files unpacked was deleted or modified since then
+     */
+    @Requires({ destinationDirectory })
+    List<File> unpacked ( File destinationDirectory )
+    {
+        final marker = markerFile( destinationDirectory )
+        if ( ! marker.file ) { return null }
+
+        final List<File> files = []
+
+        for ( line in marker.readLines( 'UTF-8' ).findAll { it && ( ! it.startsWith( '#' )) })
+        {
+            final values = line.split( /\|/, 3 )
+            if ( values.size() != 3 ) { return null }
+
+            final file = new File( destinationDirectory, values[ 2 ] )
+            if (( ! file.file ) || ( file.length() != ( values[ 0 ] as long )) || ( file.lastModified() != ( values[ 1 ] as long ))) { return null }
+
+            files << file
+        }
+
+        files
+    }
+
+
+    /**
+     * Marks the archive as unpacked to the destination directory.
+     *
+     * @param destinationDirectory directory the archive was unpacked to
+     * @param files                files unpacked
+     */
+    @Requires({ destinationDirectory.directory && ( files != null ) })
+    void markUnpacked ( File destinationDirectory, List<File> files )
+    {
+        final marker   = markerFile( destinationDirectory )
+        final tempFile = new File( fileBean().mkdirs( marker.parentFile ), marker.name + '.tmp' )
+
+        tempFile.withWriter( 'UTF-8' ) {
+            Writer writer ->
+            writer.write( "# [$archive.canonicalPath]\n" )
+            for ( file in files.findAll { it.file })
+            {
+                writer.write( "${ file.length() }|${ file.lastModified() }|${ fileBean().relativePath( destinationDirectory, file ) }\n" )
+            }
+        }
+
+        fileBean().delete( marker )
+        assert tempFile.renameTo( marker ), "Failed to rename [$tempFile] to [$marker]"
+    }
+
+
+    /**
+     * Removes marker of the archive from the destination directory, if exists.
+     */
+    @Requires({ destinationDirectory })
+    void unmark ( File destinationDirectory )
+    {
+        final marker = markerFile( destinationDirectory )
+        if ( marker.file ) { fileBean().delete( marker ) }
+    }
+
+
+    private File markerFile ( File destinationDirectory )
+    {
+        new File( destinationDirectory, "$MARKERS_DIRECTORY/${ markerKey }.marker" )
+    }
+
+
+    /**
+     * Retrieves shared tree of the archive entries, extracting them if the tree doesn't exist yet.
+     * Tree is extracted to a temporary directory renamed when extraction completes, so trees found are always complete.
+     *
+     * @param cacheDirectory directory to keep shared trees in
+     * @param extract        closure extracting the archive to the directory passed as its argument
+     * @return directory containing the archive entries extracted
+     */
+    @Requires({ cacheDirectory && extract })
+    @Ensures ({ result.directory })
+    File sharedTree ( File cacheDirectory, Closure extract )
+    {
+        final tree = new File( cacheDirectory, treeKey )
+        if ( tree.directory ) { return tree }
+
+        final tempTree = fileBean().mkdirs( new File( cacheDirectory, "${ treeKey }.${ UUID.randomUUID() }.tmp" ))
+
+        try
+        {
+            extract( tempTree )
+            if (( ! tempTree.renameTo( tree )) && ( ! tree.directory ))
+            {
+                throw new IOException( "Failed to rename [$tempTree] to [$tree]" )
+            }
+        }
+        finally
+        {
+            if ( tempTree.directory ) { fileBean().delete( tempTree ) } // Extraction failed or another build has renamed its tree first
+        }
+
+        tree
+    }
+
+
+    /**
+     * Hard-links files of the tree specified to the destination directory, copying them if they can't be linked.
+     *
+     * @param tree                 directory containing files to link
+     * @param destinationDirectory directory to link the files to, existing files are replaced
+     * @return files linked or copied to the destination directory
+     */
+    @Requires({ tree.directory && destinationDirectory })
+    @Ensures ({ result != null })
+    static List<File> link ( File tree, File destinationDirectory )
+    {
+        final List<File> files = scanFiles( tree, null, null, true, false )
+        files.collect { File f -> new File( destinationDirectory, fileBean().relativePath( tree, f )).parentFile }.toSet().each { fileBean().mkdirs( it ) }
+
+        files.collect {
+            File f ->
+            final destinationFile = new File( destinationDirectory, fileBean().relativePath( tree, f ))
+            Files.deleteIfExists( destinationFile.toPath())
+
+            try
+            {
+                Files.createLink( destinationFile.toPath(), f.toPath())
+            }
+            catch ( IOException ignored )
+            {   // Different file systems or links are not supported
+                Files.copy( f.toPath(), destinationFile.toPath(), StandardCopyOption.COPY_ATTRIBUTES )
+            }
+
+            destinationFile
+        }
+    }
+}
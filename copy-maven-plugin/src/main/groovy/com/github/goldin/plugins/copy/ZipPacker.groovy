@@ -0,0 +1,666 @@
+package com.github.goldin.plugins.copy
+
+import com.github.goldin.plugins.common.ChecksumCache
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.zip.CRC32
+import java.util.zip.Deflater
+import java.util.zip.ZipEntry
+
+
+/**
+ * Creates Zip archives compressing their entries on several threads.
+ *
+ * Entries larger than {@link #BLOCK_SIZE} are split into blocks deflated independently, the same way pigz does it:
+ * every block but the last one ends with a sync flush and is deflated with the end of the previous block as a dictionary,
+ * so that concatenated blocks form a single standard deflate stream.
+ *
+ * Entries are written in a sorted order, with ZIP64 extensions when sizes, offsets or number of entries require it.
+ * When an existing archive is updated its entries having the same size and CRC-32 as files packed, as well as
+ * entries not replaced by any file, are copied as raw compressed data without being inflated and deflated again.
+ * Archive created only depends on the files packed and the entries time specified, so packing the same files gives the same archive.
+ * Entries time specified is stored in UTC, so that archive doesn't depend on the time zone of the machine packing it either.
+ */
+final class ZipPacker
+{
+    static final int          BLOCK_SIZE           = 1024 * 1024
+    private static final int  DICTIONARY_SIZE      = 32 * 1024
+    private static final long ZIP64_LIMIT          = 0xFFFFFFFFL
+    private static final int  ZIP64_ENTRIES        = 0xFFFF
+    private static final long ZIP64_SIZE           = 0xF0000000L // Files larger than that get ZIP64 sizes in the local header, as compressed size may exceed the limit
+    private static final int  UTF8_FLAG            = 0x0800
+    private static final int  DATA_DESCRIPTOR_FLAG = 0x0008
+    private static final int  DIRECTORY_ATTR       = 0x10
+
+    private final int      threads
+    private final int      level
+    private final Long     entriesTime
+    private final TimeZone timeZone
+
+
+    /**
+     * Archive entry, a file or a directory.
+     */
+    private static final class Entry
+    {
+        String  name
+        File    file             // null for directories and entries of the archive updated that are not replaced
+        long    size
+        int     dosTime
+        boolean zip64
+        long    offset
+        long    compressedSize
+        long    crc
+        int     method
+        int     flags     = UTF8_FLAG
+        int     blocks    = 1
+        long    rawOffset = -1            // Offset of the entry data in the archive updated if entry is copied as-is
+        byte[]  extra     = new byte[ 0 ] // Extra records of the entry copied as-is, other than ZIP64
+    }
+
+
+    /**
+     * Block of entry data deflated.
+     */
+    private static final class Block
+    {
+        Entry  entry
+        int    index
+        byte[] data
+        long   crc
+        long   size
+    }
+
+
+    /**
+     * Creates new Zip packer.
+     *
+     * @param threads     number of threads compressing the entries
+     * @param level       compression level, from 0 (entries are stored) to 9
+     * @param entriesTime time to set for all entries, files last modified time is used if {@code null}
+     */
+    @Requires({ ( threads > 0 ) && ( level >= 0 ) && ( level <= 9 ) })
+    ZipPacker ( int threads, int level, Long entriesTime = null )
+    {
+        this.threads     = threads
+        this.level       = level
+        this.entriesTime = entriesTime
+        this.timeZone    = ( entriesTime != null ) ? TimeZone.getTimeZone( 'UTC' ) : TimeZone.default
+    }
+
+
+    /**
+     * Packs the files specified, creating directory entries for all their parent paths.
+     *
+     * @param archive archive to create
+     * @param files   entry names ("/"-separated, relative) => files to pack
+     * @param update  whether existing archive should be updated, it is overwritten otherwise
+     * @return archive created
+     */
+    @Requires({ archive && files && files.values().every { it.file } })
+    @Ensures ({ result.file })
+    File pack ( File archive, Map<String, File> files, boolean update = false )
+    {
+        final boolean          updating = ( update && archive.file )
+        final File             target   = updating ? new File( archive.path + '.tmp' ) : prepare( archive )
+        final ExecutorService  executor = Executors.newFixedThreadPool( threads )
+        final FileChannel      previous = updating ? new RandomAccessFile( archive, 'r' ).channel : null
+        final RandomAccessFile output   = new RandomAccessFile( target, 'rw' )
+        boolean                packed   = false
+
+        try
+        {
+            output.length = 0
+            final entries = entries( files, ( updating ? previousEntries( archive, previous, files, executor ) : [:] ))
+            write( output.channel, previous, entries, executor )
+            packed = true
+        }
+        finally
+        {
+            executor.shutdownNow()
+            executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS )
+            output.close()
+            previous?.close()
+            if ( ! packed ) { target.delete() }
+        }
+
+        if ( updating )
+        {
+            Files.move( target.toPath(), archive.toPath(), StandardCopyOption.REPLACE_EXISTING )
+            assert archive.file && ( ! target.exists()), "Failed to replace [$archive] with [$target]"
+        }
+
+        archive
+    }
+
+
+    private static File prepare ( File archive )
+    {
+        final directory = archive.canonicalFile.parentFile
+        assert ( directory.directory || directory.mkdirs()), "Failed to create [$directory]"
+        archive
+    }
+
+
+    /**
+     * Reads entries of the archive updated that can be copied as-is: entries having the same size and CRC-32
+     * as the files replacing them and entries not replaced by any file. Directory entries are not kept.
+     *
+     * @return entry names => entries to copy as-is
+     */
+    private Map<String, Entry> previousEntries ( File archive, FileChannel channel, Map<String, File> files, ExecutorService executor )
+    {
+        final Map<String, Entry>                     previous  = [:]
+        final Map<ZipUnpacker.Entry, Future<String>> checksums = [:]
+
+        for ( entry in ZipUnpacker.entries( archive ).findAll { ! it.name.endsWith( '/' ) })
+        {
+            final File file = files[ entry.name ]
+
+            if ( file == null )
+            {
+                previous[ entry.name ] = rawEntry( archive, channel, entry, null, entry.dosTime, entry.extra )
+            }
+            else if (( file.length() == entry.size ) && entry.supported())
+            {
+                checksums[ entry ] = executor.submit({ ChecksumCache.checksum( file, ChecksumCache.CRC32_ALGORITHM ) } as Callable<String> )
+            }
+        }
+
+        checksums.each {
+            ZipUnpacker.Entry entry, Future<String> checksum ->
+
+            String crc
+            try     { crc = checksum.get() }
+            catch ( ExecutionException e ) { throw e.cause }
+
+            if ( Long.parseLong( crc, 16 ) == entry.crc )
+            {
+                final File file = files[ entry.name ]
+                previous[ entry.name ] = rawEntry( archive, channel, entry, file, dosTime(( entriesTime != null ) ? entriesTime : file.lastModified(), timeZone ), new byte[ 0 ] )
+            }
+        }
+
+        previous
+    }
+
+
+    /**
+     * Creates entry copied as-is from the archive updated.
+     *
+     * @param time  MS-DOS date and time of the entry
+     * @param extra extra records of the entry, other than ZIP64
+     */
+    private static Entry rawEntry ( File archive, FileChannel channel, ZipUnpacker.Entry entry, File file, int time, byte[] extra )
+    {
+        new Entry( name           : entry.name,
+                   file           : file,
+                   size           : entry.size,
+                   dosTime        : time,
+                   zip64          : (( entry.size >= ZIP64_SIZE ) || ( entry.compressedSize >= ZIP64_SIZE )),
+                   compressedSize : entry.compressedSize,
+                   crc            : entry.crc,
+                   method         : entry.method,
+                   flags          : (( entry.flags & ~DATA_DESCRIPTOR_FLAG ) | UTF8_FLAG ),
+                   rawOffset      : ZipUnpacker.dataOffset( archive, channel, entry ),
+                   extra          : extra )
+    }
+
+
+    /**
+     * Creates sorted list of archive entries, including the parent directories of files specified and entries copied as-is.
+     *
+     * @param files    entry names => files to pack
+     * @param previous entry names => entries of the archive updated to copy as-is
+     */
+    private List<Entry> entries ( Map<String, File> files, Map<String, Entry> previous )
+    {
+        final Map<String, Entry> entries = new TreeMap<String, Entry>( previous )
+
+        files.each {
+            String name, File file ->
+            assert name && ( ! name.startsWith( '/' )) && ( ! name.endsWith( '/' )), "Invalid entry name [$name]"
+
+            if ( ! previous.containsKey( name ))
+            {
+                entries[ name ] = new Entry( name    : name,
+                                             file    : file,
+                                             size    : file.length(),
+                                             dosTime : dosTime(( entriesTime != null ) ? entriesTime : file.lastModified(), timeZone ),
+                                             zip64   : ( file.length() >= ZIP64_SIZE ),
+                                             method  : (( level > 0 ) ? ZipEntry.DEFLATED : ZipEntry.STORED ),
+                                             blocks  : Math.max( 1, (( file.length() + BLOCK_SIZE - 1 ) / BLOCK_SIZE ) as int ))
+            }
+        }
+
+        for ( entry in new ArrayList<Entry>( entries.values()))
+        {
+            for ( int j = entry.name.indexOf( '/' ); j > 0; j = entry.name.indexOf( '/', j + 1 ))
+            {
+                final directory = entry.name.substring( 0, j + 1 )
+                if ( ! entries.containsKey( directory ))
+                {
+                    entries[ directory ] = new Entry( name : directory, dosTime : entry.dosTime, method : ZipEntry.STORED )
+                }
+            }
+        }
+
+        new ArrayList<Entry>( entries.values())
+    }
+
+
+    /**
+     * Writes all entries to the channel, keeping up to {@code 2 * threads} blocks compressed in memory.
+     *
+     * @param channel  channel to write the archive to
+     * @param previous channel of the archive updated to copy raw entries from, {@code null} if archive is not updated
+     * @param entries  entries to write
+     * @param executor executor to compress entries with
+     */
+    private void write ( FileChannel channel, FileChannel previous, List<Entry> entries, ExecutorService executor )
+    {
+        final Iterator<Block>           blocks  = blocks( entries ).iterator()
+        final LinkedList<Future<Block>> pending = new LinkedList<Future<Block>>()
+        final Closure                   submit  = {
+            while ( blocks.hasNext() && ( pending.size() < ( threads * 2 )))
+            {
+                final Block block = blocks.next()
+                pending << executor.submit({ compress( block ) } as Callable<Block> )
+            }
+        }
+
+        final List<Entry> written = []
+        Entry             current = null
+
+        submit()
+
+        while ( pending )
+        {
+            Block block
+            try     { block = pending.removeFirst().get() }
+            catch ( ExecutionException e ) { throw e.cause }
+            submit()
+
+            if ( block.entry.rawOffset > -1 )
+            {
+                current        = block.entry
+                current.offset = channel.position()
+                writeFully( channel, localHeader( current ))
+                transfer( previous, current.rawOffset, current.compressedSize, channel )
+                written << current
+                continue
+            }
+
+            if ( block.index == 0 )
+            {
+                current        = block.entry
+                current.offset = channel.position()
+                current.crc    = block.crc
+                writeFully( channel, localHeader( current ))
+            }
+            else
+            {
+                current.crc = crc32Combine( current.crc, block.crc, block.size )
+            }
+
+            writeFully( channel, ByteBuffer.wrap( block.data ))
+            current.compressedSize += block.data.length
+
+            if ( block.index == ( current.blocks - 1 ))
+            {
+                assert ( current.zip64 || ( current.compressedSize < ZIP64_LIMIT )), \
+                       "[$current.file] - compressed size [$current.compressedSize] requires ZIP64 sizes"
+                final long end = channel.position()
+                channel.position( current.offset )
+                writeFully( channel, localHeader( current ))
+                channel.position( end )
+                written << current
+            }
+        }
+
+        assert written.size() == entries.size(), "[${ entries.size() }] entries should be written but [${ written.size() }] were"
+        writeCentralDirectory( channel, entries )
+    }
+
+
+    /**
+     * Splits file entries into blocks to compress.
+     */
+    private static List<Block> blocks ( List<Entry> entries )
+    {
+        entries.collect {
+            Entry entry -> ( 0 ..< entry.blocks ).collect { int index -> new Block( entry: entry, index: index ) }
+        }.flatten() as List<Block>
+    }
+
+
+    /**
+     * Reads and compresses the block specified.
+     */
+    private Block compress ( Block block )
+    {
+        final Entry entry = block.entry
+
+        if (( entry.rawOffset > -1 ) || ( ! entry.file ))
+        {
+            block.data = new byte[ 0 ]
+            return block
+        }
+
+        final long    start      = block.index * ( BLOCK_SIZE as long )
+        final int     length     = Math.min( BLOCK_SIZE as long, entry.size - start ) as int
+        final int     dictionary = Math.min( DICTIONARY_SIZE as long, start ) as int
+        final byte[]  data       = read( entry.file, start - dictionary, dictionary + length )
+        final boolean last       = ( block.index == ( entry.blocks - 1 ))
+        final CRC32   crc        = new CRC32()
+
+        crc.update( data, dictionary, length )
+        block.crc  = crc.value
+        block.size = length
+
+        if ( entry.method == ZipEntry.STORED )
+        {
+            block.data = ( dictionary > 0 ) ? Arrays.copyOfRange( data, dictionary, data.length ) : data
+            return block
+        }
+
+        final deflater = new Deflater( level, true )
+        final output   = new ByteArrayOutputStream( length + ( length >> 3 ) + 64 )
+        final buffer   = new byte[ 64 * 1024 ]
+
+        try
+        {
+            if ( dictionary > 0 ) { deflater.setDictionary( data, 0, dictionary ) }
+            deflater.setInput( data, dictionary, length )
+
+            if ( last )
+            {
+                deflater.finish()
+                while ( ! deflater.finished()) { output.write( buffer, 0, deflater.deflate( buffer )) }
+            }
+            else
+            {
+                int n = buffer.length
+                while ( n == buffer.length )
+                {
+                    n = deflater.deflate( buffer, 0, buffer.length, Deflater.SYNC_FLUSH )
+                    output.write( buffer, 0, n )
+                }
+            }
+        }
+        finally
+        {
+            deflater.end()
+        }
+
+        block.data = output.toByteArray()
+        block
+    }
+
+
+    private static byte[] read ( File file, long position, int length )
+    {
+        final bytes   = new byte[ length ]
+        final channel = new RandomAccessFile( file, 'r' ).channel
+
+        try
+        {
+            final buffer = ByteBuffer.wrap( bytes )
+            while ( buffer.hasRemaining())
+            {
+                final n = channel.read( buffer, position + buffer.position())
+                assert ( n > -1 ), "[$file] - unexpected end of file at position [${ position + buffer.position() }]"
+            }
+        }
+        finally
+        {
+            channel.close()
+        }
+
+        bytes
+    }
+
+
+    private static void transfer ( FileChannel from, long position, long count, FileChannel to )
+    {
+        long transferred = 0
+
+        while ( transferred < count )
+        {
+            final long n = from.transferTo( position + transferred, count - transferred, to )
+            assert ( n > 0 ), "No bytes transferred at position [${ position + transferred }]"
+            transferred += n
+        }
+    }
+
+
+    private static void writeFully ( FileChannel channel, ByteBuffer buffer )
+    {
+        while ( buffer.hasRemaining()) { channel.write( buffer ) }
+    }
+
+
+    private static ByteBuffer buffer ( int size )
+    {
+        ByteBuffer.allocate( size ).order( ByteOrder.LITTLE_ENDIAN )
+    }
+
+
+    /**
+     * Local file header, with ZIP64 extra field for large files followed by extra records kept.
+     */
+    private static ByteBuffer localHeader ( Entry entry )
+    {
+        final byte[] name   = entry.name.getBytes( 'UTF-8' )
+        final int    extra  = ( entry.zip64 ? 20 : 0 ) + entry.extra.length
+        final        buffer = buffer( 30 + name.length + extra )
+
+        buffer.putInt( 0x04034b50 )
+        buffer.putShort(( entry.zip64 ? 45 : 20 ) as short )
+        buffer.putShort( entry.flags as short )
+        buffer.putShort( entry.method as short )
+        buffer.putInt( entry.dosTime )
+        buffer.putInt( entry.crc as int )
+        buffer.putInt(( entry.zip64 ? ZIP64_LIMIT : entry.compressedSize ) as int )
+        buffer.putInt(( entry.zip64 ? ZIP64_LIMIT : entry.size ) as int )
+        buffer.putShort( name.length as short )
+        buffer.putShort( extra as short )
+        buffer.put( name )
+
+        if ( entry.zip64 )
+        {
+            buffer.putShort( 1 as short )
+            buffer.putShort( 16 as short )
+            buffer.putLong( entry.size )
+            buffer.putLong( entry.compressedSize )
+        }
+
+        buffer.put( entry.extra )
+        buffer.flip()
+        buffer
+    }
+
+
+    /**
+     * Central directory headers followed by the end of central directory record, preceded by ZIP64 ones if needed.
+     */
+    private static void writeCentralDirectory ( FileChannel channel, List<Entry> entries )
+    {
+        final long start = channel.position()
+
+        for ( entry in entries )
+        {
+            final byte[]     name    = entry.name.getBytes( 'UTF-8' )
+            final List<Long> zip64   = []
+            final boolean    bigSize = ( entry.size >= ZIP64_LIMIT ) || ( entry.compressedSize >= ZIP64_LIMIT )
+
+            if ( bigSize                        ) { zip64 << entry.size << entry.compressedSize }
+            if ( entry.offset >= ZIP64_LIMIT    ) { zip64 << entry.offset }
+
+            final int extra  = ( zip64 ? 4 + ( 8 * zip64.size()) : 0 ) + entry.extra.length
+            final     buffer = buffer( 46 + name.length + extra )
+            final int version = ( zip64 || entry.zip64 ) ? 45 : 20
+
+            buffer.putInt( 0x02014b50 )
+            buffer.putShort( version as short )
+            buffer.putShort( version as short )
+            buffer.putShort( entry.flags as short )
+            buffer.putShort( entry.method as short )
+            buffer.putInt( entry.dosTime )
+            buffer.putInt( entry.crc as int )
+            buffer.putInt(( bigSize ? ZIP64_LIMIT : entry.compressedSize ) as int )
+            buffer.putInt(( bigSize ? ZIP64_LIMIT : entry.size ) as int )
+            buffer.putShort( name.length as short )
+            buffer.putShort( extra as short )
+            buffer.putShort( 0 as short )  // Comment length
+            buffer.putShort( 0 as short )  // Disk number
+            buffer.putShort( 0 as short )  // Internal attributes
+            buffer.putInt(( entry.name.endsWith( '/' ) ? DIRECTORY_ATTR : 0 ))
+            buffer.putInt((( entry.offset >= ZIP64_LIMIT ) ? ZIP64_LIMIT : entry.offset ) as int )
+            buffer.put( name )
+
+            if ( zip64 )
+            {
+                buffer.putShort( 1 as short )
+                buffer.putShort(( 8 * zip64.size()) as short )
+                for ( long value in zip64 ) { buffer.putLong( value ) }
+            }
+
+            buffer.put( entry.extra )
+            buffer.flip()
+            writeFully( channel, buffer )
+        }
+
+        final long end  = channel.position()
+        final long size = end - start
+
+        if (( entries.size() >= ZIP64_ENTRIES ) || ( start >= ZIP64_LIMIT ) || ( size >= ZIP64_LIMIT ))
+        {
+            final buffer = buffer( 56 + 20 )
+
+            buffer.putInt( 0x06064b50 )
+            buffer.putLong( 44 )
+            buffer.putShort( 45 as short )
+            buffer.putShort( 45 as short )
+            buffer.putInt( 0 )
+            buffer.putInt( 0 )
+            buffer.putLong( entries.size())
+            buffer.putLong( entries.size())
+            buffer.putLong( size )
+            buffer.putLong( start )
+
+            buffer.putInt( 0x07064b50 )
+            buffer.putInt( 0 )
+            buffer.putLong( end )
+            buffer.putInt( 1 )
+
+            buffer.flip()
+            writeFully( channel, buffer )
+        }
+
+        final buffer = buffer( 22 )
+
+        buffer.putInt( 0x06054b50 )
+        buffer.putShort( 0 as short )
+        buffer.putShort( 0 as short )
+        buffer.putShort( Math.min( entries.size(), ZIP64_ENTRIES ) as short )
+        buffer.putShort( Math.min( entries.size(), ZIP64_ENTRIES ) as short )
+        buffer.putInt( Math.min( size,  ZIP64_LIMIT ) as int )
+        buffer.putInt( Math.min( start, ZIP64_LIMIT ) as int )
+        buffer.putShort( 0 as short )
+
+        buffer.flip()
+        writeFully( channel, buffer )
+    }
+
+
+    /**
+     * Converts time specified to MS-DOS date and time, in the time zone specified.
+     */
+    private static int dosTime ( long time, TimeZone timeZone )
+    {
+        final calendar = Calendar.getInstance( timeZone )
+        calendar.timeInMillis = time
+
+        final int year = calendar.get( Calendar.YEAR )
+        if ( year < 1980 ) { return ( 1 << 21 ) | ( 1 << 16 ) }
+
+        ((( year - 1980 ) << 25 ) | (( calendar.get( Calendar.MONTH ) + 1 ) << 21 ) | ( calendar.get( Calendar.DAY_OF_MONTH ) << 16 ) |
+         ( calendar.get( Calendar.HOUR_OF_DAY ) << 11 ) | ( calendar.get( Calendar.MINUTE ) << 5 ) | ( calendar.get( Calendar.SECOND ) >> 1 ))
+    }
+
+
+    /**
+     * Combines CRC-32 of two consecutive blocks of data, same as zlib "crc32_combine()".
+     *
+     * @param crc1    CRC-32 of the first block
+     * @param crc2    CRC-32 of the second block
+     * @param length2 length of the second block
+     * @return CRC-32 of both blocks
+     */
+    static long crc32Combine ( long crc1, long crc2, long length2 )
+    {
+        if ( length2 < 1 ) { return crc1 }
+
+        final long[] even = new long[ 32 ]
+        final long[] odd  = new long[ 32 ]
+
+        odd[ 0 ] = 0xEDB88320L // CRC-32 polynomial
+        long row = 1
+        for ( int j = 1; j < 32; j++ ) { odd[ j ] = row; row <<= 1 }
+
+        gf2MatrixSquare( even, odd  ) // Operator for two zero bits
+        gf2MatrixSquare( odd,  even ) // Operator for four zero bits
+
+        long crc = crc1
+        long n   = length2
+
+        while ( n != 0 )
+        {
+            gf2MatrixSquare( even, odd )
+            if (( n & 1 ) != 0 ) { crc = gf2MatrixTimes( even, crc ) }
+            n >>= 1
+            if ( n == 0 ) { break }
+
+            gf2MatrixSquare( odd, even )
+            if (( n & 1 ) != 0 ) { crc = gf2MatrixTimes( odd, crc ) }
+            n >>= 1
+        }
+
+        ( crc ^ crc2 ) & 0xFFFFFFFFL
+    }
+
+
+    private static long gf2MatrixTimes ( long[] matrix, long vector )
+    {
+        long sum = 0
+        int  j   = 0
+        long v   = vector
+
+        while ( v != 0 )
+        {
+            if (( v & 1 ) != 0 ) { sum ^= matrix[ j ] }
+            v >>= 1
+            j++
+        }
+
+        sum
+    }
+
+
+    private static void gf2MatrixSquare ( long[] square, long[] matrix )
+    {
+        for ( int j = 0; j < 32; j++ ) { square[ j ] = gf2MatrixTimes( matrix, matrix[ j ] ) }
+    }
+}
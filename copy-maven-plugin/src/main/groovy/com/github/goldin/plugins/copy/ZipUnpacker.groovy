@@ -0,0 +1,422 @@
+package com.github.goldin.plugins.copy
+
+import static com.github.goldin.plugins.common.GMojoUtils.*
+import org.codehaus.plexus.util.SelectorUtils
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.util.zip.CRC32
+import java.util.zip.Inflater
+import java.util.zip.ZipEntry
+
+
+/**
+ * Extracts Zip archives inflating their entries on several threads.
+ *
+ * Archives up to {@link #MAP_CHUNK} bytes are memory-mapped once, larger archives are read with positional reads
+ * so that no mapping is created per entry. Directories are created upfront and entries are inflated concurrently,
+ * each thread writing its own files. Files extracted are returned so that callers don't need to scan the destination directory.
+ */
+final class ZipUnpacker
+{
+    private static final int  BUFFER_SIZE      = 64 * 1024
+    private static final long MAP_CHUNK        = 256 * 1024 * 1024
+    private static final int  EOCD_SIZE        = 22
+    private static final int  MAX_COMMENT_SIZE = 0xFFFF
+    private static final long ZIP64_LIMIT      = 0xFFFFFFFFL
+    private static final int  UTF8_FLAG        = 0x0800 // General purpose flag bit 11: name is encoded in UTF-8, CP437 otherwise
+
+    private final int threads
+
+
+    /**
+     * Archive entry, as read from the central directory.
+     */
+    static final class Entry
+    {
+        String name
+        int    method
+        int    flags
+        long   crc
+        long   compressedSize
+        long   size
+        long   offset  // Local header offset
+        long   time
+        int    dosTime // MS-DOS date and time, as stored in the central directory
+        byte[] extra   // Extra field of the central directory, without the ZIP64 record
+
+        /**
+         * Determines if entry data can be read or copied: it's not encrypted and compressed with a supported method.
+         */
+        boolean supported (){ (( flags & 1 ) == 0 ) && ( method in [ ZipEntry.STORED, ZipEntry.DEFLATED ] ) }
+    }
+
+
+    /**
+     * Creates new Zip unpacker.
+     *
+     * @param threads number of threads inflating the entries
+     */
+    @Requires({ threads > 0 })
+    ZipUnpacker ( int threads )
+    {
+        this.threads = threads
+    }
+
+
+    /**
+     * Extracts the archive specified.
+     *
+     * @param archive              archive to extract
+     * @param destinationDirectory directory to extract the archive to
+     * @param includes             patterns of entries to extract, all entries are extracted if empty
+     * @param excludes             patterns of entries not to extract, can be empty
+     * @param preservePath         whether entries path should be preserved, otherwise entries are extracted to the destination directory itself
+     * @param failIfNotFound       whether execution should fail if any of the include patterns doesn't match an entry
+     * @return files extracted, in the order of archive entries; when several entries are extracted to the same file
+     *         (like "a/x.txt" and "b/x.txt" without preserving path) the last one is extracted, as a sequential extraction would leave it
+     */
+    @Requires({ archive.file && destinationDirectory && ( includes != null ) && ( excludes != null ) })
+    @Ensures ({ result != null })
+    List<File> unpack ( File         archive,
+                        File         destinationDirectory,
+                        List<String> includes       = [],
+                        List<String> excludes       = [],
+                        boolean      preservePath   = true,
+                        boolean      failIfNotFound = true )
+    {
+        final channel = new RandomAccessFile( archive, 'r' ).channel
+
+        try
+        {
+            final Region           region   = new Region( channel )
+            final List<Entry>      entries  = centralDirectory( archive, region )
+            final Set<String>      matched  = new HashSet<String>()
+            final Map<File, Entry> files    = new LinkedHashMap<File, Entry>()
+            final Set<File>        dirs     = new TreeSet<File>()
+            final String           rootPath = destinationDirectory.canonicalPath
+
+            for ( entry in entries )
+            {
+                final List<String> patterns = includes.findAll { SelectorUtils.matchPath( it, entry.name ) }
+                if (( includes && ( ! patterns )) || excludes.any { SelectorUtils.matchPath( it, entry.name ) }) { continue }
+                matched.addAll( patterns )
+
+                final boolean directory = entry.name.endsWith( '/' )
+                if ( directory && ( ! preservePath )) { continue }
+
+                final String path = preservePath ? entry.name : entry.name.substring( entry.name.lastIndexOf( '/' ) + 1 )
+                final File   file = new File( destinationDirectory, path )
+                assert ( file.canonicalPath == rootPath ) || file.canonicalPath.startsWith( rootPath + File.separator ), \
+                       "[$archive] - entry [$entry.name] is outside of [$rootPath]"
+
+                if ( directory ) { dirs << file; continue }
+
+                /**
+                 * Entries extracted to the same file are not inflated concurrently, only the last one is kept
+                 */
+                dirs << file.parentFile
+                files.remove( file )
+                files[ file ] = entry
+            }
+
+            if ( failIfNotFound )
+            {
+                final notMatched = includes - matched
+                assert ( ! notMatched ), "[$archive] - no entries matched ${ notMatched }"
+            }
+
+            dirs.each { File directory -> assert ( directory.directory || directory.mkdirs()), "Failed to create [$directory]" }
+
+            collectParallel( threads, files.entrySet().toList()) {
+                Map.Entry<File, Entry> e -> extract( archive, region, e.value, e.key )
+            }
+
+            files.keySet().toList()
+        }
+        finally
+        {
+            channel.close()
+        }
+    }
+
+
+    /**
+     * Reads entries of the archive specified.
+     *
+     * @param archive archive to read
+     * @return archive entries, in the order of its central directory
+     */
+    @Requires({ archive.file })
+    @Ensures ({ result != null })
+    static List<Entry> entries ( File archive )
+    {
+        final channel = new RandomAccessFile( archive, 'r' ).channel
+        try     { centralDirectory( archive, new Region( channel )) }
+        finally { channel.close() }
+    }
+
+
+    /**
+     * Calculates offset of the entry data in the archive, following its local header.
+     *
+     * @param archive archive containing the entry
+     * @param channel archive channel
+     * @param entry   entry to calculate the data offset of
+     * @return offset of the entry data
+     */
+    @Requires({ archive && channel && entry })
+    static long dataOffset ( File archive, FileChannel channel, Entry entry )
+    {
+        localHeaderEnd( archive, new Region( channel, false ), entry )
+    }
+
+
+    private static long localHeaderEnd ( File archive, Region region, Entry entry )
+    {
+        final ByteBuffer header = region.bytes( entry.offset, 30 )
+        assert ( header.getInt( 0 ) == 0x04034b50 ), "[$archive] - invalid local header of entry [$entry.name]"
+        entry.offset + 30 + ( header.getShort( 26 ) & 0xFFFF ) + ( header.getShort( 28 ) & 0xFFFF )
+    }
+
+
+    /**
+     * Reads central directory of the archive specified.
+     */
+    private static List<Entry> centralDirectory ( File archive, Region region )
+    {
+        final long       size = region.size
+        final int        tail = Math.min( size, EOCD_SIZE + MAX_COMMENT_SIZE ) as int
+        final ByteBuffer end  = region.bytes( size - tail, tail )
+        int              eocd = tail - EOCD_SIZE
+
+        while (( eocd >= 0 ) && ( end.getInt( eocd ) != 0x06054b50 )) { eocd-- }
+        assert ( eocd >= 0 ), "[$archive] - end of central directory record not found, is it a Zip archive?"
+
+        long count  = end.getShort( eocd + 10 ) & 0xFFFF
+        long length = end.getInt( eocd + 12 ) & ZIP64_LIMIT
+        long start  = end.getInt( eocd + 16 ) & ZIP64_LIMIT
+
+        if (( eocd >= 20 ) && ( end.getInt( eocd - 20 ) == 0x07064b50 ))
+        {
+            final ByteBuffer zip64 = region.bytes( end.getLong( eocd - 12 ), 56 )
+            assert ( zip64.getInt( 0 ) == 0x06064b50 ), "[$archive] - ZIP64 end of central directory record not found"
+            count  = zip64.getLong( 32 )
+            length = zip64.getLong( 40 )
+            start  = zip64.getLong( 48 )
+        }
+
+        assert ( length < Integer.MAX_VALUE ), "[$archive] - central directory of [$length] bytes is too large"
+
+        final ByteBuffer  directory = region.bytes( start, length as int )
+        final List<Entry> entries   = new ArrayList<Entry>(( int ) Math.min( count, 1024 * 1024 ))
+        int               position  = 0
+
+        for ( long j = 0; j < count; j++ )
+        {
+            assert ( directory.getInt( position ) == 0x02014b50 ), "[$archive] - invalid central directory header at [${ start + position }]"
+
+            final int    flags         = directory.getShort( position + 8  ) & 0xFFFF
+            final int    nameLength    = directory.getShort( position + 28 ) & 0xFFFF
+            final int    extraLength   = directory.getShort( position + 30 ) & 0xFFFF
+            final int    commentLength = directory.getShort( position + 32 ) & 0xFFFF
+            final byte[] name          = new byte[ nameLength ]
+
+            directory.position( position + 46 )
+            directory.get( name )
+
+            final entry = new Entry( name           : new String( name, (( flags & UTF8_FLAG ) != 0 ) ? 'UTF-8' : 'IBM437' ),
+                                     flags          : flags,
+                                     method         : directory.getShort( position + 10 ) & 0xFFFF,
+                                     dosTime        : directory.getInt( position + 12 ),
+                                     time           : dosTime( directory.getInt( position + 12 )),
+                                     crc            : directory.getInt( position + 16 ) & ZIP64_LIMIT,
+                                     compressedSize : directory.getInt( position + 20 ) & ZIP64_LIMIT,
+                                     size           : directory.getInt( position + 24 ) & ZIP64_LIMIT,
+                                     offset         : directory.getInt( position + 42 ) & ZIP64_LIMIT )
+
+            extra( entry, directory, position + 46 + nameLength, extraLength )
+            entries << entry
+            position += ( 46 + nameLength + extraLength + commentLength )
+        }
+
+        entries
+    }
+
+
+    /**
+     * Reads ZIP64 sizes and offset from the extra field, if any, keeping all other extra records as they are.
+     */
+    private static void extra ( Entry entry, ByteBuffer directory, int start, int length )
+    {
+        final int end      = start + length
+        final     extra    = new ByteArrayOutputStream( length )
+        int       position = start
+
+        while ( position + 4 <= end )
+        {
+            final int id   = directory.getShort( position     ) & 0xFFFF
+            final int size = Math.min( directory.getShort( position + 2 ) & 0xFFFF, end - position - 4 )
+
+            if ( id == 1 )
+            {
+                int field = position + 4
+                if ( entry.size           == ZIP64_LIMIT ) { entry.size           = directory.getLong( field ); field += 8 }
+                if ( entry.compressedSize == ZIP64_LIMIT ) { entry.compressedSize = directory.getLong( field ); field += 8 }
+                if ( entry.offset         == ZIP64_LIMIT ) { entry.offset         = directory.getLong( field ) }
+            }
+            else
+            {
+                final byte[] record = new byte[ 4 + size ]
+                directory.position( position )
+                directory.get( record )
+                extra.write( record )
+            }
+
+            position += ( 4 + size )
+        }
+
+        entry.extra = extra.toByteArray()
+    }
+
+
+    /**
+     * Inflates the entry specified to the file specified.
+     */
+    private static void extract ( File archive, Region region, Entry entry, File file )
+    {
+        assert entry.supported(), \
+               "[$archive] - entry [$entry.name] is encrypted or compressed with unsupported method [$entry.method]"
+
+        final long     dataStart = localHeaderEnd( archive, region, entry )
+        final CRC32    crc       = new CRC32()
+        final Inflater inflater  = ( entry.method == ZipEntry.DEFLATED ) ? new Inflater( true ) : null
+        final byte[]   input     = new byte[ BUFFER_SIZE ]
+        final byte[]   output    = new byte[ BUFFER_SIZE ]
+        final          os        = new FileOutputStream( file )
+        long           written   = 0
+
+        try
+        {
+            for ( long position = 0; position < entry.compressedSize; )
+            {
+                final int n = Math.min(( long ) input.length, entry.compressedSize - position ) as int
+                region.read( dataStart + position, input, n )
+                position += n
+
+                if ( inflater )
+                {
+                    inflater.setInput( input, 0, n )
+                    while ( ! ( inflater.needsInput() || inflater.finished()))
+                    {
+                        final int inflated = inflater.inflate( output )
+                        assert ( ! inflater.needsDictionary()), "[$archive] - entry [$entry.name] requires a dictionary"
+                        crc.update( output, 0, inflated )
+                        os.write( output, 0, inflated )
+                        written += inflated
+                    }
+                }
+                else
+                {
+                    crc.update( input, 0, n )
+                    os.write( input, 0, n )
+                    written += n
+                }
+            }
+
+            /**
+             * Inflater may still hold data when all input is consumed
+             */
+            while ( inflater && ( ! inflater.finished()))
+            {
+                final int inflated = inflater.inflate( output )
+                assert ( inflated > 0 ), "[$archive] - entry [$entry.name] is truncated"
+                crc.update( output, 0, inflated )
+                os.write( output, 0, inflated )
+                written += inflated
+            }
+        }
+        finally
+        {
+            inflater?.end()
+            os.close()
+        }
+
+        assert ( written == entry.size ) && ( crc.value == entry.crc ), \
+               "[$archive] - entry [$entry.name] is corrupted: [$written] bytes extracted instead of [$entry.size]"
+
+        // noinspection JavaStylePropertiesInvocation, GroovySetterCallCanBePropertyAccess
+        file.setLastModified( entry.time )
+    }
+
+
+    /**
+     * Regions of the archive: archives up to {@link #MAP_CHUNK} bytes are mapped once and sliced,
+     * larger ones are read with positional reads which, unlike mappings, don't outlive the read
+     * and can be made concurrently by threads sharing the channel.
+     */
+    private static final class Region
+    {
+        final FileChannel channel
+        final long        size
+        final ByteBuffer  archive
+
+        Region ( FileChannel channel, boolean mapArchive = true )
+        {
+            this.channel = channel
+            this.size    = channel.size()
+            this.archive = ( mapArchive && ( size <= MAP_CHUNK )) ? channel.map( FileChannel.MapMode.READ_ONLY, 0, size ) : null
+        }
+
+        /**
+         * Retrieves bytes of the region specified, in little-endian order.
+         */
+        @Requires({ ( position >= 0 ) && ( length >= 0 ) && ( position + length <= size ) })
+        ByteBuffer bytes ( long position, int length )
+        {
+            final ByteBuffer buffer = archive ?
+                (( ByteBuffer ) archive.duplicate().position( position as int ).limit(( position + length ) as int )).slice() :
+                readFully( position, ByteBuffer.allocate( length ))
+
+            buffer.order( ByteOrder.LITTLE_ENDIAN )
+        }
+
+        /**
+         * Reads bytes of the region specified to the buffer.
+         */
+        @Requires({ ( position >= 0 ) && ( length >= 0 ) && ( length <= buffer.length ) && ( position + length <= size ) })
+        void read ( long position, byte[] buffer, int length )
+        {
+            if ( archive ) { archive.duplicate().position( position as int ).get( buffer, 0, length ) }
+            else           { readFully( position, ByteBuffer.wrap( buffer, 0, length )) }
+        }
+
+        private ByteBuffer readFully ( long position, ByteBuffer buffer )
+        {
+            for ( long p = position; buffer.hasRemaining(); )
+            {
+                final int n = channel.read( buffer, p )
+                assert ( n > -1 ), "Unexpected end of archive at [$p]"
+                p += n
+            }
+
+            buffer.flip()
+            buffer
+        }
+    }
+
+
+    /**
+     * Converts MS-DOS date and time to milliseconds, in the default time zone.
+     */
+    private static long dosTime ( int dosTime )
+    {
+        final calendar = Calendar.getInstance()
+        calendar.clear()
+        calendar.set((( dosTime >> 25 ) & 0x7F ) + 1980, (( dosTime >> 21 ) & 0x0F ) - 1, ( dosTime >> 16 ) & 0x1F,
+                     ( dosTime >> 11 ) & 0x1F, ( dosTime >> 5 ) & 0x3F, ( dosTime << 1 ) & 0x3E )
+        calendar.timeInMillis
+    }
+}
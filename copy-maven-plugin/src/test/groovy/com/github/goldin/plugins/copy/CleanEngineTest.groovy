@@ -0,0 +1,146 @@
+package com.github.goldin.plugins.copy
+
+import org.junit.Test
+import java.nio.file.Files
+
+
+/**
+ * {@link CleanEngine} tests
+ */
+class CleanEngineTest
+{
+    private static final List<String> PATHS = [ 'a.txt', 'b.xml', 'conf/app.properties', 'conf/log.xml', 'conf/env/dev.properties',
+                                                'src/main/a.txt', 'src/main/res/b.txt', 'keep/a.txt', 'keep/sub/b.txt' ]
+
+
+    private static File tree ()
+    {
+        final directory = Files.createTempDirectory( 'CleanEngineTest' ).toFile()
+        directory.deleteOnExit()
+
+        for ( path in PATHS )
+        {
+            final file = new File( directory, path )
+            file.parentFile.mkdirs()
+            file.text = path
+        }
+
+        new File( directory, 'empty/sub' ).mkdirs()
+        new File( directory, 'keep/empty' ).mkdirs()
+        directory
+    }
+
+
+    /**
+     * Relative paths of files left in the directory, directories end with "/".
+     */
+    private static List<String> paths ( File directory )
+    {
+        final List<String> paths = []
+        directory.eachFileRecurse {
+            File f -> paths << f.path.substring( directory.path.length() + 1 ).replace( '\\', '/' ) + ( f.directory ? '/' : '' )
+        }
+        paths.sort()
+    }
+
+
+    private static List<File> files ( File directory, String ... paths )
+    {
+        paths.collect { new File( directory, it.replace( '/', File.separator )) }
+    }
+
+
+    @Test
+    void shouldDeleteFilesMatched ()
+    {
+        for ( int threads in [ 1, 4 ] )
+        {
+            final directory = tree()
+            final deleted   = new CleanEngine( directory, [ '**/*.txt', 'conf/' ], [ 'keep/**', '**/*.xml' ], false, threads ).clean()
+
+            assert deleted == files( directory, 'a.txt', 'conf/app.properties', 'conf/env/dev.properties', 'src/main/a.txt', 'src/main/res/b.txt' ).sort()
+            assert paths( directory ) == [ 'b.xml', 'conf/', 'conf/env/', 'conf/log.xml', 'empty/', 'empty/sub/', 'keep/', 'keep/a.txt', 'keep/empty/',
+                                           'keep/sub/', 'keep/sub/b.txt', 'src/', 'src/main/', 'src/main/res/' ]
+        }
+    }
+
+
+    @Test
+    void shouldDeleteEmptyDirectoriesPostOrder ()
+    {
+        for ( int threads in [ 1, 4 ] )
+        {
+            final directory = tree()
+            final deleted   = new CleanEngine( directory, [ '**/*.txt', 'conf/' ], [ 'keep/**', '**/*.xml' ], true, threads ).clean()
+            final matched   = files( directory, 'a.txt', 'conf/app.properties', 'conf/env/dev.properties', 'src/main/a.txt', 'src/main/res/b.txt' ).sort()
+
+            assert deleted.take( matched.size()) == matched, 'Files deleted should be followed by directories deleted'
+            assert deleted.drop( matched.size()) as Set == files( directory, 'conf/env', 'empty', 'empty/sub', 'keep/empty', 'src', 'src/main', 'src/main/res' ) as Set
+
+            deleted.drop( matched.size()).eachWithIndex {
+                File d, int j ->
+                assert ! deleted.drop( matched.size() + j + 1 ).any { it.path.startsWith( d.path + File.separator ) }, \
+                       "[$d] should be deleted after its subdirectories"
+            }
+
+            assert paths( directory ) == [ 'b.xml', 'conf/', 'conf/log.xml', 'keep/', 'keep/a.txt', 'keep/sub/', 'keep/sub/b.txt' ]
+        }
+    }
+
+
+    @Test
+    void shouldDeleteRootBecameEmpty ()
+    {
+        final directory = tree()
+        final deleted   = new CleanEngine( directory, null, null, true, 4 ).clean()
+
+        assert deleted.size() == PATHS.size() + 11 // Files, directories and the root
+        assert deleted.last() == directory
+        assert ! directory.exists()
+    }
+
+
+    @Test
+    void shouldDeleteFilesSpecified ()
+    {
+        final directory = tree()
+        final specified = files( directory, 'conf/env/dev.properties', 'src/main/res/b.txt', 'missing.txt' )
+        final deleted   = new CleanEngine( directory, null, null, false, 2 ).clean( specified )
+
+        assert deleted == specified.take( 2 ).sort()
+        assert new File( directory, 'conf/env' ).directory, 'Empty directories should be kept unless enabled'
+
+        final filesLeft   = files( directory, 'a.txt', 'conf/app.properties' )
+        final deletedLeft = new CleanEngine( directory, null, null, true, 2 ).clean( filesLeft )
+
+        assert deletedLeft.take( 2 ) == filesLeft.sort()
+        assert deletedLeft.drop( 2 ) as Set == files( directory, 'conf/env', 'empty/sub', 'keep/empty', 'src/main/res', 'empty' ) as Set
+        assert deletedLeft.last() == new File( directory, 'empty' )
+
+        assert paths( directory ).every { ! it.startsWith( 'empty' ) && ! it.startsWith( 'conf/env' ) }
+        assert new File( directory, 'b.xml' ).file && new File( directory, 'src/main/a.txt' ).file
+    }
+
+
+    @Test
+    void shouldNotFollowSymbolicLinks ()
+    {
+        final directory = tree()
+        final outside   = Files.createTempDirectory( 'CleanEngineTest' ).toFile()
+        final file      = new File( outside, 'a.txt' )
+        outside.deleteOnExit()
+        file.text = 'outside'
+
+        try
+        {
+            Files.createSymbolicLink( new File( directory, 'link' ).toPath(), outside.toPath())
+        }
+        catch ( UnsupportedOperationException ignored ){ return }
+        catch ( IOException                   ignored ){ return } // Symbolic links are not permitted
+
+        final deleted = new CleanEngine( directory, [ '**/*.txt', 'link' ], null, true, 2 ).clean()
+
+        assert new File( directory, 'link' ) in deleted
+        assert file.text == 'outside', 'Files under symbolic links should not be deleted'
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.goldin.plugins.copy
+
+import org.junit.Test
+import java.nio.file.Files
+
+
+/**
+ * {@link CopyIndex} tests
+ */
+class CopyIndexTest
+{
+    private static final long TIME = 1371291630000L
+
+
+    private static File directory ()
+    {
+        final directory = Files.createTempDirectory( 'CopyIndexTest' ).toFile()
+        directory.deleteOnExit()
+        directory
+    }
+
+
+    private static File file ( File directory, String path, String content, long time = TIME )
+    {
+        final file = new File( directory, path )
+        file.parentFile.mkdirs()
+        file.text         = content
+        file.lastModified = time
+        file
+    }
+
+
+    @Test
+    void shouldPersistEntries ()
+    {
+        final directory   = directory()
+        final indexes     = new File( directory, 'indexes' )
+        final source      = new File( directory, 'source' )
+        final target      = new File( directory, 'target' )
+        final a           = file( source, 'a.txt',     'aaaa' )
+        final b           = file( source, 'dir/b.txt', 'bbbb' )
+        final aCopy       = file( target, 'a.txt',     'aaaa' )
+        final bCopy       = file( target, 'dir/b.txt', 'bbbb' )
+        final index       = new CopyIndex( indexes, source, target, 'fingerprint' )
+
+        assert ! index.upToDate( a, aCopy, false ), 'Empty index should not have files up to date'
+
+        index.update( a, aCopy, false )
+        index.update( b, bCopy, true  )
+        assert index.upToDate( a, aCopy, false ) && index.upToDate( b, bCopy, false )
+        assert ! indexes.exists(), 'Index should not be saved until asked to'
+
+        index.save()
+        assert indexes.listFiles()*.name.every { it.endsWith( '.index' ) } && ( indexes.listFiles().size() == 1 )
+
+        final loaded = new CopyIndex( indexes, source, target, 'fingerprint' )
+        assert   loaded.upToDate( a, aCopy, false )
+        assert   loaded.upToDate( b, bCopy, false )
+        assert ! loaded.upToDate( b, aCopy, false ), 'Source file should match the one copied'
+        assert ! new CopyIndex( indexes, source, target, 'another fingerprint' ).upToDate( a, aCopy, false ), \
+               'Index should be specific to the resource settings'
+        assert ! new CopyIndex( indexes, source, new File( directory, 'another' ), 'fingerprint' ).upToDate( a, aCopy, false ), \
+               'Index should be specific to the target path'
+    }
+
+
+    @Test
+    void shouldDetectFilesModified ()
+    {
+        final directory = directory()
+        final indexes   = new File( directory, 'indexes' )
+        final source    = new File( directory, 'source' )
+        final target    = new File( directory, 'target' )
+        final a         = file( source, 'a.txt', 'aaaa' )
+        final aCopy     = file( target, 'a.txt', 'aaaa' )
+        final index     = new CopyIndex( indexes, source, target, '' )
+
+        index.update( a, aCopy, true )
+        index.save()
+
+        aCopy.lastModified = TIME + 1000
+        assert ! new CopyIndex( indexes, source, target, '' ).upToDate( a, aCopy, true ), 'Destination modified should be copied again'
+        aCopy.lastModified = TIME
+
+        a.lastModified = TIME + 1000
+        assert ! new CopyIndex( indexes, source, target, '' ).upToDate( a, aCopy, false ), 'Source touched should be copied again'
+
+        final loaded = new CopyIndex( indexes, source, target, '' )
+        assert loaded.upToDate( a, aCopy, true ), 'Source touched with the same content should be up to date when checksums are used'
+        loaded.save()
+        assert new CopyIndex( indexes, source, target, '' ).upToDate( a, aCopy, false ), 'Source time updated should be saved'
+
+        file( source, 'a.txt', 'cccc', TIME + 2000 )
+        assert ! new CopyIndex( indexes, source, target, '' ).upToDate( a, aCopy, true ), 'Source modified should be copied again'
+
+        aCopy.delete()
+        assert ! new CopyIndex( indexes, source, target, '' ).upToDate( a, aCopy, true )
+    }
+
+
+    @Test
+    void shouldIgnoreCorruptedEntries ()
+    {
+        final directory = directory()
+        final indexes   = new File( directory, 'indexes' )
+        final source    = new File( directory, 'source' )
+        final target    = new File( directory, 'target' )
+        final a         = file( source, 'a.txt', 'aaaa' )
+        final b         = file( source, 'b.txt', 'bbbb' )
+        final aCopy     = file( target, 'a.txt', 'aaaa' )
+        final bCopy     = file( target, 'b.txt', 'bbbb' )
+        final index     = new CopyIndex( indexes, source, target, '' )
+
+        index.update( a, aCopy, false )
+        index.update( b, bCopy, false )
+        index.save()
+
+        final indexFile  = indexes.listFiles().first()
+        final properties = new Properties()
+        indexFile.withInputStream { properties.load( it ) }
+        properties.setProperty( bCopy.canonicalPath, 'corrupted' )
+        indexFile.withOutputStream { properties.store( it, null ) }
+
+        final loaded = new CopyIndex( indexes, source, target, '' )
+        assert   loaded.upToDate( a, aCopy, false )
+        assert ! loaded.upToDate( b, bCopy, false )
+    }
+}
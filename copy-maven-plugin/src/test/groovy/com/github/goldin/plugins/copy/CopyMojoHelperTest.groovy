@@ -0,0 +1,82 @@
+package com.github.goldin.plugins.copy
+
+import static com.github.goldin.plugins.common.GMojoUtils.*
+import org.apache.maven.repository.internal.MavenRepositorySystemSession
+import org.apache.maven.repository.internal.MavenServiceLocator
+import org.junit.Test
+import org.sonatype.aether.RepositorySystem
+import org.sonatype.aether.connector.file.FileRepositoryConnectorFactory
+import org.sonatype.aether.repository.LocalRepository
+import org.sonatype.aether.spi.connector.RepositoryConnectorFactory
+import java.nio.file.Files
+
+
+/**
+ * {@link CopyMojoHelper} tests
+ */
+class CopyMojoHelperTest
+{
+    CopyMojoHelperTest ()
+    {
+        initTestThreadLocals()
+    }
+
+
+    private static File directory ()
+    {
+        final directory = Files.createTempDirectory( 'CopyMojoHelperTest' ).toFile()
+        directory.deleteOnExit()
+        directory
+    }
+
+
+    private static File file ( File directory, String path, String content )
+    {
+        final file = new File( directory, path )
+        file.parentFile.mkdirs()
+        file.text = content
+        file
+    }
+
+
+    /**
+     * Creates {@link CopyMojoHelper} of a mojo deploying with the file repository connector.
+     */
+    private static CopyMojoHelper helper ( File localRepo )
+    {
+        final locator = new MavenServiceLocator()
+        locator.addService( RepositoryConnectorFactory, FileRepositoryConnectorFactory )
+
+        final system  = locator.getService( RepositorySystem )
+        final session = new MavenRepositorySystemSession()
+        session.localRepositoryManager = system.newLocalRepositoryManager( new LocalRepository( localRepo ))
+
+        new CopyMojoHelper( new CopyMojo( repoSystem : system, repoSession : session ))
+    }
+
+
+    @Test
+    void shouldDeployBatchToFileRepository ()
+    {
+        final directory = directory()
+        final repo      = new File( directory, 'repo' )
+        final repoUrl   = repo.toURI().toString()
+        final files     = ( 1 .. 5 ).collect { file( directory, "files/file-${ it }.txt", "content $it" ) }
+
+        assert repoUrl.startsWith( 'file:' )
+
+        helper( new File( directory, 'local' )).deploy(
+            files.collect { new CopyDeployment( it, repoUrl, 'com.github.goldin', it.name - '.txt', '1.0', null ) } +
+            [ new CopyDeployment( files[ 0 ], repoUrl, 'com.github.goldin', 'file-1', '1.0', 'sources' ) ], 3 )
+
+        final List<File> deployed = ( 1 .. 5 ).collect { new File( repo, "com/github/goldin/file-${ it }/1.0/file-${ it }-1.0.txt" ) } +
+                                    [ new File( repo, 'com/github/goldin/file-1/1.0/file-1-1.0-sources.txt' ) ]
+
+        deployed.eachWithIndex {
+            File f, int j ->
+            assert f.file, "[$f] should be deployed"
+            assert f.text == files[ j % files.size() ].text
+            assert new File( f.path + '.sha1' ).file, "[$f] checksum should be deployed"
+        }
+    }
+}
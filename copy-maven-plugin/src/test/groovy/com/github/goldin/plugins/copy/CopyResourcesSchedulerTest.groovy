@@ -0,0 +1,124 @@
+package com.github.goldin.plugins.copy
+
+import org.junit.Test
+
+
+/**
+ * {@link CopyResourcesScheduler} tests
+ */
+class CopyResourcesSchedulerTest
+{
+    /**
+     * Creates resources specified: "id" or "id:after1,after2", "-" for a resource without an id.
+     */
+    private static List<CopyResource> resources ( String ... specs )
+    {
+        specs.collect {
+            String spec ->
+            final id    = spec.tokenize( ':' )[ 0 ]
+            final after = spec.contains( ':' ) ? spec.tokenize( ':' )[ 1 ] : null
+            new CopyResource( id : ( id == '-' ) ? null : id, after : after, targetPath : "/target/$id" )
+        }
+    }
+
+
+    private static void assertFails ( String message, Closure c )
+    {
+        try
+        {
+            c()
+            assert false, "[$message] failure is expected"
+        }
+        catch ( AssertionError e )
+        {
+            assert e.message.contains( message )
+        }
+    }
+
+
+    @Test
+    void shouldOrderResourcesAfterDependencies ()
+    {
+        assert new CopyResourcesScheduler( resources( 'a:c', 'b', 'c', 'd:a,b' )).ordered()*.id == [ 'b', 'c', 'a', 'd' ]
+        assert new CopyResourcesScheduler( resources( 'a', 'b', 'c' )).ordered()*.id            == [ 'a', 'b', 'c' ], \
+               'Declaration order should be kept'
+        assert new CopyResourcesScheduler( resources( '-:c', 'b:c', 'c', '-' )).ordered()*.id  == [ 'c', null, 'b', null ]
+        assert new CopyResourcesScheduler( resources( 'a:d', 'b:a', 'c:b', 'd' )).ordered()*.id == [ 'd', 'a', 'b', 'c' ]
+    }
+
+
+    @Test
+    void shouldFailOnUnknownIds ()
+    {
+        assertFails( '<after> refers to unknown <id> [x]' )       { new CopyResourcesScheduler( resources( 'a', 'b:a,x' )) }
+        assertFails( '<after> refers to its own <id> [a]' )       { new CopyResourcesScheduler( resources( 'a:a' )) }
+        assertFails( '<id> [a] is used more than once' )          { new CopyResourcesScheduler( resources( 'a', 'b', 'a' )) }
+    }
+
+
+    @Test
+    void shouldDetectCycles ()
+    {
+        for ( specs in [[ 'a:b', 'b:a' ], [ 'a:c', 'b:a', 'c:b', 'd' ], [ 'd', 'a:c', 'b:a,d', 'c:b' ]] )
+        {
+            final scheduler = new CopyResourcesScheduler( resources( specs as String[] ))
+            final executed  = Collections.synchronizedList( [] )
+
+            assertFails( 'have circular <after> dependencies' ){ scheduler.ordered() }
+            assertFails( 'have circular <after> dependencies' ){ scheduler.execute( 2 ){ CopyResource r -> executed << r.id }}
+            assert executed.empty, 'No resource should be executed when dependencies are circular'
+        }
+    }
+
+
+    @Test
+    void shouldExecuteAfterDependenciesFinished ()
+    {
+        final resources = resources( 'a:c', 'b', 'c', 'd:a,b', 'e', 'f:d' )
+        final List<String> events = Collections.synchronizedList( [] )
+
+        for ( int threads in [ 1, 2, 4 ] )
+        {
+            events.clear()
+            new CopyResourcesScheduler( resources ).execute( threads ){
+                CopyResource r ->
+                events << "start ${ r.id }".toString()
+                sleep( 20 )
+                events << "end ${ r.id }".toString()
+            }
+
+            assert events.size() == resources.size() * 2
+            for ( r in resources )
+            {
+                for ( id in r.after())
+                {
+                    assert events.indexOf( "end ${ id }".toString()) < events.indexOf( "start ${ r.id }".toString()), \
+                           "[${ r.id }] should start after [$id] ends - $threads threads: $events"
+                }
+            }
+        }
+    }
+
+
+    @Test
+    void shouldStopOnFailure ()
+    {
+        final List<String> executed = Collections.synchronizedList( [] )
+
+        try
+        {
+            new CopyResourcesScheduler( resources( 'a', 'b:a', 'c' )).execute( 2 ){
+                CopyResource r ->
+                executed << r.id
+                if ( r.id == 'a' ) { throw new IllegalStateException( 'a failed' ) }
+            }
+            assert false, 'Execution should fail'
+        }
+        catch ( IllegalStateException e )
+        {
+            assert e.message == 'a failed'
+        }
+
+        assert ! ( 'b' in executed ), 'Resource should not start after one it depends on fails'
+    }
+}
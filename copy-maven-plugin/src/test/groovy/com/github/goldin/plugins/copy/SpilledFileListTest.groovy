@@ -0,0 +1,64 @@
+package com.github.goldin.plugins.copy
+
+import org.junit.Test
+
+
+/**
+ * {@link SpilledFileList} tests
+ */
+class SpilledFileListTest
+{
+    private static List<File> paths ( int from, int to )
+    {
+        ( from ..< to ).collect { new File( "dir-${ it % 3 }/file ${ it }.txt" ) }
+    }
+
+
+    @Test
+    void shouldKeepOrderAfterSpill ()
+    {
+        final list  = new SpilledFileList( 10 )
+        final files = paths( 0, 25 )
+
+        try
+        {
+            list.addAll( files )
+            assert list.spill && list.spill.file, 'Files should be spilled to disk'
+            assert list.size() == 25
+            assert list.toList() == files
+            assert list.toList() == files, 'List should be iterated more than once'
+            assert [ list.first(), list[ 12 ], list[ 24 ] ] == [ files[ 0 ], files[ 12 ], files[ 24 ] ]
+
+            list.addAll( paths( 25, 32 ))
+            assert list.toList() == paths( 0, 32 ), 'Files added after iteration should follow those added before'
+
+            final iterator = list.iterator()
+            assert iterator.next() == files[ 0 ]
+            list << new File( 'added while iterating' )
+            assert iterator.collect() == paths( 1, 32 ), 'Iterator should not see files added after it was created'
+        }
+        finally
+        {
+            final spill = list.spill
+            list.close()
+            assert ! spill.exists()
+        }
+
+        assert list.empty
+    }
+
+
+    @Test
+    void shouldKeepFewFilesInMemory ()
+    {
+        final list = new SpilledFileList( 10 )
+        list.addAll( paths( 0, 9 ))
+
+        assert list.spill == null
+        assert list.toList() == paths( 0, 9 )
+        assert list.last() == paths( 0, 9 ).last()
+
+        list.close()
+        assert list.empty
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.goldin.plugins.copy
+
+import org.junit.Test
+import java.nio.file.Files
+
+
+/**
+ * {@link TarPacker} tests
+ */
+class TarPackerTest
+{
+    private static File directory ()
+    {
+        final directory = Files.createTempDirectory( 'TarPackerTest' ).toFile()
+        directory.deleteOnExit()
+        directory
+    }
+
+
+    private static byte[] content ( int size, long seed = 1 )
+    {
+        final random = new Random( seed )
+        final os     = new ByteArrayOutputStream( size + 32 )
+        while ( os.size() < size ) { os.write( "line ${ random.nextInt( 100000 ) }\n".getBytes( 'UTF-8' )) }
+        Arrays.copyOf( os.toByteArray(), size )
+    }
+
+
+    /**
+     * Writes files specified to the directory specified.
+     *
+     * @return relative paths => files written
+     */
+    private static Map<String, File> files ( File directory, Map<String, byte[]> contents )
+    {
+        contents.collectEntries {
+            String path, byte[] content ->
+            final file = new File( directory, path )
+            file.parentFile.mkdirs()
+            file.bytes = content
+            [ path, file ]
+        }
+    }
+
+
+    @Test
+    void shouldSupportExtensions ()
+    {
+        assert   TarPacker.supports( new File( 'a.tar.zst' ))
+        assert   TarPacker.supports( new File( 'a.TZST'    ))
+        assert   TarPacker.supports( new File( 'a.tar.lz4' ))
+        assert ! TarPacker.supports( new File( 'a.tar.gz'  )), 'tar.gz is packed by the default archiver'
+        assert ! TarPacker.supports( new File( 'a.zip'     ))
+    }
+
+
+    @Test
+    void shouldUnpackArchivePacked ()
+    {
+        final directory = directory()
+        final longName  = "dir/${ 'long' * 40 }.txt"
+        final time      = 1371291630000L
+
+        /**
+         * Pure Java LZ4 compression of commons-compress is slow, a smaller file is packed to "tar.lz4"
+         */
+        for ( extension in [ '.tar.zst', '.tar.lz4' ] )
+        {
+            final contents    = [ 'a.txt'         : 'aaaa'.getBytes( 'UTF-8' ),
+                                  'empty.txt'     : new byte[ 0 ],
+                                  'dir/large.txt' : content(( extension == '.tar.zst' ) ? 3 * 1024 * 1024 : 64 * 1024 ),
+                                  'dir/sub/b.txt' : content( 10000, 2 ),
+                                  ( longName )    : 'long'.getBytes( 'UTF-8' ) ]
+            final files       = files( new File( directory, "src${ extension }" ), contents )
+            final archive     = new TarPacker( 2, 3, time ).pack( new File( directory, "a${ extension }" ), files )
+            final destination = new File( directory, "unpacked${ extension }" )
+            final unpacked    = TarPacker.unpack( archive, destination )
+
+            assert unpacked == contents.keySet().sort().collect { new File( destination, it ) }
+            contents.each { String path, byte[] content -> assert Arrays.equals( new File( destination, path ).bytes, content ), "[$path] - $extension" }
+            assert unpacked.every { it.lastModified() == time }
+            assert new File( destination, 'dir/sub' ).directory
+        }
+    }
+
+
+    @Test
+    void shouldPackSameArchiveForSameFiles ()
+    {
+        final directory = directory()
+        final files     = files( new File( directory, 'src' ), [ 'b.txt' : content( 1000 ), 'a/c.txt' : content( 2000, 2 ) ])
+
+        for ( extension in [ '.tar.zst', '.tar.lz4' ] )
+        {
+            final archive1 = new TarPacker( 1, 3, 0L ).pack( new File( directory, "1${ extension }" ), files )
+            final archive2 = new TarPacker( 1, 3, 0L ).pack( new File( directory, "2${ extension }" ), files.sort { - it.key.length() })
+            assert Arrays.equals( archive1.bytes, archive2.bytes ), extension
+        }
+    }
+
+
+    @Test
+    void shouldUnpackMatchingEntries ()
+    {
+        final directory   = directory()
+        final files       = files( new File( directory, 'src' ), [ 'a/x.txt'             : 'a'.getBytes( 'UTF-8' ),
+                                                                    'b/x.txt'             : 'b'.getBytes( 'UTF-8' ),
+                                                                    'conf/app.properties' : 'c'.getBytes( 'UTF-8' ),
+                                                                    'conf/log.xml'        : 'd'.getBytes( 'UTF-8' ) ])
+        final archive     = new TarPacker( 1, 3 ).pack( new File( directory, 'a.tar.lz4' ), files )
+        final destination = new File( directory, 'unpacked' )
+
+        assert TarPacker.unpack( archive, destination, [ 'conf/**', '**/*.properties' ], [ '**/*.xml' ] ) ==
+               [ new File( destination, 'conf/app.properties' ) ]
+
+        assert TarPacker.unpack( archive, destination, [ '**/x.txt' ], [], false ) == [ new File( destination, 'x.txt' ) ]
+        assert new File( destination, 'x.txt' ).text == 'b'
+
+        try
+        {
+            TarPacker.unpack( archive, destination, [ 'conf/**', 'missing/**' ] )
+            assert false, 'Unpacking should fail'
+        }
+        catch ( AssertionError e )
+        {
+            assert e.message.contains( 'missing/**' ) && ( ! e.message.contains( 'conf/**' ))
+        }
+    }
+}
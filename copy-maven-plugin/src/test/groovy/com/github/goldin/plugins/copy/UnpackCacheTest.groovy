@@ -0,0 +1,126 @@
+package com.github.goldin.plugins.copy
+
+import org.junit.Test
+import java.nio.file.Files
+
+
+/**
+ * {@link UnpackCache} tests
+ */
+class UnpackCacheTest
+{
+    private static File directory ()
+    {
+        final directory = Files.createTempDirectory( 'UnpackCacheTest' ).toFile()
+        directory.deleteOnExit()
+        directory
+    }
+
+
+    private static File file ( File directory, String path, String content )
+    {
+        final file = new File( directory, path )
+        file.parentFile.mkdirs()
+        file.text = content
+        file
+    }
+
+
+    @Test
+    void shouldHitMarkerUntilFilesChange ()
+    {
+        final directory   = directory()
+        final archive     = file( directory, 'a.zip', 'archive' )
+        final destination = new File( directory, 'unpacked' )
+        final cache       = new UnpackCache( archive, [], [], true, 'fingerprint' )
+        final files       = [ file( destination, 'a.txt', 'aaaa' ), file( destination, 'dir/b.txt', 'bbbb' ) ]
+
+        assert cache.unpacked( destination ) == null, 'Archive not unpacked yet'
+
+        cache.markUnpacked( destination, files )
+        assert cache.unpacked( destination ) == files
+        assert new UnpackCache( archive, [], [], true, 'fingerprint' ).unpacked( destination ) == files
+
+        assert new UnpackCache( archive, [], [], true, 'another'  ).unpacked( destination ) == null, 'Settings changed'
+        assert new UnpackCache( archive, [ '**/*.txt' ], [], true, 'fingerprint' ).unpacked( destination ) == null, 'Entries changed'
+        assert new UnpackCache( archive, [], [], false, 'fingerprint' ).unpacked( destination ) == null, 'Path is not preserved'
+
+        files[ 1 ].text = 'bbbbbb'
+        assert cache.unpacked( destination ) == null, 'File unpacked was modified'
+
+        cache.markUnpacked( destination, files )
+        assert cache.unpacked( destination ) == files
+
+        files[ 0 ].delete()
+        assert cache.unpacked( destination ) == null, 'File unpacked was deleted'
+
+        file( destination, 'a.txt', 'aaaa' )
+        cache.markUnpacked( destination, files )
+        cache.unmark( destination )
+        assert cache.unpacked( destination ) == null, 'Marker was removed'
+    }
+
+
+    @Test
+    void shouldMissWhenArchiveChanges ()
+    {
+        final directory   = directory()
+        final archive     = file( directory, 'a.zip', 'archive' )
+        final destination = new File( directory, 'unpacked' )
+        final files       = [ file( destination, 'a.txt', 'aaaa' ) ]
+
+        new UnpackCache( archive, [], [], true, '' ).markUnpacked( destination, files )
+        assert new UnpackCache( archive, [], [], true, '' ).unpacked( destination ) == files
+
+        archive.text = 'archive changed'
+        assert new UnpackCache( archive, [], [], true, '' ).unpacked( destination ) == null
+    }
+
+
+    @Test
+    void shouldExtractSharedTreeOnce ()
+    {
+        final directory = directory()
+        final archive   = file( directory, 'a.zip', 'archive' )
+        final cacheDir  = new File( directory, 'cache' )
+        int   extracted = 0
+        final extract   = { File tree -> extracted++; file( tree, 'a.txt', 'aaaa' ); file( tree, 'dir/b.txt', 'bbbb' ) }
+
+        final tree = new UnpackCache( archive, [], [], true, 'fingerprint' ).sharedTree( cacheDir, extract )
+        assert extracted == 1
+        assert new UnpackCache( archive, [], [], true, 'another' ).sharedTree( cacheDir, extract ) == tree, \
+               'Tree should not depend on settings applied after extraction'
+        assert extracted == 1
+        assert new UnpackCache( archive, [ 'dir/**' ], [], true, '' ).sharedTree( cacheDir, extract ) != tree
+        assert extracted == 2
+        assert cacheDir.list().every { ! it.endsWith( '.tmp' ) }
+
+        final destination = new File( directory, 'unpacked' )
+        final linked      = UnpackCache.link( tree, destination )
+        assert linked == [ new File( destination, 'a.txt' ), new File( destination, 'dir/b.txt' ) ]
+        assert linked*.text == [ 'aaaa', 'bbbb' ]
+    }
+
+
+    @Test
+    void shouldNotKeepTreeFailedToExtract ()
+    {
+        final directory = directory()
+        final archive   = file( directory, 'a.zip', 'archive' )
+        final cacheDir  = new File( directory, 'cache' )
+        final cache     = new UnpackCache( archive, [], [], true, '' )
+
+        try
+        {
+            cache.sharedTree( cacheDir ){ File tree -> file( tree, 'a.txt', 'aaaa' ); throw new IOException( 'Corrupted archive' ) }
+            assert false, 'Extraction should fail'
+        }
+        catch ( IOException e )
+        {
+            assert e.message == 'Corrupted archive'
+        }
+
+        assert cacheDir.list().length == 0, 'Partially extracted tree should be deleted'
+        assert new File( cache.sharedTree( cacheDir ){ File tree -> file( tree, 'a.txt', 'aaaa' ) }, 'a.txt' ).text == 'aaaa'
+    }
+}
@@ -0,0 +1,297 @@
+package com.github.goldin.plugins.copy
+
+import org.junit.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.file.Files
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipFile
+import java.util.zip.ZipOutputStream
+
+
+/**
+ * {@link ZipPacker} tests
+ */
+class ZipPackerTest
+{
+    private static File directory ()
+    {
+        final directory = Files.createTempDirectory( 'ZipPackerTest' ).toFile()
+        directory.deleteOnExit()
+        directory
+    }
+
+
+    private static File file ( File directory, String path, byte[] content )
+    {
+        final file = new File( directory, path )
+        file.parentFile.mkdirs()
+        file.bytes = content
+        file.deleteOnExit()
+        file
+    }
+
+
+    /**
+     * Content compressible but not repeating within a deflate dictionary so that blocks really depend on each other.
+     */
+    private static byte[] content ( int size, long seed = 1 )
+    {
+        final random = new Random( seed )
+        final words  = ( 1 .. 512 ).collect { "word${ random.nextInt( 100000 ) } " }
+        final os     = new ByteArrayOutputStream( size + 32 )
+        while ( os.size() < size ) { os.write( words[ random.nextInt( words.size()) ].getBytes( 'UTF-8' )) }
+        Arrays.copyOf( os.toByteArray(), size )
+    }
+
+
+    private static long crc ( byte[] bytes, int offset = 0, int length = bytes.length )
+    {
+        final crc = new CRC32()
+        crc.update( bytes, offset, length )
+        crc.value
+    }
+
+
+    /**
+     * Reads all entries of the archive with {@link ZipFile}: entry name => entry content, directories are mapped to {@code null}.
+     */
+    private static Map<String, byte[]> read ( File archive )
+    {
+        final Map<String, byte[]> entries = [:]
+        final zipFile                     = new ZipFile( archive )
+
+        try
+        {
+            for ( entry in zipFile.entries())
+            {
+                entries[ entry.name ] = entry.directory ? null : zipFile.getInputStream( entry ).bytes
+            }
+        }
+        finally
+        {
+            zipFile.close()
+        }
+
+        entries
+    }
+
+
+    /**
+     * Determines if archive has ZIP64 end of central directory locator, followed by the end of central directory record without a comment.
+     */
+    private static boolean zip64 ( File archive )
+    {
+        final buffer = ByteBuffer.wrap( archive.bytes ).order( ByteOrder.LITTLE_ENDIAN )
+        ( buffer.capacity() >= 42 ) && ( buffer.getInt( buffer.capacity() - 22 ) == 0x06054b50 ) && ( buffer.getInt( buffer.capacity() - 42 ) == 0x07064b50 )
+    }
+
+
+    @Test
+    void shouldPackArchiveReadByZipFile ()
+    {
+        final directory = directory()
+        final large     = content(( ZipPacker.BLOCK_SIZE * 2 ) + 12345 )
+        final files     = [ 'a.txt'          : file( directory, 'a.txt',          'aaaa'.getBytes( 'UTF-8' )),
+                            'empty.txt'      : file( directory, 'empty.txt',      new byte[ 0 ] ),
+                            'dir/large.txt'  : file( directory, 'dir/large.txt',  large ),
+                            'dir/sub/b.bin'  : file( directory, 'dir/sub/b.bin',  content( ZipPacker.BLOCK_SIZE, 2 )) ]
+
+        for ( int level in [ 0, 1, 6, 9 ] )
+        {
+            for ( int threads in [ 1, 4 ] )
+            {
+                final archive = new File( directory, "archive-${ level }-${ threads }.zip" )
+                new ZipPacker( threads, level ).pack( archive, files )
+
+                final entries = read( archive )
+                assert entries.keySet() == [ 'a.txt', 'dir/', 'dir/large.txt', 'dir/sub/', 'dir/sub/b.bin', 'empty.txt' ] as Set
+                assert entries[ 'dir/' ] == null
+                files.each { String name, File file -> assert Arrays.equals( entries[ name ], file.bytes ), "[$name] - level $level, threads $threads" }
+            }
+        }
+    }
+
+
+    @Test
+    void shouldPackSameArchiveForSameFiles ()
+    {
+        final directory = directory()
+        final files     = [ 'a.txt'         : file( directory, 'a.txt',         content( 1000 )),
+                            'dir/large.txt' : file( directory, 'dir/large.txt', content(( ZipPacker.BLOCK_SIZE * 3 ) + 1 )) ]
+        final archive1  = new File( directory, '1.zip' )
+        final archive2  = new File( directory, '2.zip' )
+
+        new ZipPacker( 1, 6 ).pack( archive1, files )
+        new ZipPacker( 4, 6 ).pack( archive2, files )
+        assert Arrays.equals( archive1.bytes, archive2.bytes ), 'Archive should not depend on the number of threads'
+    }
+
+
+    /**
+     * Reads compressed sizes of all entries of the archive with {@link ZipFile}: entry name => compressed size.
+     */
+    private static Map<String, Long> compressedSizes ( File archive )
+    {
+        final zipFile = new ZipFile( archive )
+        try     { zipFile.entries().toList().collectEntries {[ it.name, it.compressedSize ]} }
+        finally { zipFile.close() }
+    }
+
+
+    @Test
+    void shouldUpdateArchiveCopyingUnchangedEntries ()
+    {
+        final directory = directory()
+        final archive   = new File( directory, 'a.zip' )
+        final a         = file( directory, 'a.txt',         content( 100000, 1 ))
+        final b         = file( directory, 'b.txt',         content( 100000, 2 ))
+        final c         = file( directory, 'dir/large.txt', content(( ZipPacker.BLOCK_SIZE * 2 ) + 1, 3 ))
+
+        new ZipPacker( 2, 9 ).pack( archive, [ 'a.txt' : a, 'b.txt' : b, 'dir/large.txt' : c ] )
+        final Map<String, Long> before = compressedSizes( archive )
+
+        b.bytes = content( 50000, 4 )
+        final d = file( directory, 'd.txt', content( 1000, 5 ))
+
+        /**
+         * Archive compressed with level 9 is updated with level 1: entries copied as-is keep their compressed size
+         */
+        new ZipPacker( 2, 1 ).pack( archive, [ 'a.txt' : a, 'b.txt' : b, 'd.txt' : d ], true )
+
+        final Map<String, Long>   after   = compressedSizes( archive )
+        final Map<String, byte[]> entries = read( archive )
+
+        assert entries.keySet() == [ 'a.txt', 'b.txt', 'd.txt', 'dir/', 'dir/large.txt' ] as Set
+        assert Arrays.equals( entries[ 'a.txt' ],         a.bytes )
+        assert Arrays.equals( entries[ 'b.txt' ],         b.bytes )
+        assert Arrays.equals( entries[ 'd.txt' ],         d.bytes )
+        assert Arrays.equals( entries[ 'dir/large.txt' ], c.bytes )
+
+        assert after[ 'a.txt' ]         == before[ 'a.txt' ],         'Entry not modified should be copied as-is'
+        assert after[ 'dir/large.txt' ] == before[ 'dir/large.txt' ], 'Entry not replaced should be copied as-is'
+        assert after[ 'a.txt' ] < new ZipPacker( 1, 1 ).pack( new File( directory, 'level1.zip' ), [ 'a.txt' : a ] ).length()
+        assert ! new File( archive.path + '.tmp' ).exists()
+    }
+
+
+    @Test
+    void shouldKeepTimeAndExtraFieldOfEntriesCopied ()
+    {
+        final directory = directory()
+        final archive   = new File( directory, 'a.zip' )
+        final extra     = [ 0x7A, 0x7A, 4, 0, 1, 2, 3, 4 ] as byte[]
+        final zos       = new ZipOutputStream( new FileOutputStream( archive ))
+
+        try
+        {
+            final entry = new ZipEntry( 'kept.txt' )
+            entry.time  = 1371291630000L
+            entry.extra = extra
+            zos.putNextEntry( entry )
+            zos.write( content( 1000 ))
+            zos.closeEntry()
+        }
+        finally
+        {
+            zos.close()
+        }
+
+        final before = ZipUnpacker.entries( archive ).find { it.name == 'kept.txt' }
+        new ZipPacker( 2, 6, 0L ).pack( archive, [ 'a.txt' : file( directory, 'a.txt', 'aaaa'.getBytes( 'UTF-8' )) ], true )
+        final after  = ZipUnpacker.entries( archive ).find { it.name == 'kept.txt' }
+
+        assert after.dosTime == before.dosTime, 'Entry copied should keep its MS-DOS date and time'
+        assert Arrays.equals( after.extra, extra ) && Arrays.equals( before.extra, extra )
+        assert Arrays.equals( read( archive )[ 'kept.txt' ], content( 1000 ))
+    }
+
+
+    @Test
+    void shouldStoreEntriesTimeInUtc ()
+    {
+        final directory   = directory()
+        final files       = [ 'a.txt' : file( directory, 'a.txt', 'aaaa'.getBytes( 'UTF-8' )) ]
+        final entriesTime = 1371291630000L // 2013-06-15 10:20:30 UTC
+        final zone        = TimeZone.default
+        final List<File> archives = []
+
+        try
+        {
+            for ( id in [ 'Asia/Tokyo', 'America/New_York', 'UTC' ] )
+            {
+                TimeZone.default = TimeZone.getTimeZone( id )
+                final archive    = new File( directory, "${ archives.size() }.zip" )
+                archives << new ZipPacker( 2, 6, entriesTime ).pack( archive, files )
+            }
+
+            assert archives.every { Arrays.equals( it.bytes, archives[ 0 ].bytes ) }, 'Archive should not depend on the default time zone'
+
+            final zipFile = new ZipFile( archives[ 0 ] )
+            try     { assert zipFile.getEntry( 'a.txt' ).time == entriesTime }
+            finally { zipFile.close() }
+        }
+        finally
+        {
+            TimeZone.default = zone
+        }
+    }
+
+
+    @Test
+    void shouldUseZip64ForManyEntries ()
+    {
+        final directory = directory()
+        final file      = file( directory, 'a.txt', 'aaaa'.getBytes( 'UTF-8' ))
+        final archive   = new File( directory, 'many.zip' )
+        final count     = 0xFFFF + 10
+        final files     = ( 0 ..< count ).collectEntries {[ "${ it % 100 }/${ it }.txt".toString(), file ]}
+
+        new ZipPacker( 4, 0 ).pack( archive, files )
+
+        final zipFile = new ZipFile( archive )
+        try
+        {
+            assert zipFile.size() == count + 100 // Files and their directories
+            assert zipFile.getInputStream( zipFile.getEntry( "44/${ count - 1 }.txt" )).text == 'aaaa'
+        }
+        finally
+        {
+            zipFile.close()
+        }
+
+        assert zip64( archive ), 'ZIP64 end of central directory record is missing'
+    }
+
+
+    @Test
+    void shouldUseZip64ForSmallArchivesOnlyWhenNeeded ()
+    {
+        final directory = directory()
+        final archive   = new ZipPacker( 1, 6 ).pack( new File( directory, 'a.zip' ), [ 'a.txt' : file( directory, 'a.txt', content( 100 )) ] )
+
+        assert archive.bytes[ 4 ] == 20, 'Local header should require version 2.0 without ZIP64 extensions'
+        assert ! zip64( archive )
+    }
+
+
+    @Test
+    void shouldCombineCrc32 ()
+    {
+        final random = new Random( 3 )
+
+        for ( int size in [ 0, 1, 2, 7, 100, 4096, 65537, ZipPacker.BLOCK_SIZE + 3 ] )
+        {
+            final byte[] bytes = new byte[ size ]
+            random.nextBytes( bytes )
+
+            for ( int split in [ 0, size.intdiv( 3 ), size.intdiv( 2 ), size ].unique())
+            {
+                final crc1 = crc( bytes, 0, split )
+                final crc2 = crc( bytes, split, size - split )
+                assert ZipPacker.crc32Combine( crc1, crc2, size - split ) == crc( bytes ), "Size $size, split $split"
+            }
+        }
+    }
+}
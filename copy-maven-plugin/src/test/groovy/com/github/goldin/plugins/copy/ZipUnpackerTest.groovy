@@ -0,0 +1,190 @@
+package com.github.goldin.plugins.copy
+
+import org.junit.Test
+import java.nio.charset.Charset
+import java.nio.file.Files
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+
+/**
+ * {@link ZipUnpacker} tests
+ */
+class ZipUnpackerTest
+{
+    private static File directory ()
+    {
+        final directory = Files.createTempDirectory( 'ZipUnpackerTest' ).toFile()
+        directory.deleteOnExit()
+        directory
+    }
+
+
+    private static byte[] content ( int size, long seed = 1 )
+    {
+        final random = new Random( seed )
+        final os     = new ByteArrayOutputStream( size + 32 )
+        while ( os.size() < size ) { os.write( "line ${ random.nextInt( 100000 ) }\n".getBytes( 'UTF-8' )) }
+        Arrays.copyOf( os.toByteArray(), size )
+    }
+
+
+    /**
+     * Writes files specified to the directory specified.
+     *
+     * @return relative paths => files written
+     */
+    private static Map<String, File> files ( File directory, Map<String, byte[]> contents )
+    {
+        contents.collectEntries {
+            String path, byte[] content ->
+            final file = new File( directory, path )
+            file.parentFile.mkdirs()
+            file.bytes = content
+            [ path, file ]
+        }
+    }
+
+
+    /**
+     * Creates an archive with {@link ZipOutputStream}, entries are written in the order specified with data descriptors.
+     * Entry names are marked as UTF-8 only when encoded with it.
+     */
+    private static File zipOutputStream ( File archive, Map<String, byte[]> contents, String encoding = 'UTF-8' )
+    {
+        final zos = new ZipOutputStream( new FileOutputStream( archive ), Charset.forName( encoding ))
+
+        try
+        {
+            contents.each {
+                String name, byte[] content ->
+                zos.putNextEntry( new ZipEntry( name ))
+                zos.write( content )
+                zos.closeEntry()
+            }
+        }
+        finally
+        {
+            zos.close()
+        }
+
+        archive
+    }
+
+
+    @Test
+    void shouldUnpackArchivePacked ()
+    {
+        final directory = directory()
+        final contents  = [ 'a.txt'         : 'aaaa'.getBytes( 'UTF-8' ),
+                            'empty.txt'     : new byte[ 0 ],
+                            'dir/large.txt' : content(( ZipPacker.BLOCK_SIZE * 2 ) + 777 ),
+                            'dir/sub/b.txt' : content( 100000, 2 ) ]
+        final files     = files( new File( directory, 'src' ), contents )
+
+        for ( int level in [ 0, 6 ] )
+        {
+            final archive     = new ZipPacker( 2, level ).pack( new File( directory, "${ level }.zip" ), files )
+            final destination = new File( directory, "unpacked-${ level }" )
+            final unpacked    = new ZipUnpacker( 2 ).unpack( archive, destination )
+
+            assert unpacked == contents.keySet().sort().collect { new File( destination, it ) }
+            contents.each { String path, byte[] content -> assert Arrays.equals( new File( destination, path ).bytes, content ), "[$path] - level $level" }
+            assert new File( destination, 'dir/sub' ).directory
+        }
+    }
+
+
+    @Test
+    void shouldUnpackArchiveWithDataDescriptors ()
+    {
+        final directory   = directory()
+        final contents    = [ 'dir/'          : new byte[ 0 ],
+                              'dir/a.txt'     : content( 5000 ),
+                              'b.txt'         : 'bbbb'.getBytes( 'UTF-8' ),
+                              'dir/large.txt' : content( ZipPacker.BLOCK_SIZE + 1, 3 ) ]
+        final archive     = zipOutputStream( new File( directory, 'a.zip' ), contents )
+        final destination = new File( directory, 'unpacked' )
+        final unpacked    = new ZipUnpacker( 4 ).unpack( archive, destination )
+
+        assert unpacked == [ 'dir/a.txt', 'b.txt', 'dir/large.txt' ].collect { new File( destination, it ) }
+        unpacked.each { File file -> assert Arrays.equals( file.bytes, contents[ file.path.substring( destination.path.length() + 1 ).replace( '\\', '/' ) ] ) }
+    }
+
+
+    @Test
+    void shouldUnpackLastEntryWithoutPath ()
+    {
+        final directory   = directory()
+        final archive     = zipOutputStream( new File( directory, 'a.zip' ), [ 'a/x.txt' : 'a'.getBytes( 'UTF-8' ),
+                                                                              'b/x.txt' : 'b'.getBytes( 'UTF-8' ),
+                                                                              'c/y.txt' : 'c'.getBytes( 'UTF-8' ),
+                                                                              'd/x.txt' : 'd'.getBytes( 'UTF-8' ) ])
+        final destination = new File( directory, 'unpacked' )
+        final unpacked    = new ZipUnpacker( 4 ).unpack( archive, destination, [], [], false )
+
+        assert unpacked == [ new File( destination, 'y.txt' ), new File( destination, 'x.txt' ) ]
+        assert new File( destination, 'x.txt' ).text == 'd'
+        assert new File( destination, 'y.txt' ).text == 'c'
+        assert destination.list().sort() == [ 'x.txt', 'y.txt' ]
+    }
+
+
+    @Test
+    void shouldMatchAllIncludePatterns ()
+    {
+        final directory   = directory()
+        final archive     = zipOutputStream( new File( directory, 'a.zip' ), [ 'conf/app.properties' : 'a'.getBytes( 'UTF-8' ),
+                                                                              'conf/log.xml'        : 'b'.getBytes( 'UTF-8' ),
+                                                                              'lib/a.jar'           : 'c'.getBytes( 'UTF-8' ) ])
+        final destination = new File( directory, 'unpacked' )
+        final unpacked    = new ZipUnpacker( 1 ).unpack( archive, destination, [ 'conf/**', '**/*.properties' ], [ '**/*.xml' ] )
+
+        assert unpacked == [ new File( destination, 'conf/app.properties' ) ]
+
+        try
+        {
+            new ZipUnpacker( 1 ).unpack( archive, destination, [ 'conf/**', 'missing/**' ] )
+            assert false, 'Unpacking should fail'
+        }
+        catch ( AssertionError e )
+        {
+            assert e.message.contains( 'missing/**' ) && ( ! e.message.contains( 'conf/**' ))
+        }
+    }
+
+
+    @Test
+    void shouldDecodeNamesNotMarkedAsUtf8WithCp437 ()
+    {
+        final directory = directory()
+        final utf8      = zipOutputStream( new File( directory, 'utf8.zip'  ), [ 'd\u00e9j\u00e0/\u00fc.txt' : 'a'.getBytes( 'UTF-8' ) ])
+        final cp437     = zipOutputStream( new File( directory, 'cp437.zip' ), [ 'd\u00e9j\u00e0/\u00fc.txt' : 'a'.getBytes( 'UTF-8' ) ], 'IBM437' )
+
+        assert ZipUnpacker.entries( utf8  )*.name == [ 'd\u00e9j\u00e0/\u00fc.txt' ]
+        assert ZipUnpacker.entries( cp437 )*.name == [ 'd\u00e9j\u00e0/\u00fc.txt' ]
+
+        final destination = new File( directory, 'unpacked' )
+        assert new ZipUnpacker( 1 ).unpack( cp437, destination ) == [ new File( destination, 'd\u00e9j\u00e0/\u00fc.txt' ) ]
+    }
+
+
+    @Test
+    void shouldNotUnpackOutsideOfDestination ()
+    {
+        final directory = directory()
+        final archive   = zipOutputStream( new File( directory, 'a.zip' ), [ '../evil.txt' : 'evil'.getBytes( 'UTF-8' ) ])
+
+        try
+        {
+            new ZipUnpacker( 1 ).unpack( archive, new File( directory, 'unpacked' ))
+            assert false, 'Unpacking should fail'
+        }
+        catch ( AssertionError e )
+        {
+            assert e.message.contains( 'is outside of' )
+        }
+
+        assert ! new File( directory, 'evil.txt' ).exists()
+    }
+}
@@ -0,0 +1,110 @@
+package com.github.goldin.plugins.common
+
+import org.gcontracts.annotations.Requires
+
+
+/**
+ * Aho-Corasick automaton finding occurrences of several literal patterns in a single pass.
+ *
+ * Patterns should not overlap: none of them may contain another one or end with a beginning of another one.
+ * With this restriction occurrences found are the leftmost non-overlapping occurrences of each pattern,
+ * same as {@link java.util.regex.Matcher#find()} would find for each of them separately.
+ */
+final class AhoCorasick
+{
+    private final List<String>                 patterns
+
+    /**
+     * Automaton states: transitions, failure links and index of the pattern ending in the state (-1 if none).
+     */
+    private final List<Map<Character, Integer>> transitions = [ new HashMap<Character, Integer>() ]
+    private final List<Integer>                 failures    = [ 0 ]
+    private final List<Integer>                 outputs     = [ -1 ]
+
+
+    @Requires({ patterns && patterns.every() })
+    AhoCorasick ( List<String> patterns )
+    {
+        this.patterns = patterns.asImmutable()
+
+        patterns.eachWithIndex {
+            String pattern, int index ->
+            int state = 0
+            for ( char c in pattern.toCharArray())
+            {
+                Integer next = transitions[ state ][ c ]
+                if ( next == null )
+                {
+                    next = transitions.size()
+                    transitions << new HashMap<Character, Integer>()
+                    failures    << 0
+                    outputs     << -1
+                    transitions[ state ][ c ] = next
+                }
+                state = next
+            }
+            outputs[ state ] = index
+        }
+
+        /**
+         * Breadth-first calculation of failure links
+         */
+        final LinkedList<Integer> queue = new LinkedList<Integer>( transitions[ 0 ].values())
+
+        while ( queue )
+        {
+            final int state = queue.removeFirst()
+
+            transitions[ state ].each {
+                Character c, Integer next ->
+                int failure = failures[ state ]
+                while (( failure > 0 ) && ( transitions[ failure ][ c ] == null )) { failure = failures[ failure ] }
+                final Integer failureNext = transitions[ failure ][ c ]
+                failures[ next ] = (( failureNext != null ) && ( failureNext != next )) ? failureNext : 0
+                queue << next
+            }
+        }
+    }
+
+
+    /**
+     * Finds occurrences of the patterns in the data specified.
+     *
+     * @param data     data to search
+     * @param callback callback invoked for each occurrence with start index, end index (exclusive) and index of the pattern found
+     */
+    @Requires({ ( data != null ) && callback })
+    void find ( String data, Closure callback )
+    {
+        int state = 0
+
+        for ( int j = 0; j < data.length(); j++ )
+        {
+            final char c = data.charAt( j )
+
+            while (( state > 0 ) && ( transitions[ state ][ c ] == null )) { state = failures[ state ] }
+            state = transitions[ state ][ c ] ?: 0
+
+            final int index = outputs[ state ]
+            if ( index > -1 )
+            {
+                callback( j + 1 - patterns[ index ].length(), j + 1, index )
+                state = 0
+            }
+        }
+    }
+
+
+    /**
+     * Determines if two patterns overlap: one of them contains the other or ends with the beginning of the other.
+     */
+    @Requires({ pattern1 && pattern2 })
+    static boolean overlap ( String pattern1, String pattern2 )
+    {
+        if ( pattern1.contains( pattern2 ) || pattern2.contains( pattern1 )) { return true }
+
+        ( 1 ..< Math.min( pattern1.length(), pattern2.length())).any {
+            int length -> pattern1.endsWith( pattern2.substring( 0, length )) || pattern2.endsWith( pattern1.substring( 0, length ))
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.github.goldin.plugins.common
+
+import static com.github.goldin.plugins.common.GMojoUtils.*
+import com.google.common.hash.Hashing
+import com.google.common.io.Files
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.concurrent.ConcurrentHashMap
+
+
+/**
+ * Cache of file checksums shared by all plugins executed in the same build.
+ *
+ * Checksums are kept for a file as long as its size, last modified time and file key (inode) stay the same.
+ * Files modified less than {@link #RACY_PERIOD} ago are not cached as they may still change
+ * without last modified time being updated.
+ */
+final class ChecksumCache
+{
+    /**
+     * Fast non-cryptographic hash used when files are compared for equality.
+     */
+    static final String FAST_ALGORITHM  = 'murmur3_128'
+
+    /**
+     * CRC-32 checksum, as stored in Zip archives.
+     */
+    static final String CRC32_ALGORITHM = 'crc32'
+
+    static final long   RACY_PERIOD     = 2000
+
+    /**
+     * "algorithm|canonical path" => "size|last modified|file key|checksum"
+     */
+    private static final Map<String, String> CACHE = new ConcurrentHashMap<String, String>()
+
+
+    private ChecksumCache (){}
+
+
+    /**
+     * Calculates checksum of the file specified or retrieves it from the cache.
+     *
+     * @param file      file to calculate checksum of
+     * @param algorithm {@link #FAST_ALGORITHM}, {@link #CRC32_ALGORITHM} or name of the {@link java.security.MessageDigest} algorithm
+     * @return file checksum as a lowercase hexadecimal string
+     */
+    @Requires({ file.file && algorithm })
+    @Ensures({ result })
+    static String checksum ( File file, String algorithm = FAST_ALGORITHM )
+    {
+        final key        = "$algorithm|$file.canonicalPath".toString()
+        final attributes = java.nio.file.Files.readAttributes( file.toPath(), BasicFileAttributes )
+        final stamp      = "${ attributes.size() }|${ attributes.lastModifiedTime().toMillis() }|${ attributes.fileKey() }"
+        final cached     = CACHE[ key ]
+
+        if ( cached && ( cached.substring( 0, cached.lastIndexOf( '|' )) == stamp ))
+        {
+            return cached.substring( cached.lastIndexOf( '|' ) + 1 )
+        }
+
+        final checksum = ( algorithm == FAST_ALGORITHM  ) ? Files.hash( file, Hashing.murmur3_128()).toString() :
+                         ( algorithm == CRC32_ALGORITHM ) ? Long.toHexString( Files.hash( file, Hashing.crc32()).asInt() & 0xFFFFFFFFL ) :
+                                                            fileBean().checksum( file, algorithm ).toLowerCase()
+
+        if (( System.currentTimeMillis() - attributes.lastModifiedTime().toMillis()) >= RACY_PERIOD )
+        {
+            CACHE[ key ] = "$stamp|$checksum".toString()
+        }
+
+        checksum
+    }
+
+
+    /**
+     * Determines if files specified have identical content, comparing their sizes and checksums.
+     *
+     * @param file1 first file to compare
+     * @param file2 second file to compare
+     * @return true if files have identical content, false otherwise
+     */
+    @Requires({ file1.file && file2.file })
+    static boolean identical ( File file1, File file2 )
+    {
+        ( file1.length() == file2.length()) && ( checksum( file1 ) == checksum( file2 ))
+    }
+
+
+    /**
+     * Adds checksums persisted with {@link #save(File)} to the cache.
+     * Checksums of files that have changed since then are ignored when retrieved.
+     *
+     * @param cacheFile file to load checksums from, ignored if it doesn't exist
+     */
+    @Requires({ cacheFile })
+    static void load ( File cacheFile )
+    {
+        if ( ! cacheFile.file ) { return }
+
+        final properties = new Properties()
+        cacheFile.withInputStream { properties.load( it ) }
+        for ( String key in properties.stringPropertyNames()){ CACHE.putIfAbsent( key, properties.getProperty( key )) }
+    }
+
+
+    /**
+     * Persists checksums cached so that they can be loaded by the following builds.
+     * Checksums of files that no longer exist are removed so that the cache file doesn't grow forever.
+     *
+     * @param cacheFile file to save checksums to
+     */
+    @Requires({ cacheFile })
+    static void save ( File cacheFile )
+    {
+        CACHE.keySet().removeAll( CACHE.keySet().findAll { String key -> ! new File( key.substring( key.indexOf( '|' ) + 1 )).file })
+
+        final properties = new Properties()
+        properties.putAll( CACHE )
+
+        final tempFile = new File( fileBean().mkdirs( cacheFile.canonicalFile.parentFile ), cacheFile.name + '.tmp' )
+        tempFile.withOutputStream { properties.store( it, 'File checksums' ) }
+        fileBean().delete( cacheFile )
+        assert tempFile.renameTo( cacheFile ), "Failed to rename [$tempFile] to [$cacheFile]"
+    }
+
+
+    /**
+     * Removes all checksums cached.
+     */
+    static void clear () { CACHE.clear() }
+}
@@ -0,0 +1,156 @@
+package com.github.goldin.plugins.common
+
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.nio.file.Files
+import java.nio.file.attribute.PosixFilePermission
+
+
+/**
+ * "chmod" applied in-process through "unix:mode" file attribute, without forking a shell command.
+ *
+ * Modes can be octal ("755", "04755") or symbolic ("u+x", "go-w,a+r", "u=rwX,go=rX", "g+s", "+t").
+ * Symbolic modes with no "who" ("+x") apply to all, umask is not considered.
+ *
+ * Like GNU "chmod" does, setuid and setgid bits of directories are kept unless set or cleared explicitly
+ * with "s" or a four-digit octal mode, octal modes of less than four digits clear special bits of files.
+ */
+final class Chmod
+{
+    /**
+     * Permissions in the order of mode bits, from 0400 down to 0001
+     */
+    private static final List<PosixFilePermission> PERMISSIONS = [
+        PosixFilePermission.OWNER_READ,  PosixFilePermission.OWNER_WRITE,  PosixFilePermission.OWNER_EXECUTE,
+        PosixFilePermission.GROUP_READ,  PosixFilePermission.GROUP_WRITE,  PosixFilePermission.GROUP_EXECUTE,
+        PosixFilePermission.OTHERS_READ, PosixFilePermission.OTHERS_WRITE, PosixFilePermission.OTHERS_EXECUTE ].asImmutable()
+
+    private final String  mode
+    private final Integer octal        // Octal mode, null for symbolic one
+    private final boolean octalSpecial // Whether octal mode specifies setuid, setgid and sticky bits
+
+    /**
+     * Symbolic mode clauses: [ "who" mask, operator, permissions, "who" special bits mask ]
+     * for each operator of each comma-separated clause
+     */
+    private final List<List<Object>> clauses = []
+
+
+    /**
+     * Creates new chmod for the mode specified.
+     *
+     * @param mode octal or symbolic mode, as accepted by "chmod"
+     */
+    @Requires({ mode })
+    Chmod ( String mode )
+    {
+        this.mode = mode.trim()
+
+        if ( this.mode ==~ /[0-7]{1,4}/ )
+        {
+            this.octal        = Integer.parseInt( this.mode, 8 )
+            this.octalSpecial = ( this.mode.size() == 4 )
+            return
+        }
+
+        for ( clause in this.mode.split( ',' ))
+        {
+            final matcher = ( clause =~ /^([ugoa]*)((?:[-+=][rwxXst]*)+)$/ )
+            assert matcher.matches(), "Unsupported chmod mode [$mode] - clause [$clause] is neither octal nor symbolic"
+
+            final String  who        = matcher.group( 1 )
+            final boolean all        = (( ! who ) || who.contains( 'a' ))
+            final int     whoMask    = all ? 0777 :
+                                       ( who.contains( 'u' ) ? 0700 : 0 ) | ( who.contains( 'g' ) ? 0070 : 0 ) | ( who.contains( 'o' ) ? 0007 : 0 )
+            final int     whoSpecial = all ? 07000 :
+                                       ( who.contains( 'u' ) ? 04000 : 0 ) | ( who.contains( 'g' ) ? 02000 : 0 ) | ( who.contains( 'o' ) ? 01000 : 0 )
+
+            ( matcher.group( 2 ) =~ /([-+=])([rwxXst]*)/ ).each {
+                List<String> group ->
+                clauses << [ whoMask, group[ 1 ], group[ 2 ], whoSpecial ]
+            }
+        }
+    }
+
+
+    /**
+     * Calculates new mode of the file.
+     *
+     * @param current   current mode of the file: permission, setuid, setgid and sticky bits
+     * @param directory whether the file is a directory, "X" adds execute permission to directories
+     *                  and their setuid and setgid bits are kept unless specified
+     * @return new mode of the file: permission, setuid, setgid and sticky bits
+     */
+    int mode ( int current, boolean directory )
+    {
+        final int keptSpecial = directory ? 06000 : 0
+
+        if ( octal != null ) { return octalSpecial ? octal : ( octal | ( current & keptSpecial )) }
+
+        int result = current & 07777
+
+        for ( clause in clauses )
+        {
+            final int     whoMask     = ( int ) clause[ 0 ]
+            final String  operator    = clause[ 1 ]
+            final String  permissions = clause[ 2 ]
+            final int     whoSpecial  = ( int ) clause[ 3 ]
+            final boolean execute     = permissions.contains( 'x' ) || ( permissions.contains( 'X' ) && ( directory || (( result & 0111 ) != 0 )))
+            final int     bits        = ( whoMask    & (( permissions.contains( 'r' ) ? 0444  : 0 ) |
+                                                        ( permissions.contains( 'w' ) ? 0222  : 0 ) |
+                                                        ( execute                     ? 0111  : 0 ))) |
+                                        ( whoSpecial & (( permissions.contains( 's' ) ? 06000 : 0 ) |
+                                                        ( permissions.contains( 't' ) ? 01000 : 0 )))
+            final int     cleared     = whoMask | ( whoSpecial & ~( permissions.contains( 's' ) ? 0 : keptSpecial ))
+
+            result = ( operator == '+' ) ? ( result | bits )  :
+                     ( operator == '-' ) ? ( result & ~bits ) :
+                                           (( result & ~cleared ) | bits )
+        }
+
+        result
+    }
+
+
+    /**
+     * Applies the mode to the file specified.
+     *
+     * @param file file or directory to apply the mode to, symbolic links are followed
+     * @return file specified
+     */
+    @Requires({ file.exists() })
+    @Ensures ({ result == file })
+    File apply ( File file )
+    {
+        final path = file.toPath()
+        assert path.fileSystem.supportedFileAttributeViews().contains( 'unix' ), \
+               "Failed to apply chmod [$mode] to [$file] - POSIX file permissions are not supported"
+
+        final current = (( int ) Files.getAttribute( path, 'unix:mode' )) & 07777
+        final updated = mode( current, file.directory )
+        if ( updated != current ) { Files.setAttribute( path, 'unix:mode', updated ) }
+        file
+    }
+
+
+    @Ensures ({ result >= 0 })
+    static int bits ( Set<PosixFilePermission> permissions )
+    {
+        int bits = 0
+        PERMISSIONS.eachWithIndex { PosixFilePermission p, int j -> if ( permissions.contains( p )) { bits |= ( 0400 >> j ) } }
+        bits
+    }
+
+
+    @Ensures ({ result != null })
+    static Set<PosixFilePermission> permissions ( int bits )
+    {
+        final Set<PosixFilePermission> permissions = EnumSet.noneOf( PosixFilePermission )
+        PERMISSIONS.eachWithIndex { PosixFilePermission p, int j -> if (( bits & ( 0400 >> j )) != 0 ) { permissions << p } }
+        permissions
+    }
+
+
+    @Override
+    String toString () { mode }
+}
@@ -0,0 +1,301 @@
+package com.github.goldin.plugins.common
+
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.nio.file.Files
+import java.nio.file.attribute.BasicFileAttributes
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.RecursiveAction
+import java.util.concurrent.atomic.AtomicLong
+import java.util.regex.Pattern
+
+
+/**
+ * Retrieves files matched by Ant-style include and exclude patterns, like {@code fileBean().files()} does.
+ *
+ * Patterns are compiled once, subdirectories no include pattern can match under and subdirectories
+ * excluded as a whole ("dir/**") are not walked. Subdirectories are walked by a fork/join pool,
+ * so wide trees are spread over several threads. Symbolic links are followed, links to their own parent directories are not.
+ */
+final class FileScanner
+{
+    private final File       directory
+    private final List<Glob> includes
+    private final List<Glob> excludes
+    private final int        threads
+
+
+    /**
+     * Ant-style pattern compiled: "/"-separated segments, each one is a literal name, a {@link Pattern} or "**".
+     */
+    static final class Glob
+    {
+        private static final String DEEP = '**'
+
+        private final String   pattern
+        private final Object[] segments
+        private final boolean  caseSensitive
+        private final boolean  absolute      // Absolute patterns never match relative paths
+        private final boolean  deepEnding    // Whether pattern ends with "**" and matches everything under directories it matches
+
+
+        @Requires({ pattern != null })
+        Glob ( String pattern, boolean caseSensitive = true )
+        {
+            String p = pattern.trim().replace( '\\', '/' )
+            if ( p.endsWith( '/' )) { p += DEEP }
+
+            this.pattern       = pattern
+            this.caseSensitive = caseSensitive
+            this.absolute      = p.startsWith( '/' )
+            this.segments      = p.tokenize( '/' ).collect { String s -> segment( s ) } as Object[]
+            this.deepEnding    = ( segments.length > 0 ) && segments[ -1 ].is( DEEP )
+        }
+
+
+        private Object segment ( String s )
+        {
+            if ( s == DEEP ) { return DEEP }
+            if ( ! ( s.contains( '*' ) || s.contains( '?' ))) { return s }
+
+            final regex = s.split( /(?=[*?])|(?<=[*?])/ ).collect {
+                String token -> ( token == '*' ) ? '.*' : ( token == '?' ) ? '.' : ( token ? Pattern.quote( token ) : '' )
+            }.join( '' )
+
+            Pattern.compile( regex, caseSensitive ? 0 : ( Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE ))
+        }
+
+
+        private boolean matchesSegment ( Object segment, String name )
+        {
+            ( segment instanceof Pattern ) ? (( Pattern ) segment ).matcher( name ).matches() :
+            caseSensitive                  ? segment == name :
+                                             (( String ) segment ).equalsIgnoreCase( name )
+        }
+
+
+        /**
+         * Determines if path specified is matched by this pattern.
+         *
+         * @param path path segments, relative to the directory scanned
+         */
+        boolean matches ( String[] path )
+        {
+            ( ! absolute ) && match( 0, path, 0 )
+        }
+
+
+        private boolean match ( int p, String[] path, int s )
+        {
+            while (( p < segments.length ) && ( ! segments[ p ].is( DEEP )))
+            {
+                if (( s == path.length ) || ( ! matchesSegment( segments[ p ], path[ s ] ))) { return false }
+                p++; s++
+            }
+
+            if ( p == segments.length ) { return ( s == path.length ) }
+
+            while (( p < segments.length ) && segments[ p ].is( DEEP )) { p++ }
+            if ( p == segments.length ) { return true }
+
+            for ( int k = s; k < path.length; k++ )
+            {
+                if ( match( p, path, k )) { return true }
+            }
+
+            false
+        }
+
+
+        /**
+         * Determines if this pattern may match paths under the directory specified.
+         *
+         * @param directory directory path segments, relative to the directory scanned
+         */
+        boolean matchesUnder ( String[] directory )
+        {
+            if ( absolute ) { return false }
+
+            for ( int s = 0; s < directory.length; s++ )
+            {
+                if ( s == segments.length )    { return false }
+                if ( segments[ s ].is( DEEP )) { return true  }
+                if ( ! matchesSegment( segments[ s ], directory[ s ] )) { return false }
+            }
+
+            ( directory.length < segments.length )
+        }
+
+
+        /**
+         * Determines if this pattern matches all paths under the directory specified.
+         *
+         * @param directory directory path segments, relative to the directory scanned
+         */
+        boolean matchesAllUnder ( String[] directory )
+        {
+            deepEnding && matches( directory )
+        }
+
+
+        @Override
+        String toString (){ pattern }
+    }
+
+
+    /**
+     * Creates new scanner.
+     *
+     * @param directory     directory to scan
+     * @param includes      patterns of files to include, all files are included if {@code null} or empty
+     * @param excludes      patterns of files to exclude, may be {@code null}
+     * @param caseSensitive whether patterns are matched case-sensitively
+     * @param threads       number of threads walking the directory
+     */
+    @Requires({ directory && ( threads > 0 ) })
+    FileScanner ( File         directory,
+                  List<String> includes,
+                  List<String> excludes,
+                  boolean      caseSensitive = true,
+                  int          threads       = Runtime.runtime.availableProcessors())
+    {
+        this.directory = directory
+        this.includes  = ( includes ?: [ '**' ] ).collect { new Glob( it, caseSensitive ) }
+        this.excludes  = ( excludes ?: []       ).collect { new Glob( it, caseSensitive ) }
+        this.threads   = threads
+    }
+
+
+    /**
+     * Retrieves files matched by include and exclude patterns.
+     *
+     * @param failIfNotFound whether execution should fail if directory doesn't exist or no files were matched
+     * @return files matched, sorted
+     */
+    @Ensures ({ result != null })
+    List<File> files ( boolean failIfNotFound = true )
+    {
+        final Queue<File> files = new ConcurrentLinkedQueue<File>()
+        scan( failIfNotFound ){ File f -> files << f }
+        ( files as List<File> ).sort()
+    }
+
+
+    /**
+     * Passes files matched by include and exclude patterns to the consumer as they are found, without collecting them.
+     * Consumer is called concurrently by threads walking the directory, it may block to slow the scan down.
+     *
+     * @param failIfNotFound whether execution should fail if directory doesn't exist or no files were matched
+     * @param consumer       consumer to pass each file matched to
+     * @return number of files matched
+     */
+    @Requires({ consumer })
+    long scan ( boolean failIfNotFound = true, Closure consumer )
+    {
+        if ( ! directory.directory )
+        {
+            assert ( ! failIfNotFound ), "Directory [$directory.canonicalPath] doesn't exist"
+            return 0
+        }
+
+        final pool    = new ForkJoinPool( threads )
+        final matched = new AtomicLong( 0 )
+
+        try
+        {
+            pool.invoke( new DirectoryTask( directory, new String[ 0 ], { File f -> matched.incrementAndGet(); consumer( f ) }))
+        }
+        finally
+        {
+            pool.shutdown()
+        }
+
+        assert ( matched.get() || ( ! failIfNotFound )), \
+               "No files are included by $includes and excluded by ${ excludes ?: '[]' } in [$directory.canonicalPath]"
+        matched.get()
+    }
+
+
+    /**
+     * Determines if directory specified should be walked: some include pattern may match files under it
+     * and no exclude pattern matches all of them.
+     */
+    private boolean walk ( String[] path )
+    {
+        for ( exclude in excludes ) { if ( exclude.matchesAllUnder( path )) { return false }}
+        for ( include in includes ) { if ( include.matchesUnder( path ))    { return true  }}
+        false
+    }
+
+
+    /**
+     * Determines if file specified is matched by include and exclude patterns.
+     */
+    private boolean matches ( String[] path )
+    {
+        for ( exclude in excludes ) { if ( exclude.matches( path )) { return false }}
+        for ( include in includes ) { if ( include.matches( path )) { return true  }}
+        false
+    }
+
+
+    /**
+     * Passes files matched in the directory to the consumer and walks its subdirectories in parallel.
+     */
+    private class DirectoryTask extends RecursiveAction
+    {
+        private final File     directory
+        private final String[] path     // Directory path segments, relative to the directory scanned
+        private final Closure  consumer
+
+        DirectoryTask ( File directory, String[] path, Closure consumer )
+        {
+            this.directory = directory
+            this.path      = path
+            this.consumer  = consumer
+        }
+
+        @Override
+        protected void compute ()
+        {
+            final List<DirectoryTask> subdirectories = []
+            final String[]            filePath       = Arrays.copyOf( path, path.length + 1 )
+
+            for ( file in ( directory.listFiles() ?: new File[ 0 ] ))
+            {
+                BasicFileAttributes attributes
+                try                         { attributes = Files.readAttributes( file.toPath(), BasicFileAttributes ) }
+                catch ( IOException ignored ){ continue } // Broken symbolic link
+
+                filePath[ path.length ] = file.name
+
+                if ( attributes.directory )
+                {
+                    final String[] subdirectoryPath = filePath.clone()
+                    if ( walk( subdirectoryPath ) && ( ! loop( file )))
+                    {
+                        subdirectories << new DirectoryTask( file, subdirectoryPath, consumer )
+                    }
+                }
+                else if ( attributes.regularFile && matches( filePath ))
+                {
+                    consumer( file )
+                }
+            }
+
+            if ( subdirectories.size() == 1 ) { subdirectories.first().compute() }
+            else if ( subdirectories )        { invokeAll( subdirectories ) }
+        }
+
+        /**
+         * Determines if subdirectory specified is a symbolic link to this directory or its parents.
+         */
+        private boolean loop ( File subdirectory )
+        {
+            if ( ! Files.isSymbolicLink( subdirectory.toPath())) { return false }
+            final target = subdirectory.canonicalPath + File.separator
+            ( directory.canonicalPath + File.separator ).startsWith( target )
+        }
+    }
+}
@@ -17,6 +17,12 @@ import org.codehaus.plexus.logging.Logger
 import org.codehaus.plexus.logging.console.ConsoleLogger
 import org.gcontracts.annotations.Ensures
 import org.gcontracts.annotations.Requires
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 
 
 /**
@@ -207,21 +213,32 @@ final class GMojoUtils
                         GroovyConfig config     = new GroovyConfig(),
                         Object ...   bindingObjects )
     {
-        MavenProject project    = ThreadLocals.get( MavenProject )
-        MavenSession session    = ThreadLocals.get( MavenSession )
-        Map          bindingMap = [ project      : project,
-                                    session      : session,
-                                    mavenVersion : mavenVersion(),
-                                    startTime    : session.startTime,
-                                    ant          : new AntBuilder(),
-                                    *:( project.properties + session.userProperties + session.systemProperties )]
         groovyBean().eval( expression,
                            resultType,
-                           groovyBean().binding( bindingMap, bindingObjects ),
+                           groovyBean().binding( evalVariables(), bindingObjects ),
                            config )
     }
 
 
+    /**
+     * Retrieves variables available to Groovy expressions evaluated with {@link #eval}:
+     * "project", "session", "mavenVersion", "startTime", "ant" and all project, user and system properties.
+     *
+     * @return variables available to Groovy expressions
+     */
+    static Map<String, Object> evalVariables ()
+    {
+        MavenProject project = ThreadLocals.get( MavenProject )
+        MavenSession session = ThreadLocals.get( MavenSession )
+        [ project      : project,
+          session      : session,
+          mavenVersion : mavenVersion(),
+          startTime    : session.startTime,
+          ant          : new AntBuilder(),
+          *:( project.properties + session.userProperties + session.systemProperties )]
+    }
+
+
     /**
      * Converts an ['a', 'b', 'c'] collection to:
      *  * [a]
@@ -377,6 +394,76 @@ final class GMojoUtils
     }
 
 
+    /**
+     * Collects results of the action specified applied to each element of the collection, using a bounded pool of threads.
+     * {@link ThreadLocals} of the calling thread are available to the action.
+     * Once the action fails for any element, elements not started yet are skipped,
+     * elements being processed are waited for and the first failure (in collection's order) is re-thrown.
+     *
+     * @param threads maximal number of elements to process concurrently
+     * @param c       collection to iterate over, elements are started in its iteration order
+     * @param action  action to perform on each element
+     * @return        results of the action, in collection's iteration order
+     */
+    @Requires({ ( threads > 0 ) && ( c != null ) && action })
+    @Ensures ({ result.size() == c.size() })
+    static <T> List<T> collectParallel ( int threads, Collection<?> c, Closure<T> action )
+    {
+        if (( threads < 2 ) || ( c.size() < 2 )) { return c.collect( action ) }
+
+        final locals   = ThreadLocals.snapshot()
+        final failed   = new AtomicBoolean( false )
+        final executor = Executors.newFixedThreadPool( Math.min( threads, c.size()))
+
+        try
+        {
+            final List<Future<T>> futures = c.collect {
+                Object element ->
+                executor.submit({
+                    if ( failed.get()) { return null } // Another element has failed already
+                    ThreadLocals.restore( locals )
+                    try     { action( element ) }
+                    catch ( Throwable e ) { failed.set( true ); throw e }
+                } as Callable<T> )
+            }
+
+            futures.collect {
+                Future<T> future ->
+                try     { future.get() }
+                catch ( ExecutionException e ) { throw e.cause }
+            }
+        }
+        finally
+        {
+            executor.shutdown()
+            executor.awaitTermination( Long.MAX_VALUE, TimeUnit.MILLISECONDS )
+        }
+    }
+
+
+    /**
+     * Retrieves files matched by include and exclude patterns with {@link FileScanner}, returning the same files
+     * {@code fileBean().files()} does but compiling the patterns once and not walking directories they can't match.
+     *
+     * @param directory      directory to scan
+     * @param includes       patterns of files to include, all files are included if {@code null} or empty
+     * @param excludes       patterns of files to exclude, may be {@code null}
+     * @param caseSensitive  whether patterns are matched case-sensitively
+     * @param failIfNotFound whether execution should fail if directory doesn't exist or no files were matched
+     * @return files matched, sorted
+     */
+    @Requires({ directory })
+    @Ensures ({ result != null })
+    static List<File> scanFiles ( File         directory,
+                                  List<String> includes       = null,
+                                  List<String> excludes       = null,
+                                  boolean      caseSensitive  = true,
+                                  boolean      failIfNotFound = true )
+    {
+        new FileScanner( directory, includes, excludes, caseSensitive ).files( failIfNotFound )
+    }
+
+
     /**
      * Reads lines of the {@code String} specified, trimming and grepping them.
      * @param s String to read its lines
@@ -93,10 +93,11 @@ class NetworkUtils
      * @param failIfNotFound whether execution should fail if not files were found
      * @param skipIdentical  whether identical files shouldn't be uploaded (scp only!)
      * @param failIfNotFound whether identical files should be identified using checksum (scp only!)
+     * @return number of bytes uploaded
      */
     @SuppressWarnings([ 'GroovyMethodParameterCount' ])
     @Requires({ remotePaths && directory })
-    static void upload ( String[]     remotePaths,
+    static long upload ( String[]     remotePaths,
                          File         directory,
                          List<String> includes,
                          List<String> excludes,
@@ -110,7 +111,8 @@ class NetworkUtils
         verifyBean().notNullOrEmpty( remotePaths )
         verifyBean().directory( directory )
 
-        final files = fileBean().files( directory, includes, excludes, true, false, failIfNotFound )
+        final files    = scanFiles( directory, includes, excludes, true, failIfNotFound )
+        long  uploaded = 0
 
         for ( remotePath in remotePaths )
         {
@@ -150,8 +152,12 @@ class NetworkUtils
                 {
                     throw new MojoExecutionException( "Unsupported remote path [$remotePath]" )
                 }
+
+                uploaded += file.length()
             }
         }
+
+        uploaded
     }
 
 
@@ -168,7 +174,7 @@ class NetworkUtils
         assert sshExecLines.size() == ( useChecksum ? 2 : 1 )
 
         final identicalFiles =  (( file.size() as String ) == sshExecLines[ 0 ].tokenize().head()) &&
-                                ( useChecksum ? fileBean().checksum( file, 'SHA-1' ) == sshExecLines[ 1 ].tokenize().head() :
+                                ( useChecksum ? ChecksumCache.checksum( file, 'SHA-1' ) == sshExecLines[ 1 ].tokenize().head() :
                                                 true )
         identicalFiles
     }
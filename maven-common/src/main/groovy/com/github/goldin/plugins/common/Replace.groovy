@@ -1,6 +1,9 @@
 package com.github.goldin.plugins.common
 
 import static com.github.goldin.plugins.common.GMojoUtils.*
+import org.gcontracts.annotations.Ensures
+import org.gcontracts.annotations.Requires
+import java.util.concurrent.ConcurrentHashMap
 import java.util.regex.Matcher
 import java.util.regex.Pattern
 
@@ -17,6 +20,17 @@ class Replace
      * @see #replaceAll
      */
     private static final Pattern GROOVY_EXPRESSION_PATTERN = ~/\{\{(.*?)\}\}/
+    private static final Pattern END_OF_LINE_PATTERN       = ~/\r?\n/
+
+    /**
+     * Regex pattern to match {@link #from} that has no special characters.
+     */
+    private static final Pattern LITERAL_PATTERN = ~/(?s)\\Q((?:(?!\\E).)*)\\E|[^\\^$.|?*+()\[\]{}]+/
+
+    /**
+     * Automatons matching groups of literal {@link #from} patterns, keyed by the patterns joined.
+     */
+    private static final Map<String, AhoCorasick> AUTOMATONS = new ConcurrentHashMap<String, AhoCorasick>()
 
     String  from                          // "From" Regexp pattern
     String  to                            // "To" value to replace the data matched with {@link #from}
@@ -27,6 +41,30 @@ class Replace
     boolean replaceAll       = true       // Whether {@link Matcher#replaceAll(String)} should be used or {@link Matcher#replaceFirst(String)}
     boolean failIfNotFound   = true       // Whether an exception should be thrown if pattern wasn't matched
     boolean groovy           = false      // Whether {{ .. }} expressions in replacement should be Groovy eval()-ed
+    boolean groovyConstant   = false      // Whether {{ .. }} expressions evaluate to the same value every time and can be evaluated once
+
+    /**
+     * {@link #from} compiled and {@link #groovyConstant} expressions evaluated.
+     * Fields are set when first used and may be read by several threads replacing files concurrently.
+     */
+    private volatile CompiledFrom     compiledFrom
+    private final Map<String, String> constants = Collections.synchronizedMap( new HashMap<String, String>())
+
+
+    /**
+     * {@link #from} compiled and the value it was compiled from, replaced as a whole when {@link #from} is modified.
+     */
+    private static final class CompiledFrom
+    {
+        final String  source
+        final Pattern pattern
+
+        CompiledFrom ( String source )
+        {
+            this.source  = source
+            this.pattern = Pattern.compile( source )
+        }
+    }
 
 
     /**
@@ -41,8 +79,212 @@ class Replace
      *         <code>pattern</code> is {@code Pattern.compile( getFrom())} and
      *         <code>replacement</code> is {@code quoteReplacement() ? Matcher.quoteReplacement( getTo()) : getTo()}
      */
-    @SuppressWarnings([ 'ConfusingTernary', 'TernaryCouldBeElvis', 'UnnecessarySemicolon' ])
     String replace( String data, File file = null )
+    {
+        String result = replacement( data )
+
+        if ( from )
+        {
+            String  replacement = ( quoteReplacement ? Matcher.quoteReplacement( result ) : result )
+            Matcher matcher     = fromPattern().matcher( data )
+
+            assert ( matcher.find() || ( ! failIfNotFound )) : \
+                   "Failed to match [$from] pattern in [${ file ?: data }]"
+
+            result = replaceAll ? matcher.replaceAll  ( replacement ) :
+                                  matcher.replaceFirst( replacement )
+        }
+
+        result = addDollar( result, addDollar )
+
+        ( endOfLine ) ? END_OF_LINE_PATTERN.matcher( result ).replaceAll((( 'windows' == endOfLine ) ? '\r\n' : '\n' )) :
+                        result
+    }
+
+
+    /**
+     * Retrieves {@link #from} compiled, it is only compiled once unless {@link #from} is modified.
+     */
+    private Pattern fromPattern ()
+    {
+        CompiledFrom compiled = compiledFrom
+
+        if (( compiled == null ) || ( compiled.source != from ))
+        {
+            compiled     = new CompiledFrom( from )
+            compiledFrom = compiled
+        }
+
+        compiled.pattern
+    }
+
+
+    /**
+     * Makes all replacements specified in the <code>String</code> specified, same as applying
+     * {@link #replace(String, File)} of each one of them in turn.
+     *
+     * Consecutive replacements of literal patterns with literal values are made in a single pass
+     * when the result is the same: patterns don't overlap and none of them can be matched in values of the previous ones.
+     *
+     * @param replaces replacements to make
+     * @param data     <code>String</code> to replace
+     * @param file     file the data was read from
+     * @return data replaced
+     */
+    @Requires({ ( replaces != null ) && ( data != null ) })
+    @Ensures({ result != null })
+    static String replace ( List<Replace> replaces, String data, File file = null )
+    {
+        String result = data
+
+        for ( List<Replace> group in literalGroups( replaces ))
+        {
+            result = ( group.size() == 1 ) ? group[ 0 ].replace( result, file ) : replaceLiterals( group, result, file )
+        }
+
+        result
+    }
+
+
+    /**
+     * Splits replacements specified into groups that can be made in a single pass, keeping their order.
+     *
+     * A replacement joins the group of the previous ones if its pattern doesn't overlap their patterns and values:
+     * when a value inserted contains the pattern, is contained in it or shares its beginning or end, the pattern may be
+     * matched across the value and the data around it. Previous replacements with empty values are never joined
+     * as removing the data matched may put together parts of the pattern.
+     *
+     * @param replaces replacements to split
+     * @return groups of replacements, groups of more than one element only contain literal replacements
+     */
+    private static List<List<Replace>> literalGroups ( List<Replace> replaces )
+    {
+        final List<List<Replace>> groups = []
+
+        for ( replace in replaces )
+        {
+            final List<Replace> group = groups ? groups[ -1 ] : null
+            final boolean       join  = group && replace.literalFrom() && group.every {
+                Replace previous ->
+                previous.literalFrom() && previous.literalTo() &&
+                ( ! AhoCorasick.overlap( previous.literalFrom(), replace.literalFrom())) &&
+                ( ! AhoCorasick.overlap( previous.literalTo(),   replace.literalFrom()))
+            }
+
+            if ( join ) { group << replace }
+            else        { groups << [ replace ] }
+        }
+
+        groups
+    }
+
+
+    /**
+     * Makes literal replacements specified in a single pass.
+     */
+    private static String replaceLiterals ( List<Replace> group, String data, File file )
+    {
+        final List<String>  patterns  = group*.literalFrom()
+        final List<String>  values    = group*.literalTo()
+        final String        key       = patterns.join( '\u0000' )
+        final AhoCorasick   automaton = AUTOMATONS[ key ] ?: new AhoCorasick( patterns ).with { AUTOMATONS[ key ] = delegate }
+        final int[]         matches   = new int[ group.size() ]
+        final StringBuilder result    = new StringBuilder( data.length())
+        int                 position  = 0
+
+        automaton.find( data ){
+            int start, int end, int index ->
+            if (( matches[ index ] == 0 ) || group[ index ].replaceAll )
+            {
+                result.append( data, position, start ).append( values[ index ])
+                position = end
+                matches[ index ]++
+            }
+        }
+
+        result.append( data, position, data.length())
+
+        group.eachWithIndex {
+            Replace replace, int index ->
+            assert ( matches[ index ] > 0 ) || ( ! replace.failIfNotFound ) : \
+                   "Failed to match [$replace.from] pattern in [${ file ?: data }]"
+        }
+
+        result.toString()
+    }
+
+
+    /**
+     * Retrieves {@link #from} as a literal <code>String</code> if it has no special characters
+     * and this replacement can be made without regular expressions.
+     *
+     * @return literal {@link #from} or <code>null</code> if it isn't literal
+     */
+    private String literalFrom ()
+    {
+        if ( ! ( from && ( 'false' == addDollar ) && ( ! endOfLine ) && ( ! groovy ) && ( literalTo() != null ))) { return null }
+
+        final matcher = LITERAL_PATTERN.matcher( from )
+        if ( ! matcher.matches()) { return null }
+
+        final String literal = ( matcher.group( 1 ) != null ) ? matcher.group( 1 ) : from
+        literal ?: null
+    }
+
+
+    /**
+     * Retrieves {@link #to} as a literal <code>String</code> if it has no references to groups matched.
+     *
+     * @return literal {@link #to} or <code>null</code> if it isn't literal
+     */
+    private String literalTo ()
+    {
+        final value = to ?: ''
+        ( quoteReplacement || ( ! ( value.contains( '$' ) || value.contains( '\\' )))) ? value : null
+    }
+
+
+    /**
+     * Determines if this replacement can be made with {@link #writer} without reading all data into memory:
+     * it should have {@link #from} pattern and no {@link #addDollar} conversion.
+     */
+    boolean streamable ()
+    {
+        from && ( 'false' == addDollar )
+    }
+
+
+    /**
+     * Creates a {@link Writer} making this replacement in the data written to it and passing the result to the writer specified.
+     * Data is matched over a sliding window and is not read into memory entirely.
+     *
+     * @param out    writer to pass the data replaced to, closed when writer returned is closed
+     * @param window maximal length of {@link #from} match, in characters
+     * @param file   file the data is read from
+     * @return writer making this replacement
+     */
+    @Requires({ out && ( window > 0 ) && streamable() })
+    @Ensures({ result })
+    Writer writer ( Writer out, int window, File file = null )
+    {
+        final String value     = replacement( null )
+        final Writer eolWriter = endOfLine ?
+            new ReplaceWriter( out, END_OF_LINE_PATTERN, (( 'windows' == endOfLine ) ? '\r\n' : '\n' ), true, false, window, file?.path ) :
+            out
+
+        new ReplaceWriter( eolWriter, fromPattern(), ( quoteReplacement ? Matcher.quoteReplacement( value ) : value ),
+                           replaceAll, failIfNotFound, window, file?.path )
+    }
+
+
+    /**
+     * Calculates replacement to use for the data specified, evaluating {{ .. }} Groovy expressions if required.
+     *
+     * @param data data to replace
+     * @return replacement to use for the data specified
+     */
+    @SuppressWarnings([ 'ConfusingTernary', 'TernaryCouldBeElvis', 'UnnecessarySemicolon' ])
+    private String replacement( String data )
     {
         //noinspection GroovyConditionalCanBeElvis
         String result = ( to                     ? to   :  // If we have <to>, then replacement starts with it
@@ -51,33 +293,41 @@ class Replace
         if ( groovy )
         {
             /**
-             * Finding each {{ .. }} expression in result and replacing it with Groovy evaluation
+             * Replacing each {{ .. }} expression in result with Groovy evaluation
              */
-            for ( Matcher matcher = ( result =~ GROOVY_EXPRESSION_PATTERN );
-                    matcher.find();
-                          matcher = ( result =~ GROOVY_EXPRESSION_PATTERN ))
+            final Matcher      matcher = GROOVY_EXPRESSION_PATTERN.matcher( result )
+            final StringBuffer buffer  = new StringBuffer()
+
+            while ( matcher.find())
             {
-                String expression = matcher.group( 1 )
-                String value      = eval( expression, String )
-                result            = result.substring( 0, matcher.start()) + value + result.substring( matcher.end())
+                matcher.appendReplacement( buffer, Matcher.quoteReplacement( String.valueOf( evaluate( matcher.group( 1 )))))
             }
+
+            matcher.appendTail( buffer )
+            result = buffer.toString()
         }
 
-        if ( from )
-        {
-            String  replacement = ( quoteReplacement ? Matcher.quoteReplacement( result ) : result )
-            Matcher matcher     = ( data =~ /$from/ )
+        result
+    }
 
-            assert ( matcher.find() || ( ! failIfNotFound )) : \
-                   "Failed to match [$from] pattern in [${ file ?: data }]"
 
-            result = replaceAll ? matcher.replaceAll  ( replacement ) :
-                                  matcher.replaceFirst( replacement )
-        }
+    /**
+     * Evaluates Groovy expression with {@link GMojoUtils#eval}, every evaluation gets its own variables
+     * so that properties modified are seen and "ant" builder isn't shared by threads replacing files concurrently.
+     * Only expressions of {@link #groovyConstant} replacements are cached, they are evaluated once.
+     *
+     * @param expression Groovy expression to evaluate
+     * @return expression evaluated and converted to <code>String</code>,
+     *         <code>null</code> if expression is empty or evaluates to <code>null</code>
+     */
+    private String evaluate ( String expression )
+    {
+        if ( ! expression.trim()) { return null }
+        if ( groovyConstant && constants.containsKey( expression )) { return constants[ expression ] }
 
-        result = addDollar( result, addDollar )
+        final String result = eval( expression, String )
 
-        ( endOfLine ) ? result.replaceAll( /\r?\n/, (( 'windows' == endOfLine ) ? '\r\n' : '\n' )) :
-                        result
+        if ( groovyConstant ) { constants[ expression ] = result }
+        result
     }
 }
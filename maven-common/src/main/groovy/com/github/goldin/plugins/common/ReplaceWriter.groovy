@@ -0,0 +1,141 @@
+package com.github.goldin.plugins.common
+
+import org.gcontracts.annotations.Requires
+import java.util.regex.Matcher
+import java.util.regex.Pattern
+
+
+/**
+ * {@link Writer} making regex replacements in the data written and passing the result to another {@link Writer},
+ * holding no more than a few windows of data in memory.
+ *
+ * Patterns are matched over a sliding window: a match, including its lookbehind and lookahead context,
+ * should not be longer than the window size.
+ */
+class ReplaceWriter extends Writer
+{
+    private final Writer        out
+    private final Pattern       pattern
+    private final String        replacement
+    private final boolean       replaceAll
+    private final boolean       failIfNotFound
+    private final int           window
+    private final String        description
+
+    /**
+     * Data written and not passed to {@link #out} yet, prefixed with up to {@link #window} characters
+     * of data already passed, kept as a context for lookbehind and boundary matchers.
+     */
+    private final StringBuilder buffer   = new StringBuilder()
+    private int                 history  = 0
+    private boolean             found    = false
+    private boolean             replaced = false
+    private boolean             closed   = false
+
+
+    /**
+     * Creates new replacing writer.
+     *
+     * @param out            writer to pass the data to, closed when this writer is closed
+     * @param pattern        pattern to match
+     * @param replacement    replacement to use for each match, as accepted by {@link Matcher#appendReplacement}
+     * @param replaceAll     whether all matches should be replaced or the first one only
+     * @param failIfNotFound whether an exception should be thrown when writer is closed if pattern wasn't matched
+     * @param window         maximal length of a match, in characters
+     * @param description    data description to be used in error messages, like file path
+     */
+    @Requires({ out && pattern && ( replacement != null ) && ( window > 0 ) })
+    ReplaceWriter ( Writer  out,
+                    Pattern pattern,
+                    String  replacement,
+                    boolean replaceAll,
+                    boolean failIfNotFound,
+                    int     window,
+                    String  description = null )
+    {
+        this.out            = out
+        this.pattern        = pattern
+        this.replacement    = replacement
+        this.replaceAll     = replaceAll
+        this.failIfNotFound = failIfNotFound
+        this.window         = window
+        this.description    = description
+    }
+
+
+    @Override
+    void write ( char[] chars, int offset, int length )
+    {
+        assert ( ! closed ), "[$description] - writer is closed"
+        buffer.append( chars, offset, length )
+        if ( buffer.length() >= ( history + ( 2 * window ))) { replace( false ) }
+    }
+
+
+    @Override
+    void flush ()
+    {
+        out.flush()
+    }
+
+
+    @Override
+    void close ()
+    {
+        if ( closed ) { return }
+        closed = true
+        replace( true )
+        out.close()
+
+        assert ( found || ( ! failIfNotFound )) : \
+               "Failed to match [${ pattern.pattern() }] pattern in [$description]"
+    }
+
+
+    /**
+     * Replaces matches in the {@link #buffer} and passes the data replaced to {@link #out}.
+     * Unless it's the end of data, last {@link #window} characters are kept to be matched with the data that follows.
+     *
+     * @param eof whether all data is written
+     */
+    private void replace ( boolean eof )
+    {
+        final int limit = eof ? buffer.length() : buffer.length() - window
+        int       end   = history // End of data passed to output
+
+        if ( ! replaced )
+        {
+            final Matcher      matcher  = pattern.matcher( buffer )
+            final StringBuffer result   = new StringBuffer()
+            boolean            appended = false
+
+            matcher.region( history, buffer.length())
+            matcher.useTransparentBounds( true )
+            matcher.useAnchoringBounds( false )
+
+            while (( ! replaced ) && matcher.find() && (( matcher.start() < limit ) || ( eof && ( matcher.start() == limit ))))
+            {
+                matcher.appendReplacement( result, replacement )
+                appended = true
+                end      = matcher.end()
+                found    = true
+                replaced = ( ! replaceAll )
+            }
+
+            if ( appended )
+            {
+                out.append( result, history, result.length()) // appendReplacement() starts appending from buffer beginning
+            }
+        }
+
+        final int passed = Math.max( end, limit )
+        out.append( buffer, end, passed )
+
+        /**
+         * Keeping up to "window" characters passed as a context for the next matches
+         */
+        final int keep = Math.max( passed - window, 0 )
+        buffer.delete( 0, keep )
+        history = passed - keep
+    }
+}
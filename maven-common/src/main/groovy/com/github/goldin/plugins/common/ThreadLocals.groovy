@@ -62,4 +62,30 @@ class ThreadLocals
                "Available objects are ${ THREAD_LOCAL.get().keySet()*.name }"
         t
     }
+
+
+    /**
+     * Retrieves a copy of all objects stored by the current thread.
+     * Used to pass plugin environment to worker threads with {@link #restore(Map)}.
+     *
+     * @return copy of all objects stored by the current thread
+     */
+    static Map<Class<?>, ?> snapshot ()
+    {
+        new HashMap<Class<?>, Object>( THREAD_LOCAL.get())
+    }
+
+
+    /**
+     * Replaces all objects stored by the current thread with those specified.
+     *
+     * @param objects objects to store, usually obtained with {@link #snapshot()} in another thread
+     */
+    static void restore ( Map<Class<?>, ?> objects )
+    {
+        assert objects != null
+        final map = THREAD_LOCAL.get()
+        map.clear()
+        map.putAll( objects )
+    }
 }
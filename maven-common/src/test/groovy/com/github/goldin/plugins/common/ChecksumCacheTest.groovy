@@ -0,0 +1,124 @@
+package com.github.goldin.plugins.common
+
+import org.junit.Before
+import org.junit.Test
+import java.util.zip.CRC32
+
+
+/**
+ * {@link ChecksumCache} tests
+ */
+class ChecksumCacheTest
+{
+    private static final long OLD_TIME = System.currentTimeMillis() - 3600000
+
+
+    private static File file ( String content, long lastModified = OLD_TIME )
+    {
+        final file = File.createTempFile( 'ChecksumCacheTest', '.txt' )
+        file.deleteOnExit()
+        file.write( content, 'UTF-8' )
+        assert file.setLastModified( lastModified )
+        file
+    }
+
+
+    @Before
+    void clearCache ()
+    {
+        ChecksumCache.clear()
+    }
+
+
+    @Test
+    void shouldCompareFiles ()
+    {
+        assert   ChecksumCache.identical( file( 'aaaa' ), file( 'aaaa' ))
+        assert ! ChecksumCache.identical( file( 'aaaa' ), file( 'aaab' ))
+        assert ! ChecksumCache.identical( file( 'aaaa' ), file( 'aaaaa' ))
+        assert   ChecksumCache.checksum( file( 'aaaa' )) == ChecksumCache.checksum( file( 'aaaa' ))
+        assert   ChecksumCache.checksum( file( 'aaaa' )) != ChecksumCache.checksum( file( 'aaab' ))
+    }
+
+
+    @Test
+    void shouldCalculateCrc32 ()
+    {
+        final f   = file( 'aaaa' )
+        final crc = new CRC32()
+        crc.update( 'aaaa'.getBytes( 'UTF-8' ))
+
+        assert ChecksumCache.checksum( f, ChecksumCache.CRC32_ALGORITHM ) == Long.toHexString( crc.value )
+        assert ChecksumCache.checksum( f, ChecksumCache.CRC32_ALGORITHM ) != ChecksumCache.checksum( f )
+    }
+
+
+    @Test
+    void shouldCacheChecksums ()
+    {
+        final f        = file( 'aaaa' )
+        final checksum = ChecksumCache.checksum( f )
+
+        f.write( 'bbbb', 'UTF-8' )
+        assert f.setLastModified( OLD_TIME )
+        assert ChecksumCache.checksum( f ) == checksum, 'Checksum should be cached while size and last modified time are the same'
+
+        assert f.setLastModified( OLD_TIME - 1000 )
+        assert ChecksumCache.checksum( f ) != checksum, 'Checksum should be recalculated when last modified time changes'
+
+        f.write( 'bbbbb', 'UTF-8' )
+        assert f.setLastModified( OLD_TIME - 1000 )
+        assert ChecksumCache.checksum( f ) != ChecksumCache.checksum( file( 'bbbb' )), 'Checksum should be recalculated when size changes'
+    }
+
+
+    @Test
+    void shouldNotCacheRecentlyModifiedFiles ()
+    {
+        final time     = System.currentTimeMillis()
+        final f        = file( 'aaaa', time )
+        final checksum = ChecksumCache.checksum( f )
+
+        f.write( 'bbbb', 'UTF-8' )
+        assert f.setLastModified( time )
+        assert ChecksumCache.checksum( f ) != checksum
+    }
+
+
+    @Test
+    void shouldSaveAndLoad ()
+    {
+        final f         = file( 'aaaa' )
+        final checksum  = ChecksumCache.checksum( f )
+        final cacheFile = File.createTempFile( 'ChecksumCacheTest', '.properties' )
+        cacheFile.deleteOnExit()
+
+        ChecksumCache.save( cacheFile )
+        ChecksumCache.clear()
+        f.write( 'bbbb', 'UTF-8' )
+        assert f.setLastModified( OLD_TIME )
+
+        ChecksumCache.load( cacheFile )
+        assert ChecksumCache.checksum( f ) == checksum, 'Checksum should be loaded from the cache file'
+    }
+
+
+    @Test
+    void shouldNotSaveFilesDeleted ()
+    {
+        final f1        = file( 'aaaa' )
+        final f2        = file( 'bbbb' )
+        final cacheFile = File.createTempFile( 'ChecksumCacheTest', '.properties' )
+        cacheFile.deleteOnExit()
+
+        ChecksumCache.checksum( f1 )
+        ChecksumCache.checksum( f2 )
+        assert f2.delete()
+        ChecksumCache.save( cacheFile )
+
+        final properties = new Properties()
+        cacheFile.withInputStream { properties.load( it ) }
+        assert properties.stringPropertyNames().any { it.endsWith( f1.canonicalPath ) }
+        assert properties.stringPropertyNames().every { ! it.endsWith( f2.canonicalPath ) }, 'Checksums of files deleted should not be saved'
+    }
+}
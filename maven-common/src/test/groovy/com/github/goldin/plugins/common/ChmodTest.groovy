@@ -0,0 +1,157 @@
+package com.github.goldin.plugins.common
+
+import org.junit.Assume
+import org.junit.Test
+import java.nio.file.Files
+import java.nio.file.attribute.PosixFileAttributeView
+
+
+/**
+ * {@link Chmod} tests
+ */
+class ChmodTest
+{
+    @Test
+    void shouldApplyOctalModes ()
+    {
+        assert new Chmod( '755'  ).mode( 0600, false ) == 0755
+        assert new Chmod( '0644' ).mode( 0777, true  ) == 0644
+        assert new Chmod( '4755' ).mode( 0000, false ) == 04755
+        assert new Chmod( '7'    ).mode( 0777, false ) == 0007
+    }
+
+
+    @Test
+    void shouldApplySpecialBits ()
+    {
+        assert new Chmod( '755'     ).mode( 06755, false ) == 0755,  'Octal mode should clear special bits of files'
+        assert new Chmod( '755'     ).mode( 06755, true  ) == 06755, 'Octal mode should keep setuid and setgid of directories'
+        assert new Chmod( '0755'    ).mode( 06755, true  ) == 0755,  'Four-digit octal mode should set special bits'
+        assert new Chmod( '1777'    ).mode( 0755,  true  ) == 01777
+        assert new Chmod( 'u+s'     ).mode( 0755,  false ) == 04755
+        assert new Chmod( 'g+s'     ).mode( 0755,  true  ) == 02755
+        assert new Chmod( 'o+s'     ).mode( 0755,  false ) == 0755
+        assert new Chmod( '+t'      ).mode( 0755,  true  ) == 01755
+        assert new Chmod( 'u+t'     ).mode( 0755,  true  ) == 0755
+        assert new Chmod( 'a+s'     ).mode( 0755,  false ) == 06755
+        assert new Chmod( 'u-s,g+s' ).mode( 04750, false ) == 02750
+        assert new Chmod( 'u+x'     ).mode( 02644, true  ) == 02744, 'Permissions modified should keep special bits'
+        assert new Chmod( 'g=rx'    ).mode( 02775, false ) == 0755
+        assert new Chmod( 'g=rx'    ).mode( 02775, true  ) == 02755, '"=" should keep setgid of directories'
+        assert new Chmod( 'g=rxs'   ).mode( 0775,  true  ) == 02755
+        assert new Chmod( 'a=rx'    ).mode( 01777, true  ) == 0555
+    }
+
+
+    @Test
+    void shouldApplySymbolicModes ()
+    {
+        assert new Chmod( '+x'          ).mode( 0644, false ) == 0755
+        assert new Chmod( 'a+x'         ).mode( 0644, false ) == 0755
+        assert new Chmod( 'u+x'         ).mode( 0644, false ) == 0744
+        assert new Chmod( 'go-w'        ).mode( 0666, false ) == 0644
+        assert new Chmod( 'o='          ).mode( 0777, false ) == 0770
+        assert new Chmod( 'u=rw,go=r'   ).mode( 0777, false ) == 0644
+        assert new Chmod( 'ug+rw,o-rwx' ).mode( 0604, false ) == 0660
+        assert new Chmod( 'u+rw-x'      ).mode( 0100, false ) == 0600
+        assert new Chmod( 'u+s,g+t'     ).mode( 0644, false ) == 04644
+        assert new Chmod( 'u+xs'        ).mode( 0644, false ) == 04744
+    }
+
+
+    @Test
+    void shouldApplyConditionalExecute ()
+    {
+        assert new Chmod( 'a+X'         ).mode( 0644, false ) == 0644
+        assert new Chmod( 'a+X'         ).mode( 0644, true  ) == 0755
+        assert new Chmod( 'a+X'         ).mode( 0744, false ) == 0755
+        assert new Chmod( 'u=rwX,go=rX' ).mode( 0600, true  ) == 0755
+        assert new Chmod( 'u=rwX,go=rX' ).mode( 0600, false ) == 0644
+    }
+
+
+    @Test
+    void shouldRejectUnsupportedModes ()
+    {
+        for ( mode in [ '-R 755', '999', 'z+x', 'u+q', 'u', 'g=u' ])
+        {
+            try
+            {
+                new Chmod( mode )
+                assert false, "Mode [$mode] should be rejected"
+            }
+            catch ( AssertionError e )
+            {
+                assert e.message.contains( 'Unsupported chmod mode' )
+            }
+        }
+    }
+
+
+    @Test
+    void shouldConvertPermissions ()
+    {
+        for ( bits in [ 0000, 0644, 0755, 0777, 0421 ])
+        {
+            assert Chmod.bits( Chmod.permissions( bits )) == bits
+        }
+    }
+
+
+    @Test
+    void shouldApplyModeToFile ()
+    {
+        final file = File.createTempFile( 'ChmodTest', '.sh' )
+        file.deleteOnExit()
+
+        final view = Files.getFileAttributeView( file.toPath(), PosixFileAttributeView )
+        Assume.assumeTrue( view != null )
+
+        view.setPermissions( Chmod.permissions( 0600 ))
+        assert new Chmod( 'u+x,go+r' ).apply( file ) == file
+        assert Chmod.bits( view.readAttributes().permissions()) == 0744
+
+        new Chmod( '640' ).apply( file )
+        assert Chmod.bits( view.readAttributes().permissions()) == 0640
+    }
+
+
+    @Test
+    void shouldApplySpecialBitsToFile ()
+    {
+        final file = File.createTempFile( 'ChmodTest', '.sh' )
+        file.deleteOnExit()
+        Assume.assumeTrue( file.toPath().fileSystem.supportedFileAttributeViews().contains( 'unix' ))
+
+        final unixMode = { ( int ) Files.getAttribute( file.toPath(), 'unix:mode' ) & 07777 }
+
+        new Chmod( '4750' ).apply( file )
+        assert unixMode() == 04750
+
+        new Chmod( 'u-s,g+s' ).apply( file )
+        assert unixMode() == 02750
+
+        new Chmod( '640' ).apply( file )
+        assert unixMode() == 0640
+    }
+
+
+    @Test
+    void shouldKeepSetgidOfDirectory ()
+    {
+        final directory = Files.createTempDirectory( 'ChmodTest' ).toFile()
+        directory.deleteOnExit()
+        Assume.assumeTrue( directory.toPath().fileSystem.supportedFileAttributeViews().contains( 'unix' ))
+
+        final unixMode = { ( int ) Files.getAttribute( directory.toPath(), 'unix:mode' ) & 07777 }
+
+        new Chmod( '2640' ).apply( directory )
+        assert unixMode() == 02640
+
+        new Chmod( 'u+x' ).apply( directory )
+        assert unixMode() == 02740, 'Directory should keep setgid after its permissions are modified'
+
+        new Chmod( '750' ).apply( directory )
+        assert unixMode() == 02750
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.goldin.plugins.common
+
+import static com.github.goldin.plugins.common.GMojoUtils.*
+import org.codehaus.plexus.util.FileUtils
+import org.junit.Test
+import java.nio.file.Files
+
+
+/**
+ * {@link FileScanner} tests
+ */
+class FileScannerTest
+{
+    private static final List<String> PATHS = [ 'a.txt', 'b.xml', 'conf/app.properties', 'conf/log.xml', 'conf/env/dev.properties',
+                                                'src/main/A.java', 'src/main/res/a.txt', 'src/test/ATest.java', 'target/classes/A.class',
+                                                'target/classes/a.txt', '.svn/entries', 'src/.svn/entries', 'Docs/Readme.TXT',
+                                                '.git/config', 'src/CVS/Root', 'conf/app.properties~', 'conf/.DS_Store', '#a.txt#' ]
+
+    /**
+     * Default excludes, as added to {@code <resource>} excludes by the copy plugin
+     */
+    private static final List<String> DEFAULT_EXCLUDES = (( fileBean().defaultExcludes + ( FileUtils.defaultExcludes as List )) as Set ).sort()
+
+
+    private static File tree ()
+    {
+        final directory = Files.createTempDirectory( 'FileScannerTest' ).toFile()
+        directory.deleteOnExit()
+
+        for ( path in PATHS )
+        {
+            final file = new File( directory, path )
+            file.parentFile.mkdirs()
+            file.text = path
+        }
+
+        directory
+    }
+
+
+    /**
+     * Files matched by {@code fileBean().files()} that {@link FileScanner} replaces.
+     */
+    private static List<File> expected ( File directory, List<String> includes, List<String> excludes, boolean caseSensitive = true )
+    {
+        fileBean().files( directory, includes, excludes, caseSensitive, false, false ).sort()
+    }
+
+
+    @Test
+    void shouldMatchLikeFileBean ()
+    {
+        final directory = tree()
+        final patterns  = [ [ null,                            null                       ],
+                            [ [ '**/*.txt' ],                  null                       ],
+                            [ [ 'conf/**' ],                   [ '**/*.xml' ]             ],
+                            [ [ 'conf/' ],                     null                       ],
+                            [ [ 'conf/*' ],                    null                       ],
+                            [ [ '**/main/**' ],                [ '**/res/**' ]            ],
+                            [ [ 'src/**/A*.java' ],            null                       ],
+                            [ [ '*.txt', 'target/**/*.txt' ],  null                       ],
+                            [ [ '**' ],                        [ '**/.svn/**', 'target/' ]],
+                            [ [ '?.txt', 'c?nf/*/d*.pro*' ],   null                       ],
+                            [ [ '**/classes/**/*' ],           [ '**/*.class' ]           ],
+                            [ [ 'src\\main\\*.java' ],         null                       ],
+                            [ [ 'missing/**' ],                null                       ]]
+
+        for ( p in patterns )
+        {
+            final List<String> includes = p[ 0 ]
+            final List<String> excludes = p[ 1 ]
+            final actual                = new FileScanner( directory, includes, excludes, true, 4 ).files( false )
+
+            assert actual == expected( directory, includes, excludes ), "Includes $includes, excludes $excludes"
+        }
+    }
+
+
+    @Test
+    void shouldMatchWithDefaultExcludes ()
+    {
+        final directory = tree()
+
+        for ( includes in [ null, [ '**/*.txt' ], [ 'conf/**', 'src/**' ], [ '.svn/**', '.git/*' ]] )
+        {
+            for ( excludes in [ DEFAULT_EXCLUDES, [ '**/*.xml' ] + DEFAULT_EXCLUDES ] )
+            {
+                final actual = new FileScanner( directory, includes, excludes, true, 4 ).files( false )
+                assert actual == expected( directory, includes, excludes ), "Includes $includes, excludes $excludes"
+                assert ! actual.any { it.path.contains( '.svn' ) || it.path.contains( '.git' ) || it.name.endsWith( '~' ) }
+            }
+        }
+
+        assert new FileScanner( directory, null, null ).files( false ).size() == PATHS.size(), \
+               'Default excludes should only apply when specified'
+    }
+
+
+    @Test
+    void shouldMatchAbsolutePatterns ()
+    {
+        final directory = tree()
+        final absolute  = directory.canonicalPath.replace( '\\', '/' )
+
+        for ( p in [ [ [ '/a.txt' ],                   null            ],
+                     [ [ '/**/*.txt' ],                null            ],
+                     [ [ "$absolute/a.txt" as String ], null           ],
+                     [ [ "$absolute/**" as String ],   null            ],
+                     [ [ '**/*.txt' ],                 [ '/a.txt' ]    ],
+                     [ [ '**/*.txt' ],                 [ '/**' ]       ]] )
+        {
+            final List<String> includes = p[ 0 ]
+            final List<String> excludes = p[ 1 ]
+            final actual                = new FileScanner( directory, includes, excludes ).files( false )
+
+            assert actual == expected( directory, includes, excludes ), "Includes $includes, excludes $excludes"
+        }
+    }
+
+
+    @Test
+    void shouldMatchCaseInsensitively ()
+    {
+        final directory = tree()
+
+        for ( p in [ [ [ 'docs/*.txt' ],        null              ],
+                     [ [ 'DOCS/README.TXT' ],   null              ],
+                     [ [ '**/*.TXT' ],          null              ],
+                     [ [ 'CONF/**' ],           [ '**/*.XML' ]    ],
+                     [ [ 'Src/Main/**' ],       [ 'SRC/MAIN/RES/' ]],
+                     [ [ '**/a*' ],             [ 'TARGET/**' ]   ]] )
+        {
+            final List<String> includes = p[ 0 ]
+            final List<String> excludes = p[ 1 ]
+
+            for ( caseSensitive in [ true, false ] )
+            {
+                final actual = new FileScanner( directory, includes, excludes, caseSensitive, 4 ).files( false )
+                assert actual == expected( directory, includes, excludes, caseSensitive ), \
+                       "Includes $includes, excludes $excludes, case-sensitive: $caseSensitive"
+            }
+        }
+
+        assert   new FileScanner( directory, [ 'docs/*.txt' ], null, true  ).files( false ).empty
+        assert ! new FileScanner( directory, [ 'docs/*.txt' ], null, false ).files( false ).empty
+    }
+
+
+    @Test
+    void shouldPassFilesToConsumer ()
+    {
+        final directory = tree()
+        final files     = Collections.synchronizedList( new ArrayList<File>())
+        final matched   = new FileScanner( directory, [ '**/*.txt', 'conf/**' ], [ '**/*.xml' ], true, 4 ).scan { File f -> files << f }
+
+        assert matched == files.size()
+        assert files.sort() == expected( directory, [ '**/*.txt', 'conf/**' ], [ '**/*.xml' ] )
+        assert new FileScanner( directory, [ 'missing/**' ], null ).scan( false ){ File f -> assert false, "[$f] is not expected" } == 0
+    }
+
+
+    @Test
+    void shouldMatchCompiledPatterns ()
+    {
+        final path = { String s -> s.tokenize( '/' ) as String[] }
+
+        assert   new FileScanner.Glob( 'a/**'       ).matches( path( 'a' ))
+        assert   new FileScanner.Glob( 'a/**'       ).matchesAllUnder( path( 'a' ))
+        assert ! new FileScanner.Glob( 'a/*'        ).matchesAllUnder( path( 'a' ))
+        assert   new FileScanner.Glob( '**/b/*.txt' ).matches( path( 'b/c.txt' ))
+        assert   new FileScanner.Glob( '**/b/*.txt' ).matches( path( 'a/a/b/c.txt' ))
+        assert ! new FileScanner.Glob( '**/b/*.txt' ).matches( path( 'a/b/c/c.txt' ))
+        assert   new FileScanner.Glob( 'a/*/c/**'   ).matchesUnder( path( 'a/b' ))
+        assert ! new FileScanner.Glob( 'a/*/c/**'   ).matchesUnder( path( 'a/b/d' ))
+        assert ! new FileScanner.Glob( 'a/b'        ).matchesUnder( path( 'a/b' ))
+        assert   new FileScanner.Glob( 'A/B.TXT', false ).matches( path( 'a/b.txt' ))
+        assert ! new FileScanner.Glob( 'A/B.TXT', true  ).matches( path( 'a/b.txt' ))
+        assert   new FileScanner.Glob( 'a.(x)+*'    ).matches( path( 'a.(x)+y' ))
+        assert ! new FileScanner.Glob( 'a.(x)+*'    ).matches( path( 'ab(x)+y' ))
+    }
+
+
+    @Test
+    void shouldFailIfNotFound ()
+    {
+        final directory = tree()
+
+        for ( Closure c in [{ new FileScanner( directory, [ 'missing/**' ], null ).files( true ) },
+                            { new FileScanner( new File( directory, 'missing' ), null, null ).files( true ) }] )
+        {
+            try
+            {
+                c()
+                assert false, 'Scan should fail'
+            }
+            catch ( AssertionError e )
+            {
+                assert ! e.message.contains( 'Scan should fail' )
+            }
+        }
+
+        assert new FileScanner( new File( directory, 'missing' ), null, null ).files( false ).empty
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.goldin.plugins.common
 
 import static com.github.goldin.plugins.common.GMojoUtils.*
+import org.apache.maven.project.MavenProject
 import org.junit.Test
 
 
@@ -377,4 +378,163 @@ class ReplaceTest
                                                     groovy    : true ),
                  '54546415' )
     }
+
+
+    /**
+     * Replaces the input with {@link Replace#writer}, writing it in chunks of the size specified.
+     */
+    static String streamReplace ( String input, Replace replace, int window, int chunk )
+    {
+        final output = new StringWriter()
+        final writer = replace.writer( output, window )
+
+        for ( int j = 0; j < input.length(); j += chunk )
+        {
+            writer.write( input.substring( j, Math.min( j + chunk, input.length())))
+        }
+
+        writer.close()
+        output.toString()
+    }
+
+
+    @Test
+    void shouldReplaceStreaming()
+    {
+        final input = ( 1 .. 300 ).collect { "line $it: ${ MAIL } ${ it * 7 }${ ( it % 3 ) ? '\n' : '\r\n' }" }.join()
+
+        for ( replace in [ new Replace( from: /\d+/,                   to: '!' ),
+                           new Replace( from: /\d+/,                   to: '!', replaceAll: false ),
+                           new Replace( from: MAIL_PATTERN,            to: '$3.$2.$1' ),
+                           new Replace( from: /(?<=line )\d+/,         to: 'N' ),
+                           new Replace( from: /^line/,                 to: 'LINE' ),
+                           new Replace( from: /(?m)^line \d+/,         to: 'LINE' ),
+                           new Replace( from: /\d+$/,                  to: 'END' ),
+                           new Replace( from: /(?m)\d+$/,              to: 'END', endOfLine: 'windows' ),
+                           new Replace( from: /x*/,                    to: '-' ),
+                           new Replace( from: /\w+@\w+/,               to: '$', quoteReplacement: true, endOfLine: 'linux' ),
+                           new Replace( from: /nothing/,               to: '?', failIfNotFound: false ) ])
+        {
+            final expected = replace.replace( input )
+
+            for ( window in [ 32, 64, 1000, 100000 ])
+            {
+                for ( chunk in [ 1, 7, 64, 4096 ])
+                {
+                    assert expected == streamReplace( input, replace, window, chunk ), \
+                           "Streaming [$replace.from] with window [$window] and chunk [$chunk] differs from in-memory replacement"
+                }
+            }
+        }
+
+        assert new GroovyTestCase().shouldFail( AssertionError ){ streamReplace( 'aaa', new Replace( from: /b/, to: 'c' ), 10, 1 ) }.
+               startsWith( 'Failed to match [b] pattern in [null]' )
+        assert ! new Replace( from: /a/, addDollar: 'true' ).streamable()
+        assert ! new Replace( to: 'a' ).streamable()
+    }
+
+
+    @Test
+    void shouldReplaceLiteralsInSinglePass()
+    {
+        final input  = ( 1 .. 100 ).collect { "key$it = \${value$it} [aaa] (bbb) ${ MAIL } aaaa\n" }.join()
+        final sets   = [
+            [ new Replace( from: 'aaa', to: 'x' ), new Replace( from: 'bbb', to: 'y' ), new Replace( from: '\\Q${\\E', to: '#{' ) ],
+            [ new Replace( from: 'aa',  to: 'x' ), new Replace( from: 'key', to: 'KEY' ), new Replace( from: '@', to: ' at ' ) ],
+            [ new Replace( from: 'aaa', to: 'b' ), new Replace( from: 'bbb', to: 'c' ) ],
+            [ new Replace( from: 'aaa', to: ''  ), new Replace( from: 'key', to: 'c' ) ],
+            [ new Replace( from: 'aaa', to: 'x', replaceAll: false ), new Replace( from: '$', to: '$1', quoteReplacement: true ) ],
+            [ new Replace( from: 'aaa', to: 'x' ), new Replace( from: /\d+/, to: 'N' ), new Replace( from: 'value', to: 'v' ),
+              new Replace( from: 'somewhere', to: 'W' ), new Replace( from: 'nothing', to: '?', failIfNotFound: false ) ]
+        ]
+
+        for ( List<Replace> replaces in sets )
+        {
+            assert Replace.replace( replaces, input ) == replaces.inject( input ){ String s, Replace r -> r.replace( s ) }
+        }
+
+        assert Replace.literalGroups( sets[ 0 ] )*.size() == [ 3 ]
+        assert Replace.literalGroups( sets[ 1 ] )*.size() == [ 3 ]
+        assert Replace.literalGroups( sets[ 2 ] )*.size() == [ 1, 1 ] // "b" may be matched by "bbb"
+        assert Replace.literalGroups( sets[ 3 ] )*.size() == [ 1, 1 ] // Removing "aaa" may create new matches
+        assert Replace.literalGroups( sets[ 5 ] )*.size() == [ 1, 1, 3 ]
+
+        assert new GroovyTestCase().shouldFail( AssertionError ){
+            Replace.replace([ new Replace( from: 'aaa', to: 'x' ), new Replace( from: 'ccc', to: 'y' ) ], 'aaa bbb' )
+        }.startsWith( 'Failed to match [ccc] pattern in [aaa bbb]' )
+    }
+
+
+    @Test
+    void shouldGroupPlaceholdersInSinglePass()
+    {
+        final input        = ( 1 .. 50 ).collect { "name=\${name}-$it version=\${version} url=http://\${host}:\${port}/\${name}\n" }.join()
+        final placeholders = [ new Replace( from: '\\Q${name}\\E',    to: 'my-app'      ),
+                               new Replace( from: '\\Q${version}\\E', to: '1.0.0'       ),
+                               new Replace( from: '\\Q${host}\\E',    to: 'example.com' ),
+                               new Replace( from: '\\Q${port}\\E',    to: '8080'        ) ]
+
+        assert Replace.literalGroups( placeholders )*.size() == [ 4 ]
+        assert Replace.replace( placeholders, input ) == placeholders.inject( input ){ String s, Replace r -> r.replace( s ) }
+        assert ! Replace.replace( placeholders, input ).contains( '${' )
+
+        final key = new Replace( from: '\\Q${key}\\E', to: 'k' )
+
+        assert Replace.literalGroups([ new Replace( from: 'a', to: 'x${key}x', quoteReplacement: true ), key ])*.size() == [ 1, 1 ] // Value contains the pattern
+        assert Replace.literalGroups([ new Replace( from: 'a', to: 'x${',      quoteReplacement: true ), key ])*.size() == [ 1, 1 ] // Value ends with the pattern beginning
+        assert Replace.literalGroups([ new Replace( from: 'a', to: 'y}x'                              ), key ])*.size() == [ 1, 1 ] // Value starts with the pattern end
+        assert Replace.literalGroups([ new Replace( from: 'a', to: 'ke'                               ), key ])*.size() == [ 1, 1 ] // Value is contained in the pattern
+        assert Replace.literalGroups([ new Replace( from: 'a', to: 'value'                            ), key ])*.size() == [ 2 ]
+
+        for ( data in [ 'a', '${a', 'ay}', '${ky}', 'a${key}a' ] )
+        {
+            for ( to in [ 'x${key}x', 'x${', 'y}x', 'e', 'key' ] )
+            {
+                final replaces = [ new Replace( from: 'a', to: to, quoteReplacement: true, failIfNotFound: false ),
+                                   new Replace( from: '\\Q${key}\\E', to: 'k', failIfNotFound: false ) ]
+                assert Replace.replace( replaces, data ) == replaces.inject( data ){ String s, Replace r -> r.replace( s ) }, "[$data] - [$to]"
+            }
+        }
+    }
+
+
+    @Test
+    void shouldCompileOnce()
+    {
+        final replace = new Replace( from: /\d+/, to: '{{ System.nanoTime() }}', groovy: true )
+        final pattern = replace.fromPattern()
+
+        assert replace.replace( '1' ) != replace.replace( '1' )
+        assert replace.fromPattern().is( pattern )
+
+        replace.from = /\w+/
+        assert ! replace.fromPattern().is( pattern )
+        assert replace.fromPattern().pattern() == /\w+/
+
+        final constant = new Replace( from: /\d+/, to: '{{ System.nanoTime() }}', groovy: true, groovyConstant: true )
+        assert constant.replace( '1' ) == constant.replace( '2' )
+    }
+
+
+    @Test
+    void shouldEvaluateWithFreshVariables()
+    {
+        final replace = new Replace( from: /\d+/, to: '{{ ant.hashCode() }}|{{ project.properties[ "replaceTest" ] }}', groovy: true )
+        final ants    = [ replace.replace( '1' ), replace.replace( '1' ) ]*.tokenize( '|' )*.first()
+
+        assert ants[ 0 ] != ants[ 1 ], 'Every evaluation should get its own "ant" builder'
+
+        ThreadLocals.get( MavenProject ).properties[ 'replaceTest' ] = 'value'
+        try     { assert replace.replace( '1' ).endsWith( '|value' ), 'Properties modified should be seen' }
+        finally { ThreadLocals.get( MavenProject ).properties.remove( 'replaceTest' ) }
+    }
+
+
+    @Test
+    @SuppressWarnings( 'JUnitTestMethodWithoutAssert' )
+    void shouldExpandGroovyInSinglePass()
+    {
+        replace( 'aaa', new Replace( from: /a+/, to: '{{ "{" * 2 + "x" + "}" * 2 }}|{{ "\\$" + 1 }}', groovy: true, quoteReplacement: true ),
+                 '{{x}}|$1' )
+    }
 }